@@ -0,0 +1,48 @@
+package com.graphhopper.reader.gtfs;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Search from (or, arriving by, to) the center of the benchmark feed,
+ * without road building. Forward and arrive-by searches run on the same feed
+ * and cover the same span of service.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CalcLabelsBenchmark {
+
+	@Param({ RoadsToGraphHopperGtfs.MLS_ALGORITHM,
+			RoadsToGraphHopperGtfs.PROFILE_ALGORITHM,
+			RoadsToGraphHopperGtfs.EARLIEST_ARRIVAL_ALGORITHM })
+	public String algorithm;
+
+	@Param({ "0", "3600" })
+	public long departureWindow;
+
+	@Param({ "false", "true" })
+	public boolean arriveBy;
+
+	@Benchmark
+	public int[] calcLabels(RoadsToBenchmarkState state) {
+		return state.createSearch(algorithm, arriveBy).calcLabels(
+				state.startNode,
+				RoadsToBenchmarkState.getStartTime(arriveBy),
+				RoadsToBenchmarkState.getRangeQueryEndTime(arriveBy,
+						departureWindow));
+	}
+}
@@ -0,0 +1,51 @@
+package com.graphhopper.reader.gtfs;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Roads of a single departure (or arrival) time from the multi-criteria and
+ * the earliest arrival search, searched and built in every invocation. A
+ * single time is the only case the earliest arrival search supports.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EarliestArrivalBenchmark {
+
+	@Param({ RoadsToGraphHopperGtfs.MLS_ALGORITHM,
+			RoadsToGraphHopperGtfs.EARLIEST_ARRIVAL_ALGORITHM })
+	public String algorithm;
+
+	@Param({ "false", "true" })
+	public boolean arriveBy;
+
+	@Benchmark
+	public Roads roads(RoadsToBenchmarkState state) {
+		final LabelsSetting search = state.createSearch(algorithm, arriveBy);
+		final long startTime = RoadsToBenchmarkState.getStartTime(arriveBy);
+		try (LabelArena arena = search.getArena()) {
+			final int[] labels = search.calcLabels(state.startNode,
+					startTime, startTime);
+			final RoadBuilder roadBuilder = state.createRoadBuilder(arena,
+					arriveBy);
+			for (int label : labels) {
+				roadBuilder.addLabel(label);
+			}
+			return roadBuilder.buildRoads();
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.graphhopper.util.Helper;
+
+/**
+ * Imports generated feeds of the preset sizes into a new graph.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ImportBenchmark {
+
+	@Param({ GtfsFeedGenerator.TOWN, GtfsFeedGenerator.CITY })
+	public String preset;
+
+	private File directory;
+	private File feed;
+	private File graph;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("roads-to-import").toFile();
+		feed = new File(directory, "feed.zip");
+		new GtfsFeedGenerator().preset(preset).write(feed);
+	}
+
+	@Setup(Level.Iteration)
+	public void removeGraph() {
+		graph = new File(directory, "graph");
+		Helper.removeDir(graph);
+	}
+
+	@Benchmark
+	public int importFeed() {
+		final RoadsToGraphHopperGtfs roadsToGraphHopperGtfs = RoadsToGraphHopperGtfs
+				.createGraphHopperGtfs(graph.getPath(), feed.getPath(), true);
+		final int nodes = roadsToGraphHopperGtfs.getGraphHopperStorage()
+				.getNodes();
+		roadsToGraphHopperGtfs.getGraphHopperStorage().close();
+		return nodes;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Helper.removeDir(directory);
+	}
+}
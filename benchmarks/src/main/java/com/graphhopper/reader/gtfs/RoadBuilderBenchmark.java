@@ -0,0 +1,55 @@
+package com.graphhopper.reader.gtfs;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds roads from the labels of one (forward or arrive-by) search which is
+ * run once per trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RoadBuilderBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean arriveBy;
+
+	private LabelArena arena;
+	private int[] labels;
+
+	@Setup(Level.Trial)
+	public void setUp(RoadsToBenchmarkState state) {
+		final LabelsSetting search = state.createSearch(
+				RoadsToGraphHopperGtfs.MLS_ALGORITHM, arriveBy);
+		labels = search.calcLabels(state.startNode,
+				RoadsToBenchmarkState.getStartTime(arriveBy),
+				RoadsToBenchmarkState.getStartTime(arriveBy));
+		arena = search.getArena();
+	}
+
+	@Benchmark
+	public Roads buildRoads(RoadsToBenchmarkState state) {
+		final RoadBuilder roadBuilder = state.createRoadBuilder(arena,
+				arriveBy);
+		for (int label : labels) {
+			roadBuilder.addLabel(label);
+		}
+		return roadBuilder.buildRoads();
+	}
+}
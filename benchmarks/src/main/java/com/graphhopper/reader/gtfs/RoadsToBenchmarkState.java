@@ -0,0 +1,93 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.graphhopper.util.Helper;
+
+/**
+ * Graph of a generated feed, imported once per trial into a temporary
+ * directory.
+ */
+@State(Scope.Benchmark)
+public class RoadsToBenchmarkState {
+
+	/**
+	 * 08:00 on the first day of the generated feed, a Monday.
+	 */
+	public static final long DEPARTURE_TIME = 8 * 60 * 60;
+
+	/**
+	 * 20:00, arrive-by searches have as much service before this time as
+	 * searches departing at {@link #DEPARTURE_TIME} have after it.
+	 */
+	public static final long ARRIVAL_TIME = 20 * 60 * 60;
+
+	@Param({ GtfsFeedGenerator.TOWN })
+	public String preset;
+
+	RoadsToGraphHopperGtfs roadsToGraphHopperGtfs;
+	int startNode;
+	private File directory;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("roads-to-benchmark").toFile();
+		final File feed = new File(directory, "feed.zip");
+		final GtfsFeedGenerator generator = new GtfsFeedGenerator()
+				.preset(preset);
+		generator.write(feed);
+		roadsToGraphHopperGtfs = RoadsToGraphHopperGtfs.createGraphHopperGtfs(
+				new File(directory, "graph").getPath(), feed.getPath(), true);
+		startNode = roadsToGraphHopperGtfs.findClosestNode(
+				generator.getCenterLat(), generator.getCenterLon());
+		if (startNode < 0) {
+			throw new IllegalStateException(
+					"Could not find the start node in the benchmark graph.");
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		roadsToGraphHopperGtfs.getGraphHopperStorage().close();
+		Helper.removeDir(directory);
+	}
+
+	LabelsSetting createSearch(String algorithm) {
+		return createSearch(algorithm, false);
+	}
+
+	LabelsSetting createSearch(String algorithm, boolean arriveBy) {
+		return roadsToGraphHopperGtfs.createLabelsSetting(algorithm, arriveBy,
+				Integer.MAX_VALUE);
+	}
+
+	RoadBuilder createRoadBuilder(LabelArena arena) {
+		return createRoadBuilder(arena, false);
+	}
+
+	RoadBuilder createRoadBuilder(LabelArena arena, boolean arriveBy) {
+		return new RoadBuilder(roadsToGraphHopperGtfs.getGraphHopperStorage(),
+				arena, arriveBy);
+	}
+
+	static long getStartTime(boolean arriveBy) {
+		return arriveBy ? ARRIVAL_TIME : DEPARTURE_TIME;
+	}
+
+	/**
+	 * @return end of the window of the given length, which lies before the
+	 *         arrival time for arrive-by searches.
+	 */
+	static long getRangeQueryEndTime(boolean arriveBy, long window) {
+		return arriveBy ? ARRIVAL_TIME - window : DEPARTURE_TIME + window;
+	}
+}
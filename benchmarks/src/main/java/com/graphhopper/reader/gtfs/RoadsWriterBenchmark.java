@@ -0,0 +1,89 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.JsonObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.graphhopper.util.CmdArgs;
+
+/**
+ * Serializes the roads of one search, both with the JSON object model of
+ * {@link Roads#toJsonObject()} and through the writers of {@link RoadsTo}.
+ * The written bytes are discarded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RoadsWriterBenchmark {
+
+	@Param({ "geojson", "binary" })
+	public String format;
+
+	private Roads roads;
+	private CmdArgs args;
+	private final RoadsTo roadsTo = new RoadsTo();
+
+	@Setup(Level.Trial)
+	public void setUp(RoadsToBenchmarkState state) {
+		final LabelsSetting search = state
+				.createSearch(RoadsToGraphHopperGtfs.MLS_ALGORITHM);
+		final int[] labels = search.calcLabels(state.startNode,
+				RoadsToBenchmarkState.DEPARTURE_TIME,
+				RoadsToBenchmarkState.DEPARTURE_TIME);
+		final RoadBuilder roadBuilder = state.createRoadBuilder(search
+				.getArena());
+		for (int label : labels) {
+			roadBuilder.addLabel(label);
+		}
+		roads = roadBuilder.buildRoads();
+		args = new CmdArgs();
+		args.put("output.format", format);
+	}
+
+	@Benchmark
+	public JsonObject toJsonObject() {
+		return roads.toJsonObject();
+	}
+
+	@Benchmark
+	public long write() throws IOException {
+		final CountingOutputStream os = new CountingOutputStream();
+		try (RoadsWriter writer = roadsTo.createRoadsWriter(os, args)) {
+			writer.write(roads);
+		}
+		return os.count;
+	}
+
+	private static class CountingOutputStream extends OutputStream {
+
+		private long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
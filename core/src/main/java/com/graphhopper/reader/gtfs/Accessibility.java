@@ -0,0 +1,37 @@
+package com.graphhopper.reader.gtfs;
+
+import java.util.List;
+
+import com.graphhopper.util.PointList;
+
+/**
+ * Travel time histograms of the segments of the walk network, sampled over
+ * many departure times.
+ */
+public class Accessibility {
+
+	private final List<PointList> segments;
+	private final TravelTimeHistograms histograms;
+
+	/**
+	 * @param segments
+	 *            geometries of the segments, in the order of the histograms
+	 */
+	public Accessibility(List<PointList> segments,
+			TravelTimeHistograms histograms) {
+		if (segments.size() != histograms.size()) {
+			throw new IllegalArgumentException("Expected " + histograms.size()
+					+ " segments, but got: " + segments.size());
+		}
+		this.segments = segments;
+		this.histograms = histograms;
+	}
+
+	public List<PointList> getSegments() {
+		return segments;
+	}
+
+	public TravelTimeHistograms getHistograms() {
+		return histograms;
+	}
+}
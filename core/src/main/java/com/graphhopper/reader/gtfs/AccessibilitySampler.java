@@ -0,0 +1,169 @@
+package com.graphhopper.reader.gtfs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.PointList;
+
+/**
+ * Samples the travel times to the segments (edges) of the walk network over
+ * many departure times.
+ * <p>
+ * Every departure time is searched on its own, the searches run as tasks of
+ * a fork-join pool against the shared graph. A sample takes the shortest
+ * travel time to every node of the walk network from the labels of its
+ * search, a segment is reached when both of its nodes are, with the travel
+ * time to the later one. Samples are added to {@link TravelTimeHistograms}
+ * as soon as they are taken, the labels are not kept.
+ */
+final class AccessibilitySampler {
+
+	/**
+	 * Index of the node in the walk network per node of the graph,
+	 * <code>-1</code> for other nodes.
+	 */
+	private final int[] nodeIndexes;
+	private final int nodeCount;
+
+	/**
+	 * Indexes of the first and the second node of every segment.
+	 */
+	private final int[] segmentNodes;
+	private final List<PointList> segments = new ArrayList<>();
+
+	AccessibilitySampler(GraphHopperStorage storage, PtFlagEncoder encoder) {
+		this.nodeIndexes = new int[storage.getNodes()];
+		Arrays.fill(nodeIndexes, -1);
+		int nodes = 0;
+		final AllEdgesIterator edges = storage.getAllEdges();
+		final List<int[]> segmentNodeList = new ArrayList<>();
+		while (edges.next()) {
+			if (encoder.getEdgeType(edges.getFlags()) != GtfsStorage.EdgeType.HIGHWAY) {
+				continue;
+			}
+			final int baseNode = edges.getBaseNode();
+			final int adjNode = edges.getAdjNode();
+			if (nodeIndexes[baseNode] < 0) {
+				nodeIndexes[baseNode] = nodes++;
+			}
+			if (nodeIndexes[adjNode] < 0) {
+				nodeIndexes[adjNode] = nodes++;
+			}
+			segmentNodeList.add(new int[] { nodeIndexes[baseNode],
+					nodeIndexes[adjNode] });
+			segments.add(edges.fetchWayGeometry(3));
+		}
+		this.nodeCount = nodes;
+		this.segmentNodes = new int[2 * segmentNodeList.size()];
+		for (int index = 0; index < segmentNodeList.size(); index++) {
+			segmentNodes[2 * index] = segmentNodeList.get(index)[0];
+			segmentNodes[2 * index + 1] = segmentNodeList.get(index)[1];
+		}
+	}
+
+	/**
+	 * @param searches
+	 *            creates a new search per sample
+	 * @param startNode
+	 *            node the searches start from
+	 * @param startTimes
+	 *            departure times (arrival times for reverse searches)
+	 * @param reverse
+	 *            whether the searches are reverse (arrive-by) searches
+	 * @param maxTravelTime
+	 *            largest travel time in seconds which gets a bin of its own
+	 * @param threads
+	 *            parallelism of the fork-join pool
+	 */
+	Accessibility sample(Supplier<LabelsSetting> searches, int startNode,
+			long[] startTimes, boolean reverse, long maxTravelTime,
+			int threads) {
+		final TravelTimeHistograms histograms = new TravelTimeHistograms(
+				segments.size(), TravelTimeHistograms.DEFAULT_BIN_SECONDS,
+				maxTravelTime);
+		if (startTimes.length > 0) {
+			final ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+			try {
+				pool.invoke(new SampleTask(startTimes, 0, startTimes.length,
+						startTime -> sample(searches.get(), startNode,
+								startTime, reverse, histograms)));
+			} finally {
+				pool.shutdown();
+			}
+		}
+		return new Accessibility(segments, histograms);
+	}
+
+	private void sample(LabelsSetting search, int startNode, long startTime,
+			boolean reverse, TravelTimeHistograms histograms) {
+		final int[] nodeTimes = new int[nodeCount];
+		Arrays.fill(nodeTimes, TravelTimeHistograms.UNREACHED);
+		try (LabelArena arena = search.getArena()) {
+			final int[] labels = search.calcLabels(startNode, startTime,
+					startTime);
+			for (int label : labels) {
+				final int node = nodeIndexes[arena.getAdjNode(label)];
+				if (node < 0) {
+					continue;
+				}
+				final long travelTime = reverse ? startTime
+						- arena.getCurrentTime(label) : arena
+						.getCurrentTime(label) - startTime;
+				final int seconds = (int) Math.min(travelTime,
+						Integer.MAX_VALUE);
+				if (nodeTimes[node] == TravelTimeHistograms.UNREACHED
+						|| seconds < nodeTimes[node]) {
+					nodeTimes[node] = seconds;
+				}
+			}
+		}
+		final int[] segmentTimes = new int[segments.size()];
+		for (int segment = 0; segment < segmentTimes.length; segment++) {
+			final int first = nodeTimes[segmentNodes[2 * segment]];
+			final int second = nodeTimes[segmentNodes[2 * segment + 1]];
+			segmentTimes[segment] = first == TravelTimeHistograms.UNREACHED
+					|| second == TravelTimeHistograms.UNREACHED ? TravelTimeHistograms.UNREACHED
+					: Math.max(first, second);
+		}
+		histograms.addSample(segmentTimes);
+	}
+
+	/**
+	 * Samples a range of start times, split in halves down to single start
+	 * times.
+	 */
+	private static final class SampleTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long[] startTimes;
+		private final int from;
+		private final int to;
+		private final LongConsumer sampler;
+
+		SampleTask(long[] startTimes, int from, int to, LongConsumer sampler) {
+			this.startTimes = startTimes;
+			this.from = from;
+			this.to = to;
+			this.sampler = sampler;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				sampler.accept(startTimes[from]);
+			} else {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new SampleTask(startTimes, from, middle, sampler),
+						new SampleTask(startTimes, middle, to, sampler));
+			}
+		}
+	}
+}
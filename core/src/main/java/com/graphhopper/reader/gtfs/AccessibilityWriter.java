@@ -0,0 +1,101 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import javax.json.spi.JsonProvider;
+import javax.json.stream.JsonGenerator;
+
+import com.graphhopper.util.PointList;
+
+/**
+ * Writes accessibility as a GeoJSON feature collection with one
+ * <code>LineString</code> per segment which was reached in at least one
+ * sample. Features carry the number of <code>samples</code>, the number of
+ * samples which <code>reached</code> the segment and the travel time
+ * percentiles in seconds as <code>p50</code>, <code>p90</code> and so on,
+ * <code>null</code> if the segment was not reached in that share of the
+ * samples. Coordinates are rounded to six decimal places.
+ */
+public class AccessibilityWriter {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private AccessibilityWriter() {
+	}
+
+	/**
+	 * Writes the accessibility, the stream is flushed but not closed.
+	 */
+	public static void write(Accessibility accessibility,
+			double[] percentiles, OutputStream os) throws IOException {
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(os,
+				StandardCharsets.UTF_8), BUFFER_SIZE);
+		final JsonGenerator generator = JsonProvider.provider()
+				.createGenerator(writer);
+		final String[] names = new String[percentiles.length];
+		for (int index = 0; index < percentiles.length; index++) {
+			final double percentile = percentiles[index];
+			names[index] = "p"
+					+ (percentile == Math.rint(percentile) ? String
+							.valueOf((long) percentile) : String
+							.valueOf(percentile));
+		}
+		final TravelTimeHistograms histograms = accessibility.getHistograms();
+		final int samples = histograms.getSamples();
+
+		generator.writeStartObject();
+		generator.write("type", "FeatureCollection");
+		generator.writeStartArray("features");
+		for (int segment = 0; segment < histograms.size(); segment++) {
+			final int reached = histograms.getReached(segment);
+			if (reached == 0) {
+				continue;
+			}
+			generator.writeStartObject();
+			generator.write("type", "Feature");
+
+			generator.writeStartObject("properties");
+			generator.write("samples", samples);
+			generator.write("reached", reached);
+			for (int index = 0; index < percentiles.length; index++) {
+				final int travelTime = histograms.getPercentile(segment,
+						percentiles[index]);
+				if (travelTime == TravelTimeHistograms.UNREACHED) {
+					generator.writeNull(names[index]);
+				} else {
+					generator.write(names[index], travelTime);
+				}
+			}
+			generator.writeEnd();
+
+			generator.writeStartObject("geometry");
+			generator.write("type", "LineString");
+			generator.writeStartArray("coordinates");
+			final PointList pointList = accessibility.getSegments()
+					.get(segment);
+			for (int index = 0; index < pointList.size(); index++) {
+				generator.writeStartArray();
+				generator.write(round(pointList.getLon(index)));
+				generator.write(round(pointList.getLat(index)));
+				generator.writeEnd();
+			}
+			generator.writeEnd();
+			generator.writeEnd();
+
+			generator.writeEnd();
+		}
+		generator.writeEnd();
+		generator.writeEnd();
+		generator.flush();
+		writer.flush();
+	}
+
+	private static double round(double value) {
+		return Math.round(value * 1e6) / 1e6;
+	}
+}
@@ -0,0 +1,151 @@
+package com.graphhopper.reader.gtfs;
+
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays storage of labels on the heap.
+ * <p>
+ * Instead of allocating a {@link Label} object per label, the fields of the
+ * labels are kept in parallel primitive arrays indexed by the label id. The
+ * parent of a label is referenced by its id, {@link #NO_LABEL} for the root
+ * label. Labels are only appended, ids stay valid for the lifetime of the
+ * arena so that parent chains can be followed after the search.
+ */
+final class ArrayLabelArena implements LabelArena {
+
+	/**
+	 * Heap taken by the fields of a label.
+	 */
+	static final int BYTES_PER_LABEL = 8 + 4 + 4 + 4 + 8 + 4;
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final int maxCapacity;
+
+	private long[] currentTimes;
+	private int[] edges;
+	private int[] adjNodes;
+	private int[] nTransfers;
+	private long[] firstPtDepartureTimes;
+	private int[] parents;
+	/**
+	 * Allocated when the first thread count is set.
+	 */
+	private int[] threads;
+	private int size;
+
+	ArrayLabelArena() {
+		this(INITIAL_CAPACITY);
+	}
+
+	ArrayLabelArena(int capacity) {
+		this(capacity, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param maxCapacity
+	 *            number of labels the arena never grows beyond
+	 */
+	ArrayLabelArena(int capacity, int maxCapacity) {
+		capacity = Math.max(Math.min(capacity, maxCapacity), 1);
+		this.maxCapacity = maxCapacity;
+		this.currentTimes = new long[capacity];
+		this.edges = new int[capacity];
+		this.adjNodes = new int[capacity];
+		this.nTransfers = new int[capacity];
+		this.firstPtDepartureTimes = new long[capacity];
+		this.parents = new int[capacity];
+	}
+
+	@Override
+	public int add(long currentTime, int edge, int adjNode, int nTransfers,
+			long firstPtDepartureTime, int parent) {
+		if (size == currentTimes.length) {
+			if (size >= maxCapacity) {
+				throw new IllegalStateException("Arena is full at "
+						+ maxCapacity + " labels.");
+			}
+			grow();
+		}
+		final int id = size++;
+		this.currentTimes[id] = currentTime;
+		this.edges[id] = edge;
+		this.adjNodes[id] = adjNode;
+		this.nTransfers[id] = nTransfers;
+		this.firstPtDepartureTimes[id] = firstPtDepartureTime;
+		this.parents[id] = parent;
+		return id;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	boolean isFull() {
+		return size >= maxCapacity;
+	}
+
+	@Override
+	public long getCurrentTime(int id) {
+		return currentTimes[id];
+	}
+
+	@Override
+	public int getEdge(int id) {
+		return edges[id];
+	}
+
+	@Override
+	public int getAdjNode(int id) {
+		return adjNodes[id];
+	}
+
+	@Override
+	public int getNTransfers(int id) {
+		return nTransfers[id];
+	}
+
+	@Override
+	public long getFirstPtDepartureTime(int id) {
+		return firstPtDepartureTimes[id];
+	}
+
+	@Override
+	public int getParent(int id) {
+		return parents[id];
+	}
+
+	@Override
+	public Label toLabel(int id) {
+		return new Label(currentTimes[id], edges[id], adjNodes[id],
+				nTransfers[id], firstPtDepartureTimes[id], null);
+	}
+
+	@Override
+	public int getThreads(int id) {
+		return threads == null ? 0 : threads[id];
+	}
+
+	@Override
+	public void setThreads(int id, int threads) {
+		if (this.threads == null) {
+			this.threads = new int[currentTimes.length];
+		}
+		this.threads[id] = threads;
+	}
+
+	private void grow() {
+		final int capacity = (int) Math.min(maxCapacity,
+				(long) currentTimes.length << 1);
+		currentTimes = Arrays.copyOf(currentTimes, capacity);
+		edges = Arrays.copyOf(edges, capacity);
+		adjNodes = Arrays.copyOf(adjNodes, capacity);
+		nTransfers = Arrays.copyOf(nTransfers, capacity);
+		firstPtDepartureTimes = Arrays.copyOf(firstPtDepartureTimes, capacity);
+		parents = Arrays.copyOf(parents, capacity);
+		if (threads != null) {
+			threads = Arrays.copyOf(threads, capacity);
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.graphhopper.util.PointList;
+
+/**
+ * Reads roads written by the {@link BinaryRoadsWriter}.
+ */
+public class BinaryRoadsReader {
+
+	private BinaryRoadsReader() {
+	}
+
+	public static Roads read(InputStream is) throws IOException {
+		final DataInputStream in = new DataInputStream(
+				new BufferedInputStream(is));
+		final int magic = in.readInt();
+		if (magic != BinaryRoadsWriter.MAGIC) {
+			throw new IOException("Not a roads file, unexpected magic number "
+					+ Integer.toHexString(magic) + ".");
+		}
+		final int version = in.readUnsignedByte();
+		if (version != BinaryRoadsWriter.VERSION) {
+			throw new IOException("Unsupported roads file version " + version
+					+ ".");
+		}
+		final double scale = Math.pow(10, in.readUnsignedByte());
+
+		final List<Road> roads = new ArrayList<>();
+		long lat = 0;
+		long lon = 0;
+		long sizePlusOne;
+		while ((sizePlusOne = readVarLong(in)) != 0) {
+			final int size = (int) (sizePlusOne - 1);
+			final long currentTime = unZigZag(readVarLong(in));
+			final int numberOfTransfers = (int) unZigZag(readVarLong(in));
+			final int numberOfThreads = (int) unZigZag(readVarLong(in));
+			final PointList pointList = new PointList(size, false);
+			for (int index = 0; index < size; index++) {
+				lat += unZigZag(readVarLong(in));
+				lon += unZigZag(readVarLong(in));
+				pointList.add(lat / scale, lon / scale);
+			}
+			roads.add(new Road(currentTime, numberOfTransfers, pointList,
+					numberOfThreads));
+		}
+		return new Roads(roads);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final int b = in.read();
+			if (b < 0) {
+				throw new EOFException("Unexpected end of roads file.");
+			}
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint.");
+	}
+
+	private static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -0,0 +1,125 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.graphhopper.util.PointList;
+
+/**
+ * Writes roads in a compact binary format.
+ * <p>
+ * Layout of the format:
+ *
+ * <pre>
+ * header:
+ *   int32   magic, "RDS1" (0x52445331), big-endian
+ *   uint8   version, currently 1
+ *   uint8   precision p, number of decimal places of the coordinates
+ * roads, repeated:
+ *   varint  number of points of the road plus one
+ *   varint  currentTime, zig-zag encoded
+ *   varint  numberOfTransfers, zig-zag encoded
+ *   varint  numberOfThreads, zig-zag encoded
+ *   points, repeated:
+ *     varint  delta of lat, zig-zag encoded
+ *     varint  delta of lon, zig-zag encoded
+ * trailer:
+ *   varint  0
+ * </pre>
+ *
+ * Varints are unsigned LEB128 (7 bits per byte, least significant group
+ * first). Coordinates are quantized to <code>round(value * 10^p)</code>, each
+ * point stores the difference to the previous point of the stream, the first
+ * point of the stream is relative to <code>(0, 0)</code>.
+ *
+ * @see BinaryRoadsReader
+ */
+public class BinaryRoadsWriter implements RoadsWriter {
+
+	public static final int MAGIC = 0x52445331;
+
+	public static final int VERSION = 1;
+
+	public static final int DEFAULT_PRECISION = 6;
+
+	public static final int MAX_PRECISION = 9;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final DataOutputStream os;
+	private final int precision;
+	private final double scale;
+	private long lastLat = 0;
+	private long lastLon = 0;
+
+	public BinaryRoadsWriter(OutputStream os) {
+		this(os, DEFAULT_PRECISION);
+	}
+
+	/**
+	 * @param os
+	 *            output stream to write to, will be closed on {@link #close()}
+	 * @param precision
+	 *            number of decimal places of the coordinates
+	 */
+	public BinaryRoadsWriter(OutputStream os, int precision) {
+		if (precision < 0 || precision > MAX_PRECISION) {
+			throw new IllegalArgumentException("Precision must be between 0 and "
+					+ MAX_PRECISION + ", but was: " + precision);
+		}
+		this.os = new DataOutputStream(new BufferedOutputStream(os,
+				BUFFER_SIZE));
+		this.precision = precision;
+		this.scale = Math.pow(10, precision);
+	}
+
+	@Override
+	public void writeStart() throws IOException {
+		os.writeInt(MAGIC);
+		os.writeByte(VERSION);
+		os.writeByte(precision);
+	}
+
+	@Override
+	public void write(Road road) throws IOException {
+		final PointList pointList = road.getPointList();
+		final int size = pointList.size();
+		writeVarLong(size + 1);
+		writeVarLong(zigZag(road.getCurrentTime()));
+		writeVarLong(zigZag(road.getNumberOfTransfers()));
+		writeVarLong(zigZag(road.getNumberOfThreads()));
+		for (int index = 0; index < size; index++) {
+			final long lat = Math.round(pointList.getLat(index) * scale);
+			final long lon = Math.round(pointList.getLon(index) * scale);
+			writeVarLong(zigZag(lat - lastLat));
+			writeVarLong(zigZag(lon - lastLon));
+			lastLat = lat;
+			lastLon = lon;
+		}
+	}
+
+	@Override
+	public void writeEnd() throws IOException {
+		writeVarLong(0);
+		os.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		os.close();
+	}
+
+	private void writeVarLong(long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			os.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		os.write((int) value);
+	}
+
+	private static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+}
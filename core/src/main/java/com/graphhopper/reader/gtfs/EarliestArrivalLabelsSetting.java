@@ -0,0 +1,160 @@
+package com.graphhopper.reader.gtfs;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.weighting.TimeDependentWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * Single-criterion search for the earliest arrival (or the latest departure
+ * in reverse mode) at every node.
+ * <p>
+ * Unlike the {@link MultiCriteriaLabelsSetting} there is no Pareto set of
+ * labels per node, only the best time and the id of the label which reached
+ * it, kept in primitive arrays indexed by node. Since the travel times of the
+ * time-expanded graph are FIFO, a node is final once its label is polled from
+ * the heap. Number of transfers is carried along but not optimized. The range
+ * query end time is ignored, the search departs at the start time. Requests
+ * for roads with a departure window are rejected before they get here.
+ */
+final class EarliestArrivalLabelsSetting implements LabelsSetting {
+
+	private final PtFlagEncoder flagEncoder;
+	private final TimeDependentWeighting weighting;
+	private final GraphExplorer explorer;
+	private final int maxVisitedNodes;
+	private final SearchBounds bounds;
+	private final boolean reverse;
+	private final LabelArena arena;
+	private final LabelHeap heap;
+	private final long[] bestTimes;
+	private final int[] labelIds;
+	private IntConsumer settledLabels;
+	private int visitedNodes;
+	private boolean deadlineReached;
+	private int labelsCreated;
+	private int labelsRejected;
+	private int dominatedRemovals;
+	private int peakHeapSize;
+
+	EarliestArrivalLabelsSetting(Graph graph, Weighting weighting,
+			int maxVisitedNodes, SearchBounds bounds, GraphExplorer explorer,
+			boolean reverse) {
+		this.weighting = (TimeDependentWeighting) weighting;
+		this.flagEncoder = (PtFlagEncoder) weighting.getFlagEncoder();
+		this.maxVisitedNodes = maxVisitedNodes;
+		this.bounds = bounds;
+		this.explorer = explorer;
+		this.reverse = reverse;
+		int size = Math.min(Math.max(200, graph.getNodes() / 10), 2000);
+		this.heap = new LabelHeap(size, reverse);
+		this.arena = bounds.createArena(size);
+		this.bestTimes = new long[graph.getNodes()];
+		Arrays.fill(bestTimes, reverse ? Long.MIN_VALUE : Long.MAX_VALUE);
+		this.labelIds = new int[graph.getNodes()];
+		Arrays.fill(labelIds, LabelArena.NO_LABEL);
+	}
+
+	@Override
+	public int[] calcLabels(int from, long startTime, long rangeQueryEndTime) {
+		final IntArrayList results = new IntArrayList();
+		final long timeLimit = bounds.getTimeLimit(startTime, startTime,
+				reverse);
+		final int maxTransfers = bounds.getMaxTransfers();
+		final int root = arena.add(startTime, EdgeIterator.NO_EDGE, from, 0,
+				Long.MAX_VALUE, LabelArena.NO_LABEL);
+		bestTimes[from] = startTime;
+		labelIds[from] = root;
+		heap.add(root, startTime, 0, Long.MAX_VALUE);
+		while (!heap.isEmpty()) {
+			if (++visitedNodes > maxVisitedNodes) {
+				break;
+			}
+			if (bounds.isDeadlineReached(visitedNodes)) {
+				deadlineReached = true;
+				break;
+			}
+			final int labelId = heap.poll();
+			results.add(labelId);
+			if (settledLabels != null) {
+				settledLabels.accept(labelId);
+			}
+			final Label label = arena.toLabel(labelId);
+			for (EdgeIteratorState edge : explorer.exploreEdgesAround(label)) {
+				final long travelTime = weighting.calcTravelTimeSeconds(edge,
+						label.currentTime);
+				final long nextTime = reverse ? label.currentTime - travelTime
+						: label.currentTime + travelTime;
+				final int adjNode = edge.getAdjNode();
+				if ((reverse ? bestTimes[adjNode] >= nextTime
+						: bestTimes[adjNode] <= nextTime)
+						|| (reverse ? nextTime < timeLimit
+								: nextTime > timeLimit)) {
+					labelsRejected++;
+					continue;
+				}
+				long firstPtDepartureTime = label.firstPtDepartureTime;
+				if (firstPtDepartureTime == Long.MAX_VALUE
+						&& flagEncoder.getEdgeType(edge.getFlags()) == (reverse ? GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK
+								: GtfsStorage.EdgeType.BOARD)) {
+					firstPtDepartureTime = nextTime;
+				}
+				final int nTransfers = label.nTransfers
+						+ weighting.calcNTransfers(edge);
+				if (nTransfers > maxTransfers) {
+					labelsRejected++;
+					continue;
+				}
+				final int id = arena.add(nextTime, edge.getEdge(), adjNode,
+						nTransfers, firstPtDepartureTime, labelId);
+				if (labelIds[adjNode] != LabelArena.NO_LABEL) {
+					heap.remove(labelIds[adjNode]);
+					arena.release(labelIds[adjNode]);
+					dominatedRemovals++;
+				}
+				bestTimes[adjNode] = nextTime;
+				labelIds[adjNode] = id;
+				heap.add(id, nextTime, nTransfers, firstPtDepartureTime);
+				labelsCreated++;
+				peakHeapSize = Math.max(peakHeapSize, heap.size());
+			}
+			arena.release(labelId);
+		}
+		return results.toArray();
+	}
+
+	@Override
+	public LabelArena getArena() {
+		return arena;
+	}
+
+	/**
+	 * Labels are final once they are polled from the heap.
+	 */
+	@Override
+	public void setSettledLabelListener(IntConsumer listener) {
+		this.settledLabels = listener;
+	}
+
+	@Override
+	public int getVisitedNodes() {
+		return visitedNodes;
+	}
+
+	@Override
+	public boolean isDeadlineReached() {
+		return deadlineReached;
+	}
+
+	@Override
+	public void addStatistics(QueryStatistics statistics) {
+		statistics.addSearch(visitedNodes, labelsCreated, labelsRejected,
+				dominatedRemovals, peakHeapSize, 1);
+		statistics.addDeadlineReached(deadlineReached);
+	}
+}
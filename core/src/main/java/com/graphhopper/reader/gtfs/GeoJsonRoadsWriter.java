@@ -0,0 +1,132 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.json.spi.JsonProvider;
+import javax.json.stream.JsonGenerator;
+
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+
+/**
+ * Streams roads as a GeoJSON feature collection.
+ * <p>
+ * Unlike {@link Roads#toJsonObject()} no JSON object tree is built, features
+ * are written to the buffered output as they are passed to
+ * {@link #write(Road)}. Coordinates are rounded to a fixed number of decimal
+ * places.
+ */
+public class GeoJsonRoadsWriter implements RoadsWriter {
+
+	public static final int DEFAULT_PRECISION = 6;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Writer writer;
+	private final JsonGenerator generator;
+	private final String var;
+	private final double scale;
+	private boolean started = false;
+	private boolean ended = false;
+
+	public GeoJsonRoadsWriter(OutputStream os) {
+		this(os, null, false, DEFAULT_PRECISION);
+	}
+
+	/**
+	 * @param os
+	 *            output stream to write to, will be closed on {@link #close()}
+	 * @param var
+	 *            name of the variable to assign GeoJSON to, may be empty
+	 * @param pretty
+	 *            whether the output should be pretty-printed
+	 * @param precision
+	 *            number of decimal places of the coordinates
+	 */
+	public GeoJsonRoadsWriter(OutputStream os, String var, boolean pretty,
+			int precision) {
+		this.writer = new BufferedWriter(new OutputStreamWriter(os,
+				StandardCharsets.UTF_8), BUFFER_SIZE);
+		final Map<String, ?> config = pretty ? Collections.singletonMap(
+				JsonGenerator.PRETTY_PRINTING, Boolean.TRUE) : Collections
+				.<String, Object> emptyMap();
+		this.generator = JsonProvider.provider()
+				.createGeneratorFactory(config).createGenerator(writer);
+		this.var = var;
+		this.scale = Math.pow(10, precision);
+	}
+
+	@Override
+	public void writeStart() throws IOException {
+		if (started) {
+			throw new IllegalStateException("Already started.");
+		}
+		started = true;
+		if (!Helper.isEmpty(var)) {
+			writer.write("var " + var + "=");
+		}
+		generator.writeStartObject();
+		generator.write("type", "FeatureCollection");
+		generator.writeStartArray("features");
+	}
+
+	@Override
+	public void write(Road road) {
+		generator.writeStartObject();
+		generator.write("type", "Feature");
+
+		generator.writeStartObject("properties");
+		generator.write("currentTime", road.getCurrentTime());
+		generator.write("numberOfTransfers", road.getNumberOfTransfers());
+		generator.write("numberOfThreads", road.getNumberOfThreads());
+		generator.writeEnd();
+
+		generator.writeStartObject("geometry");
+		generator.write("type", "LineString");
+		generator.writeStartArray("coordinates");
+		final PointList pointList = road.getPointList();
+		for (int index = 0; index < pointList.size(); index++) {
+			generator.writeStartArray();
+			generator.write(round(pointList.getLon(index)));
+			generator.write(round(pointList.getLat(index)));
+			generator.writeEnd();
+		}
+		generator.writeEnd();
+		generator.writeEnd();
+
+		generator.writeEnd();
+	}
+
+	@Override
+	public void writeEnd() throws IOException {
+		generator.writeEnd();
+		generator.writeEnd();
+		generator.flush();
+		if (!Helper.isEmpty(var)) {
+			writer.write(";");
+		}
+		writer.flush();
+		ended = true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (ended) {
+			generator.close();
+		} else {
+			// Generator refuses to close incomplete JSON
+			writer.close();
+		}
+	}
+
+	private double round(double value) {
+		return Math.round(value * scale) / scale;
+	}
+}
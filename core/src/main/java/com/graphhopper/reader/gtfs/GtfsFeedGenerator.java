@@ -0,0 +1,582 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.Helper;
+
+/**
+ * Writes synthetic GTFS feeds of a given size, reproducible from a seed.
+ * <p>
+ * Stops are scattered around a center with the given average spacing. Every
+ * route is a chain of nearby stops heading roughly in one direction and is
+ * served in both directions with a constant headway per route, on weekdays
+ * and (with twice the headway) on weekends of the service days. Trips are
+ * written explicitly to <code>trips.txt</code> and
+ * <code>stop_times.txt</code> by default, or as <code>frequencies.txt</code>
+ * entries.
+ * <p>
+ * Run with <code>-feed.file=&lt;zip file&gt;</code> and either a
+ * <code>-preset</code> (<code>town</code>, <code>city</code>,
+ * <code>region</code> or <code>country</code>) or the single parameters, see
+ * {@link #configure(CmdArgs)}.
+ */
+public class GtfsFeedGenerator {
+
+	public static final String TOWN = "town";
+	public static final String CITY = "city";
+	public static final String REGION = "region";
+	public static final String COUNTRY = "country";
+
+	private static final DateTimeFormatter GTFS_DATE = DateTimeFormatter
+			.ofPattern("yyyyMMdd");
+	private static final double BUS_SPEED_METERS_PER_SECOND = 7;
+	private static final int MINIMUM_HOP_SECONDS = 60;
+	/**
+	 * Number of nearest candidate stops for the next stop of a route.
+	 */
+	private static final int CANDIDATES = 6;
+
+	public static void main(String[] strs) throws IOException {
+		final CmdArgs args = CmdArgs.read(strs);
+		final String feedFile = args.get("feed.file", "");
+		if (Helper.isEmpty(feedFile)) {
+			throw new IllegalArgumentException("Feed file is not specified.");
+		}
+		final GtfsFeedGenerator generator = new GtfsFeedGenerator()
+				.configure(args);
+		final long trips = generator.write(new File(feedFile));
+		System.out.println(MessageFormat.format(
+				"Wrote {0} stops, {1} routes and {2} trips to {3}.",
+				generator.stops, generator.routes, trips, feedFile));
+	}
+
+	private long seed = 1;
+	private double centerLat = 48.4;
+	private double centerLon = 9.99;
+	private double stopSpacing = 400;
+	private int stops = 150;
+	private int routes = 10;
+	private int stopsPerRoute = 15;
+	private int minHeadway = 15 * 60;
+	private int maxHeadway = 30 * 60;
+	private int firstDeparture = 5 * 60 * 60;
+	private int lastDeparture = 23 * 60 * 60;
+	private LocalDate startDate = LocalDate.of(2017, 1, 2);
+	private int serviceDays = 7;
+	private boolean frequencies;
+
+	public GtfsFeedGenerator() {
+	}
+
+	/**
+	 * Sets the sizes of one of the presets.
+	 */
+	public GtfsFeedGenerator preset(String preset) {
+		switch (preset) {
+		case TOWN:
+			return size(150, 10, 15, 15 * 60, 30 * 60);
+		case CITY:
+			return size(1500, 80, 25, 5 * 60, 20 * 60);
+		case REGION:
+			return size(10000, 400, 30, 10 * 60, 60 * 60);
+		case COUNTRY:
+			return size(50000, 2000, 40, 15 * 60, 120 * 60);
+		default:
+			throw new IllegalArgumentException("Unknown preset: " + preset);
+		}
+	}
+
+	private GtfsFeedGenerator size(int stops, int routes, int stopsPerRoute,
+			int minHeadway, int maxHeadway) {
+		this.stops = stops;
+		this.routes = routes;
+		this.stopsPerRoute = stopsPerRoute;
+		this.minHeadway = minHeadway;
+		this.maxHeadway = maxHeadway;
+		return this;
+	}
+
+	/**
+	 * Reads <code>preset</code>, <code>seed</code>, <code>stops</code>,
+	 * <code>routes</code>, <code>stops.per.route</code>,
+	 * <code>headway.min</code> and <code>headway.max</code> (seconds),
+	 * <code>departure.first</code> and <code>departure.last</code> (seconds of
+	 * the day), <code>service.start</code> (<code>yyyyMMdd</code>),
+	 * <code>service.days</code>, <code>stop.spacing</code> (meters),
+	 * <code>center.lat</code>, <code>center.lon</code> and
+	 * <code>frequencies</code>. Single parameters override the preset.
+	 */
+	public GtfsFeedGenerator configure(CmdArgs args) {
+		final String preset = args.get("preset", "");
+		if (!Helper.isEmpty(preset)) {
+			preset(preset);
+		}
+		seed = args.getLong("seed", seed);
+		stops = args.getInt("stops", stops);
+		routes = args.getInt("routes", routes);
+		stopsPerRoute = args.getInt("stops.per.route", stopsPerRoute);
+		minHeadway = args.getInt("headway.min", minHeadway);
+		maxHeadway = args.getInt("headway.max", maxHeadway);
+		firstDeparture = args.getInt("departure.first", firstDeparture);
+		lastDeparture = args.getInt("departure.last", lastDeparture);
+		final String start = args.get("service.start", "");
+		if (!Helper.isEmpty(start)) {
+			startDate = LocalDate.parse(start, GTFS_DATE);
+		}
+		serviceDays = args.getInt("service.days", serviceDays);
+		stopSpacing = args.getDouble("stop.spacing", stopSpacing);
+		centerLat = args.getDouble("center.lat", centerLat);
+		centerLon = args.getDouble("center.lon", centerLon);
+		frequencies = args.getBool("frequencies", frequencies);
+		return validate();
+	}
+
+	private GtfsFeedGenerator validate() {
+		if (stops < 2 || routes < 1 || stopsPerRoute < 2
+				|| stopsPerRoute > stops) {
+			throw new IllegalArgumentException(MessageFormat.format(
+					"Invalid sizes: {0} stops, {1} routes, {2} stops per route.",
+					stops, routes, stopsPerRoute));
+		}
+		if (minHeadway < 60 || maxHeadway < minHeadway) {
+			throw new IllegalArgumentException(MessageFormat.format(
+					"Invalid headways: {0} to {1} seconds.", minHeadway,
+					maxHeadway));
+		}
+		if (lastDeparture < firstDeparture || serviceDays < 1) {
+			throw new IllegalArgumentException(
+					"Invalid service time or days.");
+		}
+		return this;
+	}
+
+	public GtfsFeedGenerator seed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	public double getCenterLat() {
+		return centerLat;
+	}
+
+	public double getCenterLon() {
+		return centerLon;
+	}
+
+	public LocalDate getStartDate() {
+		return startDate;
+	}
+
+	/**
+	 * @return number of written trips.
+	 */
+	public long write(File file) throws IOException {
+		final Random random = new Random(seed);
+		final double[][] coordinates = scatterStops(random);
+		final StopIndex stopIndex = new StopIndex(coordinates);
+		final List<int[]> routeStops = new ArrayList<>(routes);
+		final int[] headways = new int[routes];
+		for (int route = 0; route < routes; route++) {
+			headways[route] = headway(random);
+			routeStops.add(chainStops(random, coordinates, stopIndex));
+		}
+
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(
+				file))) {
+			final Writer writer = new BufferedWriter(new OutputStreamWriter(
+					zos, StandardCharsets.UTF_8), 1 << 16);
+
+			zos.putNextEntry(entry("agency.txt"));
+			writer.write("agency_id,agency_name,agency_url,agency_timezone\n");
+			writer.write("synthetic,Synthetic Transit,http://example.com,Europe/Berlin\n");
+			writer.flush();
+
+			zos.putNextEntry(entry("calendar.txt"));
+			writer.write("service_id,monday,tuesday,wednesday,thursday,friday,saturday,sunday,start_date,end_date\n");
+			final String startDateString = startDate.format(GTFS_DATE);
+			final String endDateString = startDate.plusDays(serviceDays - 1)
+					.format(GTFS_DATE);
+			writer.write("weekday,1,1,1,1,1,0,0," + startDateString + ","
+					+ endDateString + "\n");
+			writer.write("weekend,0,0,0,0,0,1,1," + startDateString + ","
+					+ endDateString + "\n");
+			writer.flush();
+
+			zos.putNextEntry(entry("stops.txt"));
+			writer.write("stop_id,stop_name,stop_lat,stop_lon\n");
+			for (int stop = 0; stop < stops; stop++) {
+				writer.write(String.format(Locale.ROOT,
+						"s%d,Stop %d,%.6f,%.6f\n", stop, stop,
+						coordinates[stop][0], coordinates[stop][1]));
+			}
+			writer.flush();
+
+			zos.putNextEntry(entry("routes.txt"));
+			writer.write("route_id,agency_id,route_short_name,route_long_name,route_type\n");
+			for (int route = 0; route < routes; route++) {
+				writer.write("r" + route + ",synthetic," + route + ",Route "
+						+ route + ",3\n");
+			}
+			writer.flush();
+
+			final int[][] hopSeconds = new int[routes][];
+			for (int route = 0; route < routes; route++) {
+				hopSeconds[route] = hopSeconds(coordinates,
+						routeStops.get(route));
+			}
+
+			zos.putNextEntry(entry("trips.txt"));
+			writer.write("route_id,service_id,trip_id,direction_id\n");
+			final long trips = forEachTrip(headways, (route, service,
+					direction, departure) -> writer.write("r" + route + ","
+					+ service + ","
+					+ tripId(route, service, direction, departure) + ","
+					+ direction + "\n"));
+			writer.flush();
+
+			zos.putNextEntry(entry("stop_times.txt"));
+			writer.write("trip_id,arrival_time,departure_time,stop_id,stop_sequence\n");
+			forEachTrip(headways, (route, service, direction, departure) -> {
+				final String tripId = tripId(route, service, direction,
+						departure);
+				final int[] stopsOfRoute = routeStops.get(route);
+				int time = departure;
+				for (int index = 0; index < stopsOfRoute.length; index++) {
+					final int stop = stopsOfRoute[direction == 0 ? index
+							: stopsOfRoute.length - 1 - index];
+					if (index > 0) {
+						time += hopSeconds[route][direction == 0 ? index - 1
+								: stopsOfRoute.length - 1 - index];
+					}
+					final String timeString = time(time);
+					writer.write(tripId + "," + timeString + "," + timeString
+							+ ",s" + stop + "," + index + "\n");
+				}
+			});
+			writer.flush();
+
+			if (frequencies) {
+				zos.putNextEntry(entry("frequencies.txt"));
+				writer.write("trip_id,start_time,end_time,headway_secs,exact_times\n");
+				forEachTrip(headways,
+						(route, service, direction, departure) -> {
+							final int headway = headway(headways, route,
+									service);
+							writer.write(tripId(route, service, direction,
+									departure)
+									+ ","
+									+ time(departure)
+									+ ","
+									+ time(lastDeparture + 1)
+									+ ","
+									+ headway + ",1\n");
+						});
+				writer.flush();
+			}
+			return trips;
+		}
+	}
+
+	private double[][] scatterStops(Random random) {
+		final double radius = stopSpacing * Math.sqrt(stops) / 2;
+		final double metersPerDegreeLat = DistanceCalcEarth.R * Math.PI / 180;
+		final double metersPerDegreeLon = metersPerDegreeLat
+				* Math.cos(Math.toRadians(centerLat));
+		final double[][] coordinates = new double[stops][];
+		for (int stop = 0; stop < stops; stop++) {
+			final double x = (random.nextDouble() * 2 - 1) * radius;
+			final double y = (random.nextDouble() * 2 - 1) * radius;
+			coordinates[stop] = new double[] {
+					centerLat + y / metersPerDegreeLat,
+					centerLon + x / metersPerDegreeLon };
+		}
+		return coordinates;
+	}
+
+	private int headway(Random random) {
+		// Whole minutes
+		return 60 * (minHeadway / 60 + random.nextInt((maxHeadway
+				- minHeadway) / 60 + 1));
+	}
+
+	/**
+	 * Chains stops from a random first stop, each next stop is one of the
+	 * nearest stops not yet on the route, preferring the current heading.
+	 */
+	private int[] chainStops(Random random, double[][] coordinates,
+			StopIndex stopIndex) {
+		final int[] routeStops = new int[stopsPerRoute];
+		routeStops[0] = random.nextInt(stops);
+		double heading = Double.NaN;
+		for (int index = 1; index < stopsPerRoute; index++) {
+			final int current = routeStops[index - 1];
+			final int[] candidates = stopIndex.nearest(coordinates[current],
+					CANDIDATES, routeStops, index);
+			final int pick = random.nextInt(CANDIDATES);
+			int next = candidates[Math.min(pick, candidates.length - 1)];
+			if (!Double.isNaN(heading)) {
+				// Jitter per candidate lets routes bend among similar headings
+				double bestDeviation = Double.MAX_VALUE;
+				for (int candidate : candidates) {
+					final double deviation = Math.abs(angle(heading,
+							heading(coordinates[current],
+									coordinates[candidate])))
+							+ random.nextDouble() * 0.1;
+					if (deviation < bestDeviation) {
+						bestDeviation = deviation;
+						next = candidate;
+					}
+				}
+			}
+			heading = heading(coordinates[current], coordinates[next]);
+			routeStops[index] = next;
+		}
+		return routeStops;
+	}
+
+	private int[] hopSeconds(double[][] coordinates, int[] routeStops) {
+		final DistanceCalc distanceCalc = Helper.DIST_EARTH;
+		final int[] hopSeconds = new int[routeStops.length - 1];
+		for (int index = 0; index < hopSeconds.length; index++) {
+			final double[] from = coordinates[routeStops[index]];
+			final double[] to = coordinates[routeStops[index + 1]];
+			final double distance = distanceCalc.calcDist(from[0], from[1],
+					to[0], to[1]);
+			hopSeconds[index] = Math.max(MINIMUM_HOP_SECONDS, (int) Math
+					.round(distance / BUS_SPEED_METERS_PER_SECOND / 60) * 60);
+		}
+		return hopSeconds;
+	}
+
+	private long forEachTrip(int[] headways, TripConsumer consumer)
+			throws IOException {
+		long trips = 0;
+		for (int route = 0; route < routes; route++) {
+			for (String service : new String[] { "weekday", "weekend" }) {
+				final int headway = headway(headways, route, service);
+				for (int direction = 0; direction < 2; direction++) {
+					if (frequencies) {
+						consumer.accept(route, service, direction,
+								firstDeparture);
+						trips++;
+						continue;
+					}
+					for (int departure = firstDeparture; departure <= lastDeparture; departure += headway) {
+						consumer.accept(route, service, direction, departure);
+						trips++;
+					}
+				}
+			}
+		}
+		return trips;
+	}
+
+	private static int headway(int[] headways, int route, String service) {
+		return "weekday".equals(service) ? headways[route]
+				: 2 * headways[route];
+	}
+
+	private static String tripId(int route, String service, int direction,
+			int departure) {
+		return "r" + route + "_" + service + "_" + direction + "_"
+				+ departure;
+	}
+
+	private static double heading(double[] from, double[] to) {
+		return Math.atan2(to[0] - from[0], to[1] - from[1]);
+	}
+
+	private static double angle(double first, double second) {
+		double angle = second - first;
+		while (angle > Math.PI) {
+			angle -= 2 * Math.PI;
+		}
+		while (angle < -Math.PI) {
+			angle += 2 * Math.PI;
+		}
+		return angle;
+	}
+
+	/**
+	 * @return entry with a fixed time, so that equal feeds are equal files.
+	 */
+	private ZipEntry entry(String name) {
+		final ZipEntry entry = new ZipEntry(name);
+		entry.setTime(startDate.atStartOfDay(ZoneOffset.UTC).toInstant()
+				.toEpochMilli());
+		return entry;
+	}
+
+	private static String time(int seconds) {
+		return String.format(Locale.ROOT, "%02d:%02d:%02d", seconds / 3600,
+				seconds / 60 % 60, seconds % 60);
+	}
+
+	private interface TripConsumer {
+		void accept(int route, String service, int direction, int departure)
+				throws IOException;
+	}
+
+	/**
+	 * Buckets of stops in a regular grid for nearest stop lookups.
+	 */
+	private static class StopIndex {
+
+		private final double[][] coordinates;
+		private final double minLat;
+		private final double minLon;
+		private final double cellLat;
+		private final double cellLon;
+		private final double minCellSize;
+		private final int rows;
+		private final int columns;
+		private final int[][] cells;
+
+		StopIndex(double[][] coordinates) {
+			this.coordinates = coordinates;
+			double minLat = Double.MAX_VALUE;
+			double maxLat = -Double.MAX_VALUE;
+			double minLon = Double.MAX_VALUE;
+			double maxLon = -Double.MAX_VALUE;
+			for (double[] coordinate : coordinates) {
+				minLat = Math.min(minLat, coordinate[0]);
+				maxLat = Math.max(maxLat, coordinate[0]);
+				minLon = Math.min(minLon, coordinate[1]);
+				maxLon = Math.max(maxLon, coordinate[1]);
+			}
+			this.minLat = minLat;
+			this.minLon = minLon;
+			// About four stops per cell
+			final int cellsPerSide = Math.max(1,
+					(int) Math.sqrt(coordinates.length / 4));
+			this.rows = cellsPerSide;
+			this.columns = cellsPerSide;
+			this.cellLat = Math.max(maxLat - minLat, 1e-9) / rows;
+			this.cellLon = Math.max(maxLon - minLon, 1e-9) / columns;
+			this.minCellSize = Math.min(cellLat,
+					cellLon * Math.cos(Math.toRadians(maxLat)));
+			final int[] counts = new int[rows * columns];
+			for (double[] coordinate : coordinates) {
+				counts[cell(coordinate)]++;
+			}
+			this.cells = new int[rows * columns][];
+			for (int cell = 0; cell < cells.length; cell++) {
+				cells[cell] = new int[counts[cell]];
+				counts[cell] = 0;
+			}
+			for (int stop = 0; stop < coordinates.length; stop++) {
+				final int cell = cell(coordinates[stop]);
+				cells[cell][counts[cell]++] = stop;
+			}
+		}
+
+		/**
+		 * @return up to <code>count</code> nearest stops, nearest first,
+		 *         excluding the first <code>excludedCount</code> stops of
+		 *         <code>excluded</code>.
+		 */
+		int[] nearest(double[] coordinate, int count, int[] excluded,
+				int excludedCount) {
+			final int row = row(coordinate[0]);
+			final int column = column(coordinate[1]);
+			final int[] result = new int[count];
+			final double[] distances = new double[count];
+			int size = 0;
+			for (int ring = 0; ring <= Math.max(rows, columns); ring++) {
+				for (int r = row - ring; r <= row + ring; r++) {
+					for (int c = column - ring; c <= column + ring; c++) {
+						if (r < 0 || r >= rows || c < 0 || c >= columns
+								|| Math.max(Math.abs(r - row),
+										Math.abs(c - column)) != ring) {
+							continue;
+						}
+						for (int stop : cells[r * columns + c]) {
+							if (contains(excluded, excludedCount, stop)) {
+								continue;
+							}
+							final double distance = squaredDistance(
+									coordinate, coordinates[stop]);
+							if (size < count) {
+								size++;
+							} else if (distance >= distances[size - 1]) {
+								continue;
+							}
+							int position = size - 1;
+							while (position > 0
+									&& distances[position - 1] > distance) {
+								distances[position] = distances[position - 1];
+								result[position] = result[position - 1];
+								position--;
+							}
+							distances[position] = distance;
+							result[position] = stop;
+						}
+					}
+				}
+				// Stops in further rings are at least ring cells away
+				if (size == count && ring > 0) {
+					final double reach = ring * minCellSize;
+					if (distances[size - 1] <= reach * reach) {
+						break;
+					}
+				}
+			}
+			if (size == 0) {
+				throw new IllegalStateException(
+						"Not enough stops for the route.");
+			}
+			final int[] nearest = new int[size];
+			System.arraycopy(result, 0, nearest, 0, size);
+			return nearest;
+		}
+
+		private int cell(double[] coordinate) {
+			return row(coordinate[0]) * columns + column(coordinate[1]);
+		}
+
+		private int row(double lat) {
+			return Math.min(rows - 1,
+					Math.max(0, (int) ((lat - minLat) / cellLat)));
+		}
+
+		private int column(double lon) {
+			return Math.min(columns - 1,
+					Math.max(0, (int) ((lon - minLon) / cellLon)));
+		}
+
+		private static boolean contains(int[] values, int count, int value) {
+			for (int index = 0; index < count; index++) {
+				if (values[index] == value) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static double squaredDistance(double[] first, double[] second) {
+			final double lat = first[0] - second[0];
+			final double lon = (first[1] - second[1])
+					* Math.cos(Math.toRadians(first[0]));
+			return lat * lat + lon * lon;
+		}
+	}
+}
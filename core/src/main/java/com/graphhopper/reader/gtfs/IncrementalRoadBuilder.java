@@ -0,0 +1,150 @@
+package com.graphhopper.reader.gtfs;
+
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongHashSet;
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.PointList;
+
+/**
+ * Builds roads from the labels of a search while it runs, passing every road
+ * on as soon as it is built.
+ * <p>
+ * Labels are added in the order they are settled. The first label per
+ * location is kept, which is the one with the earliest arrival (or the latest
+ * departure for a reverse search) for the {@link MultiCriteriaLabelsSetting}
+ * and the {@link EarliestArrivalLabelsSetting}. As in the {@link RoadBuilder},
+ * the parent chain of a kept label is cut into segments which span at least
+ * two distinct points and every segment is built once. Segments are hashed
+ * and compared as in the {@link RoadBuilder}. Only the kept locations and the
+ * locations of the points of the built segments are remembered, not the
+ * roads.
+ * <p>
+ * Unlike the {@link RoadBuilder}, the chains passing through a road are not
+ * known when it is built, so every road has one thread. The labels which
+ * start a built segment are marked with one thread in the arena.
+ */
+public class IncrementalRoadBuilder {
+
+	private final GraphHopperStorage storage;
+
+	private final LabelArena arena;
+
+	private final boolean reverse;
+
+	private final Consumer<Road> roads;
+
+	private final LongHashSet locations = new LongHashSet();
+
+	/**
+	 * Index of the first built segment per hash, further segments with the
+	 * same hash are chained in {@link #nextSegments}.
+	 */
+	private final LongIntHashMap segmentsByHash = new LongIntHashMap();
+
+	private final IntArrayList nextSegments = new IntArrayList();
+
+	/**
+	 * Locations of the points of all built segments in the direction of
+	 * travel, the points of a segment start at its index in
+	 * {@link #segmentStarts} and end at the next one.
+	 */
+	private final LongArrayList segmentLocations = new LongArrayList();
+
+	private final IntArrayList segmentStarts = IntArrayList.from(0);
+
+	private final IntFunction<PointList> labelGeometries = this::fetchGeometry;
+
+	private final PointList points = new PointList();
+
+	/**
+	 * @param reverse
+	 *            whether the labels are of a reverse (arrive-by) search
+	 * @param roads
+	 *            receives the roads as they are built
+	 */
+	IncrementalRoadBuilder(GraphHopperStorage storage, LabelArena arena,
+			boolean reverse, Consumer<Road> roads) {
+		this.storage = storage;
+		this.arena = arena;
+		this.reverse = reverse;
+		this.roads = roads;
+	}
+
+	public void addLabel(int label) {
+		final int adjNode = arena.getAdjNode(label);
+		final NodeAccess nodeAccess = storage.getNodeAccess();
+		if (!locations.add(RoadBuilder.location(nodeAccess.getLat(adjNode),
+				nodeAccess.getLon(adjNode)))) {
+			return;
+		}
+		int segmentStart = label;
+		while (segmentStart != LabelArena.NO_LABEL
+				&& arena.getEdge(segmentStart) != EdgeIterator.NO_EDGE
+				&& arena.getThreads(segmentStart) == 0) {
+			arena.setThreads(segmentStart, 1);
+			segmentStart = buildSegment(segmentStart);
+		}
+	}
+
+	/**
+	 * Builds the segment which starts at the label and passes it on, unless
+	 * an equal segment was built before.
+	 *
+	 * @return the label the segment ends at, towards the root of the search.
+	 */
+	private int buildSegment(int label) {
+		final int end = RoadBuilder.collectPoints(arena, labelGeometries,
+				label, points);
+		final int size = points.size();
+		if (size < 2 || !addSegment()) {
+			return end;
+		}
+		int numberOfTransfers = 0;
+		for (int currentLabel = label; currentLabel != end; currentLabel = arena
+				.getParent(currentLabel)) {
+			numberOfTransfers += arena.getNTransfers(currentLabel);
+		}
+		final PointList pointList = new PointList(size, false);
+		for (int index = 0; index < size; index++) {
+			final int point = RoadBuilder.travelOrder(index, size, reverse);
+			pointList.add(points.getLat(point), points.getLon(point));
+		}
+		roads.accept(new Road(arena.getCurrentTime(label), numberOfTransfers,
+				pointList));
+		return end;
+	}
+
+	/**
+	 * Remembers the segment of the collected points.
+	 *
+	 * @return <code>false</code> if an equal segment was built before.
+	 */
+	private boolean addSegment() {
+		final long hash = RoadBuilder.hash(points, reverse);
+		final int first = segmentsByHash.getOrDefault(hash, -1);
+		for (int index = first; index >= 0; index = nextSegments.get(index)) {
+			if (RoadBuilder.equalsChain(segmentLocations,
+					segmentStarts.get(index), segmentStarts.get(index + 1),
+					points, reverse)) {
+				return false;
+			}
+		}
+		segmentsByHash.put(hash, nextSegments.size());
+		nextSegments.add(first);
+		RoadBuilder.addLocations(points, reverse, segmentLocations);
+		segmentStarts.add(segmentLocations.size());
+		return true;
+	}
+
+	private PointList fetchGeometry(int label) {
+		return storage.getEdgeIteratorState(arena.getEdge(label),
+				arena.getAdjNode(label)).fetchWayGeometry(3);
+	}
+}
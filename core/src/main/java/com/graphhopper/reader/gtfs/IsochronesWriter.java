@@ -0,0 +1,333 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.json.spi.JsonProvider;
+import javax.json.stream.JsonGenerator;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
+
+/**
+ * Writes isochrones of a travel time grid as a GeoJSON feature collection,
+ * one feature with a <code>MultiPolygon</code> per travel time.
+ * <p>
+ * An isochrone covers the cells which can be reached within its travel time.
+ * Its rings follow the borders of these cells: every border between a cell
+ * inside and a cell outside is an edge with the inside on its left, edges
+ * are chained into rings, turning left where two cells only touch at a
+ * corner. Outer rings thus run counterclockwise and holes clockwise. A ring
+ * passing a corner twice is split there, so that rings do not cross or touch
+ * themselves. Every hole is added to the smallest outer ring containing it.
+ */
+public class IsochronesWriter {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final int EAST = 0;
+	private static final int NORTH = 1;
+	private static final int WEST = 2;
+	private static final int SOUTH = 3;
+
+	private static final int[] DELTA_COLUMN = { 1, 0, -1, 0 };
+	private static final int[] DELTA_ROW = { 0, -1, 0, 1 };
+
+	private IsochronesWriter() {
+	}
+
+	/**
+	 * Writes the isochrones, the stream is flushed but not closed.
+	 *
+	 * @param travelTimes
+	 *            travel times of the isochrones in seconds
+	 */
+	public static void write(TravelTimeGrid grid, long[] travelTimes,
+			OutputStream os) throws IOException {
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(os,
+				StandardCharsets.UTF_8), BUFFER_SIZE);
+		final JsonGenerator generator = JsonProvider.provider()
+				.createGenerator(writer);
+		generator.writeStartObject();
+		generator.write("type", "FeatureCollection");
+		generator.writeStartArray("features");
+		final long[] sortedTravelTimes = travelTimes.clone();
+		Arrays.sort(sortedTravelTimes);
+		for (long travelTime : sortedTravelTimes) {
+			generator.writeStartObject();
+			generator.write("type", "Feature");
+			generator.writeStartObject("properties");
+			generator.write("travelTime", travelTime);
+			generator.writeEnd();
+			generator.writeStartObject("geometry");
+			generator.write("type", "MultiPolygon");
+			generator.writeStartArray("coordinates");
+			for (List<int[]> polygon : polygons(grid, travelTime)) {
+				generator.writeStartArray();
+				for (int[] ring : polygon) {
+					generator.writeStartArray();
+					for (int index = 0; index <= ring.length; index += 2) {
+						// Rings are closed by repeating the first corner
+						final int corner = index % ring.length;
+						generator.writeStartArray();
+						generator.write(round(grid.getWest() + ring[corner]
+								* grid.getCellWidth()));
+						generator.write(round(grid.getNorth()
+								- ring[corner + 1] * grid.getCellHeight()));
+						generator.writeEnd();
+					}
+					generator.writeEnd();
+				}
+				generator.writeEnd();
+			}
+			generator.writeEnd();
+			generator.writeEnd();
+			generator.writeEnd();
+		}
+		generator.writeEnd();
+		generator.writeEnd();
+		generator.flush();
+		writer.flush();
+	}
+
+	private static double round(double value) {
+		return Math.round(value * 1e6) / 1e6;
+	}
+
+	/**
+	 * @return polygons of the cells which can be reached within the travel
+	 *         time, each given as the outer ring followed by its holes. Rings
+	 *         are given as corners <code>column0, row0, column1, row1, ...
+	 *         </code> of the grid, without repeating the first corner.
+	 */
+	static List<List<int[]>> polygons(TravelTimeGrid grid, long travelTime) {
+		final int columns = grid.getColumns();
+		final int rows = grid.getRows();
+		// Border edges by the corner they start from, direction plus one in
+		// the lowest three bits, a second edge from the corner in the next
+		final IntIntHashMap edges = new IntIntHashMap();
+		final IntArrayList starts = new IntArrayList();
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				if (!inside(grid, column, row, travelTime)) {
+					continue;
+				}
+				if (!inside(grid, column, row + 1, travelTime)) {
+					addEdge(edges, starts, corner(grid, column, row + 1), EAST);
+				}
+				if (!inside(grid, column + 1, row, travelTime)) {
+					addEdge(edges, starts, corner(grid, column + 1, row + 1),
+							NORTH);
+				}
+				if (!inside(grid, column, row - 1, travelTime)) {
+					addEdge(edges, starts, corner(grid, column + 1, row), WEST);
+				}
+				if (!inside(grid, column - 1, row, travelTime)) {
+					addEdge(edges, starts, corner(grid, column, row), SOUTH);
+				}
+			}
+		}
+
+		final List<int[]> outerRings = new ArrayList<>();
+		final List<int[]> holes = new ArrayList<>();
+		final IntArrayList ring = new IntArrayList();
+		final IntArrayList directions = new IntArrayList();
+		// Position of the corners of the current ring
+		final IntIntHashMap positions = new IntIntHashMap();
+		for (int index = 0; index < starts.size(); index++) {
+			int corner = starts.get(index);
+			int direction = takeEdge(edges, corner, -1);
+			if (direction < 0) {
+				continue;
+			}
+			ring.clear();
+			directions.clear();
+			positions.clear();
+			while (direction >= 0) {
+				final int position = positions.getOrDefault(corner, -1);
+				if (position >= 0) {
+					closeRing(grid, ring, directions, position, positions,
+							outerRings, holes);
+				}
+				positions.put(corner, ring.size());
+				ring.add(corner);
+				directions.add(direction);
+				corner = corner(grid, column(grid, corner)
+						+ DELTA_COLUMN[direction], row(grid, corner)
+						+ DELTA_ROW[direction]);
+				direction = takeEdge(edges, corner, direction);
+			}
+			closeRing(grid, ring, directions, 0, positions, outerRings, holes);
+		}
+
+		final List<List<int[]>> polygons = new ArrayList<>(outerRings.size());
+		final double[] areas = new double[outerRings.size()];
+		for (int index = 0; index < outerRings.size(); index++) {
+			final List<int[]> polygon = new ArrayList<>();
+			polygon.add(outerRings.get(index));
+			polygons.add(polygon);
+			areas[index] = area(outerRings.get(index));
+		}
+		for (int[] hole : holes) {
+			// The cell left of the first edge of a hole is inside the polygon
+			// of the hole and on no ring
+			final int direction = direction(hole);
+			final double x = hole[0] + 0.5 * (DELTA_COLUMN[direction] + DELTA_ROW[direction]);
+			final double y = hole[1] + 0.5 * (DELTA_ROW[direction] - DELTA_COLUMN[direction]);
+			int smallest = -1;
+			for (int index = 0; index < outerRings.size(); index++) {
+				if ((smallest < 0 || areas[index] < areas[smallest])
+						&& contains(outerRings.get(index), x, y)) {
+					smallest = index;
+				}
+			}
+			if (smallest >= 0) {
+				polygons.get(smallest).add(hole);
+			}
+		}
+		return polygons;
+	}
+
+	private static boolean inside(TravelTimeGrid grid, int column, int row,
+			long travelTime) {
+		if (column < 0 || row < 0 || column >= grid.getColumns()
+				|| row >= grid.getRows()) {
+			return false;
+		}
+		// NaN is never less or equal
+		return grid.getValue(column, row) <= travelTime;
+	}
+
+	private static int corner(TravelTimeGrid grid, int column, int row) {
+		return row * (grid.getColumns() + 1) + column;
+	}
+
+	private static int column(TravelTimeGrid grid, int corner) {
+		return corner % (grid.getColumns() + 1);
+	}
+
+	private static int row(TravelTimeGrid grid, int corner) {
+		return corner / (grid.getColumns() + 1);
+	}
+
+	private static void addEdge(IntIntHashMap edges, IntArrayList starts,
+			int corner, int direction) {
+		final int index = edges.indexOf(corner);
+		if (edges.indexExists(index)) {
+			edges.indexReplace(index, edges.indexGet(index) | (direction + 1) << 3);
+		} else {
+			edges.indexInsert(index, corner, direction + 1);
+			starts.add(corner);
+		}
+	}
+
+	/**
+	 * Removes an edge starting from the corner, turning left if there are
+	 * two.
+	 *
+	 * @param incoming
+	 *            direction of the edge leading to the corner, negative for
+	 *            any edge
+	 * @return direction of the removed edge, negative if there is none left.
+	 */
+	private static int takeEdge(IntIntHashMap edges, int corner, int incoming) {
+		final int index = edges.indexOf(corner);
+		if (!edges.indexExists(index)) {
+			return -1;
+		}
+		final int value = edges.indexGet(index);
+		final int first = (value & 7) - 1;
+		final int second = (value >> 3) - 1;
+		if (second < 0) {
+			edges.remove(corner);
+			return first;
+		}
+		if (incoming < 0 || first == (incoming + 1) % 4) {
+			edges.indexReplace(index, second + 1);
+			return first;
+		}
+		edges.indexReplace(index, first + 1);
+		return second;
+	}
+
+	/**
+	 * Moves the corners of the current ring from the position on into a
+	 * ring of its own, leaving out corners where the ring goes straight on.
+	 */
+	private static void closeRing(TravelTimeGrid grid, IntArrayList ring,
+			IntArrayList directions, int from, IntIntHashMap positions,
+			List<int[]> outerRings, List<int[]> holes) {
+		final int size = ring.size() - from;
+		final IntArrayList corners = new IntArrayList();
+		for (int index = 0; index < size; index++) {
+			final int previous = directions.get(from + (index + size - 1)
+					% size);
+			if (directions.get(from + index) != previous) {
+				final int corner = ring.get(from + index);
+				corners.add(column(grid, corner));
+				corners.add(row(grid, corner));
+			}
+		}
+		for (int index = from; index < ring.size(); index++) {
+			positions.remove(ring.get(index));
+		}
+		ring.elementsCount = from;
+		directions.elementsCount = from;
+		final int[] closed = corners.toArray();
+		if (area(closed) > 0) {
+			outerRings.add(closed);
+		} else {
+			holes.add(closed);
+		}
+	}
+
+	/**
+	 * @return area of the ring in cells, positive if it runs
+	 *         counterclockwise on the map.
+	 */
+	private static double area(int[] ring) {
+		long twiceArea = 0;
+		for (int index = 0; index < ring.length; index += 2) {
+			final int next = (index + 2) % ring.length;
+			// Rows grow to the south
+			twiceArea += (long) ring[index] * -ring[next + 1]
+					- (long) ring[next] * -ring[index + 1];
+		}
+		return twiceArea / 2.0;
+	}
+
+	/**
+	 * @return direction of the edge from the first to the second corner.
+	 */
+	private static int direction(int[] ring) {
+		final int dx = Integer.signum(ring[2] - ring[0]);
+		final int dy = Integer.signum(ring[3] - ring[1]);
+		for (int direction = 0; direction < 4; direction++) {
+			if (DELTA_COLUMN[direction] == dx && DELTA_ROW[direction] == dy) {
+				return direction;
+			}
+		}
+		throw new IllegalStateException("Diagonal edge in ring.");
+	}
+
+	private static boolean contains(int[] ring, double x, double y) {
+		boolean contains = false;
+		for (int index = 0, previous = ring.length - 2; index < ring.length; previous = index, index += 2) {
+			if ((ring[index + 1] > y) != (ring[previous + 1] > y)
+					&& x < (ring[previous] - ring[index])
+							* (y - ring[index + 1])
+							/ (double) (ring[previous + 1] - ring[index + 1])
+							+ ring[index]) {
+				contains = !contains;
+			}
+		}
+		return contains;
+	}
+}
@@ -0,0 +1,69 @@
+package com.graphhopper.reader.gtfs;
+
+/**
+ * Storage of the labels of a search, indexed by label id.
+ * <p>
+ * The parent of a label is referenced by its id, {@link #NO_LABEL} for the
+ * root label. Labels are only appended, ids stay valid for the lifetime of
+ * the arena so that parent chains can be followed after the search, until
+ * it is closed.
+ *
+ * @see ArrayLabelArena
+ * @see MappedLabelArena
+ */
+interface LabelArena extends AutoCloseable {
+
+	int NO_LABEL = -1;
+
+	/**
+	 * Appends a label to the arena.
+	 *
+	 * @return id of the new label.
+	 */
+	int add(long currentTime, int edge, int adjNode, int nTransfers,
+			long firstPtDepartureTime, int parent);
+
+	int size();
+
+	long getCurrentTime(int id);
+
+	int getEdge(int id);
+
+	int getAdjNode(int id);
+
+	int getNTransfers(int id);
+
+	long getFirstPtDepartureTime(int id);
+
+	int getParent(int id);
+
+	/**
+	 * Materializes the label with the given id, without its parent. Used to
+	 * pass the label to the {@link GraphExplorer}.
+	 */
+	Label toLabel(int id);
+
+	/**
+	 * @return number of chains passing through the label, counted by the
+	 *         road builders. Zero until it is set.
+	 */
+	int getThreads(int id);
+
+	void setThreads(int id, int threads);
+
+	/**
+	 * Tells the arena that the label is settled or dominated. The search no
+	 * longer changes it and only reads it rarely, through parent chains and
+	 * the labels kept per node, so that it may be moved off the heap.
+	 */
+	default void release(int id) {
+	}
+
+	/**
+	 * Releases storage outside of the heap, the labels may not be read
+	 * afterwards.
+	 */
+	@Override
+	default void close() {
+	}
+}
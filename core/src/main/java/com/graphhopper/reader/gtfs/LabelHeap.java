@@ -0,0 +1,199 @@
+package com.graphhopper.reader.gtfs;
+
+import java.util.Arrays;
+
+import com.carrotsearch.hppc.IntIntHashMap;
+
+/**
+ * Indexed 4-ary min-heap of label ids.
+ * <p>
+ * Labels are ordered by current time, then by number of transfers, then by
+ * first public transport departure time. In reverse (arrive-by) mode the time
+ * criteria are reversed. Keys are copied into primitive arrays next to the
+ * heap entries, the position of every label id in the heap is tracked so that
+ * a label can be removed in logarithmic time. Positions are kept in a map of
+ * the ids in the heap, so that the heap does not grow with the ids of the
+ * labels it ever held.
+ */
+final class LabelHeap {
+
+	private static final int ARITY = 4;
+
+	private final boolean reverse;
+
+	private int[] ids;
+	private long[] currentTimes;
+	private int[] nTransfers;
+	private long[] firstPtDepartureTimes;
+	private int size;
+
+	/**
+	 * Position of the label ids in the heap.
+	 */
+	private final IntIntHashMap positions;
+
+	LabelHeap(int capacity, boolean reverse) {
+		this.reverse = reverse;
+		this.ids = new int[capacity];
+		this.currentTimes = new long[capacity];
+		this.nTransfers = new int[capacity];
+		this.firstPtDepartureTimes = new long[capacity];
+		this.positions = new IntIntHashMap(capacity);
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean contains(int id) {
+		return positions.containsKey(id);
+	}
+
+	void add(int id, long currentTime, int nTransfers,
+			long firstPtDepartureTime) {
+		if (contains(id)) {
+			throw new IllegalArgumentException("Label " + id
+					+ " is already in the heap.");
+		}
+		ensureCapacity(size + 1);
+		final int position = size++;
+		set(position, id, currentTime, nTransfers, firstPtDepartureTime);
+		siftUp(position);
+	}
+
+	/**
+	 * Removes the top label from the heap.
+	 *
+	 * @return id of the removed label.
+	 */
+	int poll() {
+		if (size == 0) {
+			throw new IllegalStateException("Heap is empty.");
+		}
+		final int id = ids[0];
+		removeAt(0);
+		return id;
+	}
+
+	/**
+	 * Removes the label from the heap.
+	 *
+	 * @return <code>true</code> if the label was in the heap.
+	 */
+	boolean remove(int id) {
+		if (!contains(id)) {
+			return false;
+		}
+		removeAt(positions.get(id));
+		return true;
+	}
+
+	private void removeAt(int position) {
+		positions.remove(ids[position]);
+		final int last = --size;
+		if (position != last) {
+			set(position, ids[last], currentTimes[last], nTransfers[last],
+					firstPtDepartureTimes[last]);
+			if (!siftUp(position)) {
+				siftDown(position);
+			}
+		}
+	}
+
+	private boolean siftUp(int position) {
+		final int start = position;
+		final int id = ids[position];
+		final long currentTime = currentTimes[position];
+		final int transfers = nTransfers[position];
+		final long firstPtDepartureTime = firstPtDepartureTimes[position];
+		while (position > 0) {
+			final int parent = (position - 1) / ARITY;
+			if (!less(currentTime, transfers, firstPtDepartureTime, parent)) {
+				break;
+			}
+			move(parent, position);
+			position = parent;
+		}
+		set(position, id, currentTime, transfers, firstPtDepartureTime);
+		return position != start;
+	}
+
+	private void siftDown(int position) {
+		final int id = ids[position];
+		final long currentTime = currentTimes[position];
+		final int transfers = nTransfers[position];
+		final long firstPtDepartureTime = firstPtDepartureTimes[position];
+		while (true) {
+			final int firstChild = position * ARITY + 1;
+			if (firstChild >= size) {
+				break;
+			}
+			final int lastChild = Math.min(firstChild + ARITY, size);
+			int minChild = firstChild;
+			for (int child = firstChild + 1; child < lastChild; child++) {
+				if (less(currentTimes[child], nTransfers[child],
+						firstPtDepartureTimes[child], minChild)) {
+					minChild = child;
+				}
+			}
+			if (!less(currentTimes[minChild], nTransfers[minChild],
+					firstPtDepartureTimes[minChild], currentTime, transfers,
+					firstPtDepartureTime)) {
+				break;
+			}
+			move(minChild, position);
+			position = minChild;
+		}
+		set(position, id, currentTime, transfers, firstPtDepartureTime);
+	}
+
+	private boolean less(long currentTime, int transfers,
+			long firstPtDepartureTime, int position) {
+		return less(currentTime, transfers, firstPtDepartureTime,
+				currentTimes[position], nTransfers[position],
+				firstPtDepartureTimes[position]);
+	}
+
+	private boolean less(long currentTime, int transfers,
+			long firstPtDepartureTime, long otherCurrentTime,
+			int otherTransfers, long otherFirstPtDepartureTime) {
+		if (currentTime != otherCurrentTime) {
+			return reverse ? currentTime > otherCurrentTime
+					: currentTime < otherCurrentTime;
+		}
+		if (transfers != otherTransfers) {
+			return transfers < otherTransfers;
+		}
+		return reverse ? firstPtDepartureTime > otherFirstPtDepartureTime
+				: firstPtDepartureTime < otherFirstPtDepartureTime;
+	}
+
+	private void move(int from, int to) {
+		set(to, ids[from], currentTimes[from], nTransfers[from],
+				firstPtDepartureTimes[from]);
+	}
+
+	private void set(int position, int id, long currentTime, int transfers,
+			long firstPtDepartureTime) {
+		ids[position] = id;
+		currentTimes[position] = currentTime;
+		nTransfers[position] = transfers;
+		firstPtDepartureTimes[position] = firstPtDepartureTime;
+		positions.put(id, position);
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > ids.length) {
+			final int newCapacity = Math.max(capacity, ids.length << 1);
+			ids = Arrays.copyOf(ids, newCapacity);
+			currentTimes = Arrays.copyOf(currentTimes, newCapacity);
+			nTransfers = Arrays.copyOf(nTransfers, newCapacity);
+			firstPtDepartureTimes = Arrays.copyOf(firstPtDepartureTimes,
+					newCapacity);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package com.graphhopper.reader.gtfs;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the Pareto sets of labels of the {@link MultiCriteriaLabelsSetting}
+ * indexed by node id.
+ * <p>
+ * Each node has a compact bag of ids of labels in the {@link LabelArena}
+ * which grows on demand. Next to the ids the bag keeps the criteria of the
+ * labels, so that dominance checks neither need label objects nor read the
+ * arena, which may have spilled the labels to a file.
+ */
+final class LabelStore {
+
+	private static final int INITIAL_BAG_CAPACITY = 2;
+
+	private int[][] ids;
+	private long[][] currentTimes;
+	private int[][] nTransfers;
+	private long[][] firstPtDepartureTimes;
+	private int[] bagSizes;
+
+	LabelStore(int nodes) {
+		this.ids = new int[nodes][];
+		this.currentTimes = new long[nodes][];
+		this.nTransfers = new int[nodes][];
+		this.firstPtDepartureTimes = new long[nodes][];
+		this.bagSizes = new int[nodes];
+	}
+
+	/**
+	 * Adds the label with the given id and criteria to the bag of the given
+	 * node.
+	 */
+	void add(int node, int id, long currentTime, int nTransfers,
+			long firstPtDepartureTime) {
+		ensureNodeCapacity(node);
+		final int bagSize = bagSizes[node];
+		if (ids[node] == null) {
+			ids[node] = new int[INITIAL_BAG_CAPACITY];
+			currentTimes[node] = new long[INITIAL_BAG_CAPACITY];
+			this.nTransfers[node] = new int[INITIAL_BAG_CAPACITY];
+			firstPtDepartureTimes[node] = new long[INITIAL_BAG_CAPACITY];
+		} else if (bagSize == ids[node].length) {
+			final int capacity = bagSize << 1;
+			ids[node] = Arrays.copyOf(ids[node], capacity);
+			currentTimes[node] = Arrays.copyOf(currentTimes[node], capacity);
+			this.nTransfers[node] = Arrays.copyOf(this.nTransfers[node],
+					capacity);
+			firstPtDepartureTimes[node] = Arrays.copyOf(
+					firstPtDepartureTimes[node], capacity);
+		}
+		ids[node][bagSize] = id;
+		currentTimes[node][bagSize] = currentTime;
+		this.nTransfers[node][bagSize] = nTransfers;
+		firstPtDepartureTimes[node][bagSize] = firstPtDepartureTime;
+		bagSizes[node] = bagSize + 1;
+	}
+
+	/**
+	 * @return number of labels in the bag of the given node.
+	 */
+	int size(int node) {
+		return node < bagSizes.length ? bagSizes[node] : 0;
+	}
+
+	/**
+	 * @return id of the label at the given position of the bag of the node.
+	 */
+	int get(int node, int index) {
+		return ids[node][index];
+	}
+
+	long getCurrentTime(int node, int index) {
+		return currentTimes[node][index];
+	}
+
+	int getNTransfers(int node, int index) {
+		return nTransfers[node][index];
+	}
+
+	long getFirstPtDepartureTime(int node, int index) {
+		return firstPtDepartureTimes[node][index];
+	}
+
+	/**
+	 * Removes the label at the given position from the bag of the node. The
+	 * last label of the bag takes its position.
+	 */
+	void remove(int node, int index) {
+		final int last = --bagSizes[node];
+		ids[node][index] = ids[node][last];
+		currentTimes[node][index] = currentTimes[node][last];
+		nTransfers[node][index] = nTransfers[node][last];
+		firstPtDepartureTimes[node][index] = firstPtDepartureTimes[node][last];
+	}
+
+	/**
+	 * @return ids of the labels of all the bags.
+	 */
+	int[] values() {
+		int count = 0;
+		for (int node = 0; node < bagSizes.length; node++) {
+			count += bagSizes[node];
+		}
+		final int[] values = new int[count];
+		int position = 0;
+		for (int node = 0; node < ids.length; node++) {
+			final int bagSize = bagSizes[node];
+			if (bagSize > 0) {
+				System.arraycopy(ids[node], 0, values, position, bagSize);
+				position += bagSize;
+			}
+		}
+		return values;
+	}
+
+	private void ensureNodeCapacity(int node) {
+		if (node >= ids.length) {
+			final int capacity = Math.max(node + 1, ids.length << 1);
+			ids = Arrays.copyOf(ids, capacity);
+			currentTimes = Arrays.copyOf(currentTimes, capacity);
+			nTransfers = Arrays.copyOf(nTransfers, capacity);
+			firstPtDepartureTimes = Arrays.copyOf(firstPtDepartureTimes,
+					capacity);
+			bagSizes = Arrays.copyOf(bagSizes, capacity);
+		}
+	}
+}
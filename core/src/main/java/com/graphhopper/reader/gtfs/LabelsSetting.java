@@ -0,0 +1,39 @@
+package com.graphhopper.reader.gtfs;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Search from one node over the time-expanded graph which leaves its labels
+ * in a {@link LabelArena}, linked to their parents, so that the roads can be
+ * built from them.
+ */
+interface LabelsSetting {
+
+	/**
+	 * @return ids of the resulting labels in the {@link #getArena() arena}.
+	 */
+	int[] calcLabels(int from, long startTime, long rangeQueryEndTime);
+
+	LabelArena getArena();
+
+	/**
+	 * Sets the listener which is passed the id of every resulting label as
+	 * soon as the search can no longer dominate or replace it, in the order
+	 * of the search. Labels which are only final when the search stops are
+	 * passed before {@link #calcLabels(int, long, long)} returns.
+	 */
+	void setSettledLabelListener(IntConsumer listener);
+
+	int getVisitedNodes();
+
+	/**
+	 * @return <code>true</code> if the search was stopped at the deadline of
+	 *         its {@link SearchBounds}, the results are then partial.
+	 */
+	boolean isDeadlineReached();
+
+	/**
+	 * Adds the counters of the search to the statistics.
+	 */
+	void addStatistics(QueryStatistics statistics);
+}
@@ -0,0 +1,403 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.graphhopper.util.Helper;
+
+/**
+ * Storage of labels which keeps at most a given number of labels on the heap
+ * and spills the others to memory-mapped files.
+ * <p>
+ * New labels take a slot on the heap while there is one, the search keeps
+ * reading and replacing them. Once a label is {@link #release(int)
+ * released}, because it is settled or dominated, it is written to the file
+ * and its slot is taken by the next label. Labels which are added while all
+ * the slots are taken go to the file right away. The labels on the heap are
+ * found by id in a map of the size of the slots.
+ * <p>
+ * The file holds a fixed-width record of {@link #RECORD_BYTES} bytes at the
+ * position of every label id, in segments of {@link #SEGMENT_RECORDS}
+ * records. The last segment starts with {@link #INITIAL_SEGMENT_RECORDS}
+ * records and is mapped again with twice the size whenever a record beyond
+ * it is written, so that small spills take little space. The operating
+ * system pages the records in and out as they are used. Parent chains and
+ * the thread counts of the road builders are followed through the mapped
+ * records like through the heap.
+ * <p>
+ * The file is deleted as soon as it is created, where the operating system
+ * allows it. {@link #close()} unmaps the segments and closes the file, it
+ * must be called once the labels are no longer needed, since the mappings
+ * are otherwise only released when they are collected.
+ */
+final class MappedLabelArena implements LabelArena {
+
+	/**
+	 * Current time, first public transport departure time, edge, adjacent
+	 * node, number of transfers, parent and number of threads.
+	 */
+	static final int RECORD_BYTES = 8 + 8 + 4 + 4 + 4 + 4 + 4;
+
+	/**
+	 * Heap taken by a label in a slot: its fields, its thread count, its
+	 * entry in the map of slots (with the free space of the map) and its
+	 * entry in the list of free slots.
+	 */
+	static final int BYTES_PER_HEAP_LABEL = ArrayLabelArena.BYTES_PER_LABEL
+			+ 4 + 24 + 4;
+
+	static final int SEGMENT_RECORDS = 1 << 20;
+
+	static final int INITIAL_SEGMENT_RECORDS = 1 << 12;
+
+	private static final int SEGMENT_SHIFT = 20;
+
+	private static final int NO_SLOT = -1;
+
+	private final int heapLabels;
+	private final File directory;
+
+	private long[] currentTimes;
+	private int[] edges;
+	private int[] adjNodes;
+	private int[] nTransfers;
+	private long[] firstPtDepartureTimes;
+	private int[] parents;
+	private int[] threads;
+	/**
+	 * Number of slots which were ever taken.
+	 */
+	private int usedSlots;
+	private int[] freeSlots;
+	private int freeSlotCount;
+	/**
+	 * Slot per id of the labels on the heap.
+	 */
+	private final IntIntHashMap slots = new IntIntHashMap();
+
+	private final List<MappedByteBuffer> segments = new ArrayList<>();
+	/**
+	 * Number of records mapped in the last segment.
+	 */
+	private int lastSegmentRecords;
+	private File file;
+	private RandomAccessFile randomAccessFile;
+	private int size;
+
+	/**
+	 * @param capacity
+	 *            initial number of slots on the heap
+	 * @param heapLabels
+	 *            number of labels kept on the heap
+	 * @param directory
+	 *            directory of the temporary files, <code>null</code> for the
+	 *            default temporary directory
+	 */
+	MappedLabelArena(int capacity, int heapLabels, File directory) {
+		this.heapLabels = Math.max(heapLabels, 0);
+		this.directory = directory;
+		capacity = Math.max(Math.min(capacity, this.heapLabels), 1);
+		this.currentTimes = new long[capacity];
+		this.edges = new int[capacity];
+		this.adjNodes = new int[capacity];
+		this.nTransfers = new int[capacity];
+		this.firstPtDepartureTimes = new long[capacity];
+		this.parents = new int[capacity];
+		this.threads = new int[capacity];
+		this.freeSlots = new int[capacity];
+	}
+
+	@Override
+	public int add(long currentTime, int edge, int adjNode, int nTransfers,
+			long firstPtDepartureTime, int parent) {
+		final int id = size++;
+		final int slot = takeSlot();
+		if (slot == NO_SLOT) {
+			write(id, currentTime, edge, adjNode, nTransfers,
+					firstPtDepartureTime, parent, 0);
+			return id;
+		}
+		this.currentTimes[slot] = currentTime;
+		this.edges[slot] = edge;
+		this.adjNodes[slot] = adjNode;
+		this.nTransfers[slot] = nTransfers;
+		this.firstPtDepartureTimes[slot] = firstPtDepartureTime;
+		this.parents[slot] = parent;
+		this.threads[slot] = 0;
+		slots.put(id, slot);
+		return id;
+	}
+
+	/**
+	 * Writes the label to the file and frees its slot, if it is on the heap.
+	 */
+	@Override
+	public void release(int id) {
+		final int slot = slot(id);
+		if (slot == NO_SLOT) {
+			return;
+		}
+		write(id, currentTimes[slot], edges[slot], adjNodes[slot],
+				nTransfers[slot], firstPtDepartureTimes[slot], parents[slot],
+				threads[slot]);
+		slots.remove(id);
+		freeSlots[freeSlotCount++] = slot;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return number of labels spilled to the mapped files.
+	 */
+	int getSpilledLabels() {
+		return size - slots.size();
+	}
+
+	/**
+	 * @return number of labels on the heap.
+	 */
+	int getHeapLabels() {
+		return slots.size();
+	}
+
+	@Override
+	public long getCurrentTime(int id) {
+		final int slot = slot(id);
+		if (slot != NO_SLOT) {
+			return currentTimes[slot];
+		}
+		return segment(id).getLong(offset(id));
+	}
+
+	@Override
+	public int getEdge(int id) {
+		final int slot = slot(id);
+		if (slot != NO_SLOT) {
+			return edges[slot];
+		}
+		return segment(id).getInt(offset(id) + 16);
+	}
+
+	@Override
+	public int getAdjNode(int id) {
+		final int slot = slot(id);
+		if (slot != NO_SLOT) {
+			return adjNodes[slot];
+		}
+		return segment(id).getInt(offset(id) + 20);
+	}
+
+	@Override
+	public int getNTransfers(int id) {
+		final int slot = slot(id);
+		if (slot != NO_SLOT) {
+			return nTransfers[slot];
+		}
+		return segment(id).getInt(offset(id) + 24);
+	}
+
+	@Override
+	public long getFirstPtDepartureTime(int id) {
+		final int slot = slot(id);
+		if (slot != NO_SLOT) {
+			return firstPtDepartureTimes[slot];
+		}
+		return segment(id).getLong(offset(id) + 8);
+	}
+
+	@Override
+	public int getParent(int id) {
+		final int slot = slot(id);
+		if (slot != NO_SLOT) {
+			return parents[slot];
+		}
+		return segment(id).getInt(offset(id) + 28);
+	}
+
+	@Override
+	public int getThreads(int id) {
+		final int slot = slot(id);
+		if (slot != NO_SLOT) {
+			return threads[slot];
+		}
+		return segment(id).getInt(offset(id) + 32);
+	}
+
+	@Override
+	public void setThreads(int id, int threads) {
+		final int slot = slot(id);
+		if (slot != NO_SLOT) {
+			this.threads[slot] = threads;
+		} else {
+			segment(id).putInt(offset(id) + 32, threads);
+		}
+	}
+
+	@Override
+	public Label toLabel(int id) {
+		final int slot = slot(id);
+		if (slot != NO_SLOT) {
+			return new Label(currentTimes[slot], edges[slot], adjNodes[slot],
+					nTransfers[slot], firstPtDepartureTimes[slot], null);
+		}
+		final MappedByteBuffer buffer = segment(id);
+		final int offset = offset(id);
+		return new Label(buffer.getLong(offset), buffer.getInt(offset + 16),
+				buffer.getInt(offset + 20), buffer.getInt(offset + 24),
+				buffer.getLong(offset + 8), null);
+	}
+
+	private int slot(int id) {
+		if (id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException("Label " + id
+					+ " is not in the arena of " + size + " labels.");
+		}
+		return slots.getOrDefault(id, NO_SLOT);
+	}
+
+	/**
+	 * @return a free slot or {@link #NO_SLOT} if all the slots are taken.
+	 */
+	private int takeSlot() {
+		if (freeSlotCount > 0) {
+			return freeSlots[--freeSlotCount];
+		}
+		if (usedSlots == heapLabels) {
+			return NO_SLOT;
+		}
+		if (usedSlots == currentTimes.length) {
+			growSlots();
+		}
+		return usedSlots++;
+	}
+
+	private void growSlots() {
+		final int capacity = (int) Math.min(heapLabels,
+				(long) currentTimes.length << 1);
+		currentTimes = Arrays.copyOf(currentTimes, capacity);
+		edges = Arrays.copyOf(edges, capacity);
+		adjNodes = Arrays.copyOf(adjNodes, capacity);
+		nTransfers = Arrays.copyOf(nTransfers, capacity);
+		firstPtDepartureTimes = Arrays.copyOf(firstPtDepartureTimes, capacity);
+		parents = Arrays.copyOf(parents, capacity);
+		threads = Arrays.copyOf(threads, capacity);
+		freeSlots = Arrays.copyOf(freeSlots, capacity);
+	}
+
+	private void write(int id, long currentTime, int edge, int adjNode,
+			int nTransfers, long firstPtDepartureTime, int parent, int threads) {
+		final MappedByteBuffer buffer = mappedSegment(id);
+		final int offset = offset(id);
+		buffer.putLong(offset, currentTime);
+		buffer.putLong(offset + 8, firstPtDepartureTime);
+		buffer.putInt(offset + 16, edge);
+		buffer.putInt(offset + 20, adjNode);
+		buffer.putInt(offset + 24, nTransfers);
+		buffer.putInt(offset + 28, parent);
+		buffer.putInt(offset + 32, threads);
+	}
+
+	private MappedByteBuffer segment(int id) {
+		return segments.get(id >>> SEGMENT_SHIFT);
+	}
+
+	/**
+	 * @return the segment of the id, mapped so far that it holds the record
+	 *         of the id. Segments before the last are mapped completely.
+	 */
+	private MappedByteBuffer mappedSegment(int id) {
+		final int segment = id >>> SEGMENT_SHIFT;
+		if (segment < segments.size() - 1) {
+			return segments.get(segment);
+		}
+		if (segment >= segments.size()) {
+			if (!segments.isEmpty()) {
+				remapLastSegment(SEGMENT_RECORDS);
+			}
+			while (segments.size() < segment) {
+				segments.add(mapSegment(segments.size(), SEGMENT_RECORDS));
+			}
+			lastSegmentRecords = INITIAL_SEGMENT_RECORDS;
+			segments.add(mapSegment(segment, lastSegmentRecords));
+		}
+		final int record = id & (SEGMENT_RECORDS - 1);
+		if (record >= lastSegmentRecords) {
+			int records = lastSegmentRecords;
+			while (record >= records) {
+				records <<= 1;
+			}
+			remapLastSegment(records);
+		}
+		return segments.get(segment);
+	}
+
+	private void remapLastSegment(int records) {
+		if (records == lastSegmentRecords) {
+			return;
+		}
+		final int segment = segments.size() - 1;
+		lastSegmentRecords = records;
+		final MappedByteBuffer smaller = segments.set(segment,
+				mapSegment(segment, records));
+		Helper.cleanMappedByteBuffer(smaller);
+	}
+
+	private static int offset(int id) {
+		return (id & (SEGMENT_RECORDS - 1)) * RECORD_BYTES;
+	}
+
+	/**
+	 * Unmaps the segments and deletes the file, the labels may not be read
+	 * afterwards.
+	 */
+	@Override
+	public void close() {
+		for (MappedByteBuffer segment : segments) {
+			Helper.cleanMappedByteBuffer(segment);
+		}
+		segments.clear();
+		if (randomAccessFile == null) {
+			return;
+		}
+		try {
+			randomAccessFile.close();
+		} catch (IOException ioex) {
+			throw new UncheckedIOException("Could not close labels file.",
+					ioex);
+		} finally {
+			randomAccessFile = null;
+			if (file.exists() && !file.delete()) {
+				file.deleteOnExit();
+			}
+		}
+	}
+
+	private MappedByteBuffer mapSegment(int segment, int records) {
+		try {
+			if (randomAccessFile == null) {
+				file = File.createTempFile("labels", ".bin", directory);
+				randomAccessFile = new RandomAccessFile(file, "rw");
+				// Open files stay usable once deleted, except on Windows
+				file.delete();
+			}
+			return randomAccessFile.getChannel().map(
+					FileChannel.MapMode.READ_WRITE,
+					(long) segment * SEGMENT_RECORDS * RECORD_BYTES,
+					(long) records * RECORD_BYTES);
+		} catch (IOException ioex) {
+			throw new UncheckedIOException("Could not map labels segment.",
+					ioex);
+		}
+	}
+}
@@ -17,17 +17,9 @@
  */
 package com.graphhopper.reader.gtfs;
 
-import java.text.MessageFormat;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.PriorityQueue;
-import java.util.Set;
+import java.util.function.IntConsumer;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.SetMultimap;
+import com.carrotsearch.hppc.IntArrayList;
 import com.graphhopper.routing.weighting.TimeDependentWeighting;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
@@ -42,86 +34,78 @@ import com.graphhopper.util.EdgeIteratorState;
  * @author Michael Zilske
  * @author Peter Karich
  */
-class MultiCriteriaLabelsSetting {
+class MultiCriteriaLabelsSetting implements LabelsSetting {
 
 	private final PtFlagEncoder flagEncoder;
 	private final Weighting weighting;
-	private final SetMultimap<Integer, Label> fromMap;
-	private final PriorityQueue<Label> fromHeap;
+	private final LabelArena arena;
+	private final LabelStore fromMap;
+	private final LabelHeap fromHeap;
 	private final int maxVisitedNodes;
+	private final SearchBounds bounds;
 	private final boolean reverse;
 	private long rangeQueryEndTime;
 	private int visitedNodes;
+	private boolean deadlineReached;
+	private int labelsCreated;
+	private int labelsRejected;
+	private int dominatedRemovals;
+	private int peakHeapSize;
+	private int peakLabelsPerNode;
 	private final GraphExplorer explorer;
-	private int nodes;
+	private IntConsumer settledLabels;
+	/**
+	 * Expanded labels with the time of the last expanded label, which may
+	 * still be dominated by labels of the same time.
+	 */
+	private final IntArrayList pendingLabels = new IntArrayList();
 
 	MultiCriteriaLabelsSetting(Graph graph, Weighting weighting,
-			int maxVisitedNodes, GraphExplorer explorer, boolean reverse) {
+			int maxVisitedNodes, SearchBounds bounds, GraphExplorer explorer,
+			boolean reverse) {
 		this.weighting = weighting;
 		this.flagEncoder = (PtFlagEncoder) weighting.getFlagEncoder();
 		this.maxVisitedNodes = maxVisitedNodes;
+		this.bounds = bounds;
 		this.explorer = explorer;
 		this.reverse = reverse;
-		this.nodes = graph.getNodes();
 		int size = Math.min(Math.max(200, graph.getNodes() / 10), 2000);
-		fromHeap = new PriorityQueue<>(size, new Comparator<Label>() {
-			@Override
-			public int compare(Label o1, Label o) {
-				if (!reverse && o1.currentTime < o.currentTime)
-					return -1;
-				else if (reverse && o1.currentTime > o.currentTime)
-					return -1;
-				else if (!reverse && o1.currentTime > o.currentTime)
-					return 1;
-				else if (reverse && o1.currentTime < o.currentTime)
-					return 1;
-				else if (o1.nTransfers < o.nTransfers)
-					return -1;
-				else if (o1.nTransfers > o.nTransfers)
-					return 1;
-				else if (!reverse
-						&& o1.firstPtDepartureTime < o.firstPtDepartureTime)
-					return -1;
-				else if (reverse
-						&& o1.firstPtDepartureTime > o.firstPtDepartureTime)
-					return -1;
-				else if (!reverse
-						&& o1.firstPtDepartureTime > o.firstPtDepartureTime)
-					return 1;
-				else if (reverse
-						&& o1.firstPtDepartureTime < o.firstPtDepartureTime)
-					return 1;
-				return 0;
-			}
-
-			@Override
-			public boolean equals(Object obj) {
-				return false;
-			}
-		});
-		fromMap = HashMultimap.create();
+		fromHeap = new LabelHeap(size, reverse);
+		arena = bounds.createArena(size);
+		fromMap = new LabelStore(graph.getNodes());
 	}
 
-	Collection<Label> calcLabels(int from, long startTime,
-			long rangeQueryEndTime) {
-		Set<Integer> to = Collections.emptySet();
+	/**
+	 * @return ids of the Pareto-optimal labels in the {@link #getArena()
+	 *         arena}.
+	 */
+	@Override
+	public int[] calcLabels(int from, long startTime, long rangeQueryEndTime) {
 		this.rangeQueryEndTime = rangeQueryEndTime;
-		Set<Label> targetLabels = new HashSet<>();
-		Label label = new Label(startTime, EdgeIterator.NO_EDGE, from, 0,
-				Long.MAX_VALUE, null);
-		fromMap.put(from, label);
-		if (to.contains(from)) {
-			targetLabels.add(label);
-		}
+		final long timeLimit = bounds.getTimeLimit(startTime,
+				rangeQueryEndTime, reverse);
+		final int maxTransfers = bounds.getMaxTransfers();
+		int labelId = arena.add(startTime, EdgeIterator.NO_EDGE, from, 0,
+				Long.MAX_VALUE, LabelArena.NO_LABEL);
+		fromMap.add(from, labelId, startTime, 0, Long.MAX_VALUE);
+		// Label which was polled, but not expanded when the search stopped
+		int unsettledLabel = LabelArena.NO_LABEL;
 		while (true) {
 			visitedNodes++;
-			if (visitedNodes % 1000 == 0) {
-				System.err.println(MessageFormat.format(
-						"Visited nodes: {0}/{1}", visitedNodes, nodes));
+			if (maxVisitedNodes < visitedNodes) {
+				unsettledLabel = labelId;
+				break;
 			}
-			if (maxVisitedNodes < visitedNodes)
+			if (bounds.isDeadlineReached(visitedNodes)) {
+				deadlineReached = true;
+				unsettledLabel = labelId;
 				break;
+			}
+			if (settledLabels != null) {
+				settle(labelId);
+			}
 
+			final Label label = arena.toLabel(labelId);
 			for (EdgeIteratorState edge : explorer.exploreEdgesAround(label)) {
 				GtfsStorage.EdgeType edgeType = flagEncoder.getEdgeType(edge
 						.getFlags());
@@ -151,107 +135,180 @@ class MultiCriteriaLabelsSetting {
 					tmpFirstPtDepartureTime = nextTime;
 				}
 
-				Set<Label> sptEntries = fromMap.get(edge.getAdjNode());
-				Label nEdge = new Label(nextTime, edge.getEdge(),
-						edge.getAdjNode(), tmpNTransfers,
-						tmpFirstPtDepartureTime, label);
-				if (improves(nEdge, sptEntries)
-						&& improves(nEdge, targetLabels)) {
-					removeDominated(nEdge, sptEntries);
-					if (to.contains(edge.getAdjNode())) {
-						removeDominated(nEdge, targetLabels);
-					}
-					fromMap.put(edge.getAdjNode(), nEdge);
-					if (to.contains(edge.getAdjNode())) {
-						targetLabels.add(nEdge);
-					}
-					fromHeap.add(nEdge);
+				final int adjNode = edge.getAdjNode();
+				if (tmpNTransfers > maxTransfers
+						|| (reverse ? nextTime < timeLimit
+								: nextTime > timeLimit)) {
+					labelsRejected++;
+				} else if (improves(nextTime, tmpNTransfers, tmpFirstPtDepartureTime,
+						adjNode)) {
+					removeDominated(nextTime, tmpNTransfers,
+							tmpFirstPtDepartureTime, adjNode);
+					final int id = arena.add(nextTime, edge.getEdge(), adjNode,
+							tmpNTransfers, tmpFirstPtDepartureTime, labelId);
+					fromMap.add(adjNode, id, nextTime, tmpNTransfers,
+							tmpFirstPtDepartureTime);
+					fromHeap.add(id, nextTime, tmpNTransfers,
+							tmpFirstPtDepartureTime);
+					labelsCreated++;
+					peakHeapSize = Math.max(peakHeapSize, fromHeap.size());
+					peakLabelsPerNode = Math.max(peakLabelsPerNode,
+							fromMap.size(adjNode));
+				} else {
+					labelsRejected++;
 				}
 			}
+			arena.release(labelId);
 
 			if (fromHeap.isEmpty())
 				break;
 
-			label = fromHeap.poll();
-			if (label == null)
-				throw new AssertionError("Empty edge cannot happen");
+			labelId = fromHeap.poll();
 		}
 
-		return fromMap.values();
+		final int[] labels = fromMap.values();
+		if (settledLabels != null) {
+			passPendingLabels();
+			// Expanded labels were passed unless they were dominated
+			for (int label : labels) {
+				if (label == unsettledLabel || fromHeap.contains(label)) {
+					settledLabels.accept(label);
+				}
+			}
+		}
+		return labels;
 	}
 
-	private boolean improves(Label me, Set<Label> sptEntries) {
-		for (Label they : sptEntries) {
-			if (they.nTransfers <= me.nTransfers
-					&& (reverse ? they.currentTime >= me.currentTime
-							: they.currentTime <= me.currentTime)
-					&& (reverse ? (they.firstPtDepartureTime <= me.firstPtDepartureTime || me.firstPtDepartureTime < rangeQueryEndTime)
-							: (they.firstPtDepartureTime >= me.firstPtDepartureTime || me.firstPtDepartureTime > rangeQueryEndTime))) {
+	/**
+	 * Adds the label to the pending labels. New labels never have an earlier
+	 * time (a later one in reverse mode) than the expanded label, so the
+	 * pending labels of an earlier time can no longer be dominated.
+	 */
+	private void settle(int labelId) {
+		if (!pendingLabels.isEmpty()
+				&& arena.getCurrentTime(pendingLabels.get(0)) != arena
+						.getCurrentTime(labelId)) {
+			passPendingLabels();
+		}
+		pendingLabels.add(labelId);
+	}
+
+	private void passPendingLabels() {
+		for (int index = 0; index < pendingLabels.size(); index++) {
+			settledLabels.accept(pendingLabels.get(index));
+		}
+		pendingLabels.clear();
+	}
+
+	@Override
+	public LabelArena getArena() {
+		return arena;
+	}
+
+	private boolean improves(long currentTime, int nTransfers,
+			long firstPtDepartureTime, int node) {
+		for (int index = fromMap.size(node) - 1; index >= 0; index--) {
+			final long theirCurrentTime = fromMap.getCurrentTime(node, index);
+			final long theirFirstPtDepartureTime = fromMap
+					.getFirstPtDepartureTime(node, index);
+			if (fromMap.getNTransfers(node, index) <= nTransfers
+					&& (reverse ? theirCurrentTime >= currentTime
+							: theirCurrentTime <= currentTime)
+					&& (reverse ? (theirFirstPtDepartureTime <= firstPtDepartureTime || firstPtDepartureTime < rangeQueryEndTime)
+							: (theirFirstPtDepartureTime >= firstPtDepartureTime || firstPtDepartureTime > rangeQueryEndTime))) {
 				return false;
 			}
 		}
 		return true;
 	}
 
-	private void removeDominated(Label me, Set<Label> sptEntries) {
-		for (Iterator<Label> iterator = sptEntries.iterator(); iterator
-				.hasNext();) {
-			Label sptEntry = iterator.next();
-			if (dominates(me, sptEntry)) {
-				fromHeap.remove(sptEntry);
-				iterator.remove();
+	private void removeDominated(long currentTime, int nTransfers,
+			long firstPtDepartureTime, int node) {
+		for (int index = fromMap.size(node) - 1; index >= 0; index--) {
+			final int they = fromMap.get(node, index);
+			if (dominates(currentTime, nTransfers, firstPtDepartureTime,
+					fromMap.getCurrentTime(node, index),
+					fromMap.getNTransfers(node, index),
+					fromMap.getFirstPtDepartureTime(node, index))) {
+				fromHeap.remove(they);
+				fromMap.remove(node, index);
+				arena.release(they);
+				dominatedRemovals++;
+				if (settledLabels != null) {
+					pendingLabels.removeFirst(they);
+				}
 			}
 		}
 	}
 
-	private boolean dominates(Label me, Label they) {
+	private boolean dominates(long myCurrentTime, int myNTransfers,
+			long myFirstPtDepartureTime, long theirCurrentTime,
+			int theirNTransfers, long theirFirstPtDepartureTime) {
 		if (reverse) {
-			if (me.currentTime < they.currentTime) {
+			if (myCurrentTime < theirCurrentTime) {
 				return false;
 			}
 		} else {
-			if (me.currentTime > they.currentTime) {
+			if (myCurrentTime > theirCurrentTime) {
 				return false;
 			}
 		}
-		if (me.nTransfers > they.nTransfers) {
+		if (myNTransfers > theirNTransfers) {
 			return false;
 		}
 		if (reverse) {
-			if (me.firstPtDepartureTime > they.firstPtDepartureTime) {
+			if (myFirstPtDepartureTime > theirFirstPtDepartureTime) {
 				return false;
 			}
 		} else {
-			if (me.firstPtDepartureTime < they.firstPtDepartureTime) {
+			if (myFirstPtDepartureTime < theirFirstPtDepartureTime) {
 				return false;
 			}
 		}
 		if (reverse) {
-			if (me.currentTime > they.currentTime) {
+			if (myCurrentTime > theirCurrentTime) {
 				return true;
 			}
 		} else {
-			if (me.currentTime < they.currentTime) {
+			if (myCurrentTime < theirCurrentTime) {
 				return true;
 			}
 		}
-		if (me.nTransfers < they.nTransfers) {
+		if (myNTransfers < theirNTransfers) {
 			return true;
 		}
 		if (reverse) {
-			if (me.firstPtDepartureTime < they.firstPtDepartureTime) {
+			if (myFirstPtDepartureTime < theirFirstPtDepartureTime) {
 				return true;
 			}
 		} else {
-			if (me.firstPtDepartureTime > they.firstPtDepartureTime) {
+			if (myFirstPtDepartureTime > theirFirstPtDepartureTime) {
 				return true;
 			}
 		}
 		return false;
 	}
 
-	int getVisitedNodes() {
+	@Override
+	public void setSettledLabelListener(IntConsumer listener) {
+		this.settledLabels = listener;
+	}
+
+	@Override
+	public int getVisitedNodes() {
 		return visitedNodes;
 	}
 
+	@Override
+	public boolean isDeadlineReached() {
+		return deadlineReached;
+	}
+
+	@Override
+	public void addStatistics(QueryStatistics statistics) {
+		statistics.addSearch(visitedNodes, labelsCreated, labelsRejected,
+				dominatedRemovals, peakHeapSize, peakLabelsPerNode);
+		statistics.addDeadlineReached(deadlineReached);
+	}
+
 }
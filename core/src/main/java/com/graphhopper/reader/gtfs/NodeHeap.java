@@ -0,0 +1,141 @@
+package com.graphhopper.reader.gtfs;
+
+import java.util.Arrays;
+
+import com.carrotsearch.hppc.IntIntHashMap;
+
+/**
+ * Indexed 4-ary min-heap of int ids (for instance node ids) keyed by a long
+ * (for instance a walking time).
+ * <p>
+ * Keys are kept in a primitive array next to the ids, the position of every
+ * id in the heap is tracked in a map so that the key of an id in the heap
+ * can be decreased in logarithmic time.
+ */
+final class NodeHeap {
+
+	private static final int ARITY = 4;
+
+	private int[] ids;
+	private long[] keys;
+	private int size;
+
+	/**
+	 * Position of the ids in the heap.
+	 */
+	private final IntIntHashMap positions;
+
+	NodeHeap(int capacity) {
+		this.ids = new int[capacity];
+		this.keys = new long[capacity];
+		this.positions = new IntIntHashMap(capacity);
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean contains(int id) {
+		return positions.containsKey(id);
+	}
+
+	void add(int id, long key) {
+		if (contains(id)) {
+			throw new IllegalArgumentException("Id " + id
+					+ " is already in the heap.");
+		}
+		if (size == ids.length) {
+			final int newCapacity = Math.max(1, ids.length << 1);
+			ids = Arrays.copyOf(ids, newCapacity);
+			keys = Arrays.copyOf(keys, newCapacity);
+		}
+		final int position = size++;
+		set(position, id, key);
+		siftUp(position);
+	}
+
+	/**
+	 * Decreases the key of an id in the heap.
+	 */
+	void decreaseKey(int id, long key) {
+		final int index = positions.indexOf(id);
+		if (!positions.indexExists(index)) {
+			throw new IllegalArgumentException("Id " + id
+					+ " is not in the heap.");
+		}
+		final int position = positions.indexGet(index);
+		if (key > keys[position]) {
+			throw new IllegalArgumentException("Key of id " + id
+					+ " must not increase.");
+		}
+		keys[position] = key;
+		siftUp(position);
+	}
+
+	/**
+	 * Removes the id with the least key from the heap.
+	 *
+	 * @return the removed id.
+	 */
+	int poll() {
+		if (size == 0) {
+			throw new IllegalStateException("Heap is empty.");
+		}
+		final int id = ids[0];
+		positions.remove(id);
+		final int last = --size;
+		if (last > 0) {
+			set(0, ids[last], keys[last]);
+			siftDown(0);
+		}
+		return id;
+	}
+
+	private void siftUp(int position) {
+		final int id = ids[position];
+		final long key = keys[position];
+		while (position > 0) {
+			final int parent = (position - 1) / ARITY;
+			if (keys[parent] <= key) {
+				break;
+			}
+			set(position, ids[parent], keys[parent]);
+			position = parent;
+		}
+		set(position, id, key);
+	}
+
+	private void siftDown(int position) {
+		final int id = ids[position];
+		final long key = keys[position];
+		while (true) {
+			final int firstChild = position * ARITY + 1;
+			if (firstChild >= size) {
+				break;
+			}
+			final int lastChild = Math.min(firstChild + ARITY, size);
+			int minChild = firstChild;
+			for (int child = firstChild + 1; child < lastChild; child++) {
+				if (keys[child] < keys[minChild]) {
+					minChild = child;
+				}
+			}
+			if (keys[minChild] >= key) {
+				break;
+			}
+			set(position, ids[minChild], keys[minChild]);
+			position = minChild;
+		}
+		set(position, id, key);
+	}
+
+	private void set(int position, int id, long key) {
+		ids[position] = id;
+		keys[position] = key;
+		positions.put(id, position);
+	}
+}
@@ -0,0 +1,386 @@
+package com.graphhopper.reader.gtfs;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntLongHashMap;
+import com.carrotsearch.hppc.LongArrayList;
+import com.graphhopper.routing.weighting.TimeDependentWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * Round-based profile search over a departure window, in the manner of
+ * rRAPTOR.
+ * <p>
+ * The departure times within the window are collected from the departures
+ * which can be reached by walking from the start node. The departures are
+ * then searched one after the other, latest first, in rounds of equal number
+ * of transfers. The best time per round and node is kept over all the
+ * departures, so that an earlier departure only creates labels where it
+ * arrives strictly earlier than a later one. Together the labels form the
+ * Pareto profile of departure time, arrival time and number of transfers.
+ * <p>
+ * There is no separate RAPTOR timetable in the {@link GtfsStorage}, the
+ * rounds run over the time-expanded graph with the same {@link GraphExplorer}
+ * and weighting as the {@link MultiCriteriaLabelsSetting}. In reverse
+ * (arrive-by) mode the window is a window of arrival times. The maximum
+ * travel time of the {@link SearchBounds} applies to each departure, the
+ * maximum number of transfers is given by the number of rounds.
+ */
+final class ProfileLabelsSetting implements LabelsSetting {
+
+	/**
+	 * Maximum number of transfers of a profile search unless the
+	 * {@link SearchBounds} are lower. Every number of transfers takes a round
+	 * and an array over the nodes, so the rounds are always bounded.
+	 */
+	static final int DEFAULT_MAX_TRANSFERS = 5;
+
+	/**
+	 * Departures are only collected from stops within this walking time of
+	 * the start node.
+	 */
+	private static final long MAX_ACCESS_SECONDS = 60 * 60;
+
+	private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+	private final PtFlagEncoder flagEncoder;
+	private final TimeDependentWeighting weighting;
+	private final GraphExplorer explorer;
+	private final EdgeExplorer edgeExplorer;
+	private final int maxVisitedNodes;
+	private final SearchBounds bounds;
+	private final boolean reverse;
+	private final int rounds;
+	private final int nodes;
+	private final LabelArena arena;
+	private final LabelHeap heap;
+
+	/**
+	 * Best time, current label and the departure iteration which created it,
+	 * per round and node. Allocated when the round is reached first.
+	 */
+	private final long[][] bestTimes;
+	private final int[][] labelIds;
+	private final int[][] iterations;
+
+	/**
+	 * Latest arrival (or earliest departure) of the current departure.
+	 */
+	private long timeLimit;
+
+	private IntConsumer settledLabels;
+
+	private int visitedNodes;
+	private boolean deadlineReached;
+	private int labelsCreated;
+	private int labelsRejected;
+	private int dominatedRemovals;
+	private int peakHeapSize;
+
+	ProfileLabelsSetting(Graph graph, Weighting weighting,
+			int maxVisitedNodes, SearchBounds bounds, GraphExplorer explorer,
+			EdgeExplorer edgeExplorer, boolean reverse, int maxTransfers) {
+		if (maxTransfers < 0) {
+			throw new IllegalArgumentException(
+					"Maximum number of transfers must not be negative, but was: "
+							+ maxTransfers);
+		}
+		this.weighting = (TimeDependentWeighting) weighting;
+		this.flagEncoder = (PtFlagEncoder) weighting.getFlagEncoder();
+		this.maxVisitedNodes = maxVisitedNodes;
+		this.bounds = bounds;
+		this.explorer = explorer;
+		this.edgeExplorer = edgeExplorer;
+		this.reverse = reverse;
+		this.rounds = maxTransfers + 1;
+		this.nodes = graph.getNodes();
+		int size = Math.min(Math.max(200, graph.getNodes() / 10), 2000);
+		this.heap = new LabelHeap(size, reverse);
+		this.arena = bounds.createArena(size);
+		this.bestTimes = new long[rounds][];
+		this.labelIds = new int[rounds][];
+		this.iterations = new int[rounds][];
+	}
+
+	@Override
+	public int[] calcLabels(int from, long startTime, long rangeQueryEndTime) {
+		final long[] departures = collectDepartures(from, startTime,
+				rangeQueryEndTime);
+		final IntArrayList results = new IntArrayList();
+		for (int iteration = 0; iteration < departures.length
+				&& visitedNodes <= maxVisitedNodes && !deadlineReached; iteration++) {
+			search(from, departures[iteration], iteration, results);
+		}
+		return results.toArray();
+	}
+
+	@Override
+	public LabelArena getArena() {
+		return arena;
+	}
+
+	/**
+	 * Labels are final at the end of the search of their departure, later
+	 * departures may add better labels at the same nodes.
+	 */
+	@Override
+	public void setSettledLabelListener(IntConsumer listener) {
+		this.settledLabels = listener;
+	}
+
+	@Override
+	public int getVisitedNodes() {
+		return visitedNodes;
+	}
+
+	@Override
+	public boolean isDeadlineReached() {
+		return deadlineReached;
+	}
+
+	/**
+	 * Reports the number of rounds as peak labels per node, there is at most
+	 * one label per round and node.
+	 */
+	@Override
+	public void addStatistics(QueryStatistics statistics) {
+		statistics.addSearch(visitedNodes, labelsCreated, labelsRejected,
+				dominatedRemovals, peakHeapSize, rounds);
+		statistics.addDeadlineReached(deadlineReached);
+	}
+
+	/**
+	 * @return departure times in the order of search, the latest departure
+	 *         (or the earliest arrival in reverse mode) first.
+	 */
+	long[] collectDepartures(int from, long startTime, long rangeQueryEndTime) {
+		final long windowStart = reverse ? rangeQueryEndTime : startTime;
+		final long windowEnd = reverse ? startTime : rangeQueryEndTime;
+		if (windowEnd <= windowStart) {
+			return new long[] { startTime };
+		}
+		final GtfsStorage.EdgeType accessType = reverse ? GtfsStorage.EdgeType.EXIT_PT
+				: GtfsStorage.EdgeType.ENTER_PT;
+		final GtfsStorage.EdgeType departureType = reverse ? GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK
+				: GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK;
+		final long firstDay = windowStart / SECONDS_PER_DAY * SECONDS_PER_DAY;
+
+		final LongArrayList departures = new LongArrayList();
+		departures.add(startTime);
+		final NodeHeap queue = new NodeHeap(16);
+		final IntLongHashMap walkTimes = new IntLongHashMap();
+		final IntHashSet settled = new IntHashSet();
+		queue.add(from, 0);
+		walkTimes.put(from, 0);
+		while (!queue.isEmpty()) {
+			final int node = queue.poll();
+			final long walkTime = walkTimes.get(node);
+			settled.add(node);
+			final EdgeIterator iter = edgeExplorer.setBaseNode(node);
+			while (iter.next()) {
+				final GtfsStorage.EdgeType edgeType = flagEncoder
+						.getEdgeType(iter.getFlags());
+				if (edgeType == departureType) {
+					final long timeOfDay = flagEncoder.getTime(iter.getFlags());
+					for (long day = firstDay; day <= windowEnd; day += SECONDS_PER_DAY) {
+						final long time = reverse ? day + timeOfDay + walkTime
+								: day + timeOfDay - walkTime;
+						if (time >= windowStart && time <= windowEnd) {
+							departures.add(time);
+						}
+					}
+				} else if (edgeType == GtfsStorage.EdgeType.HIGHWAY
+						|| edgeType == accessType) {
+					final long nextWalkTime = walkTime
+							+ weighting.calcTravelTimeSeconds(iter, 0);
+					final int adjNode = iter.getAdjNode();
+					if (nextWalkTime > MAX_ACCESS_SECONDS
+							|| settled.contains(adjNode)) {
+						continue;
+					}
+					final int index = walkTimes.indexOf(adjNode);
+					if (!walkTimes.indexExists(index)) {
+						walkTimes.indexInsert(index, adjNode, nextWalkTime);
+						queue.add(adjNode, nextWalkTime);
+					} else if (nextWalkTime < walkTimes.indexGet(index)) {
+						walkTimes.indexReplace(index, nextWalkTime);
+						queue.decreaseKey(adjNode, nextWalkTime);
+					}
+				}
+			}
+		}
+
+		final long[] sorted = departures.toArray();
+		Arrays.sort(sorted);
+		int size = 0;
+		for (int index = 0; index < sorted.length; index++) {
+			if (size == 0 || sorted[size - 1] != sorted[index]) {
+				sorted[size++] = sorted[index];
+			}
+		}
+		final long[] result = new long[size];
+		for (int index = 0; index < size; index++) {
+			result[index] = reverse ? sorted[index] : sorted[size - 1 - index];
+		}
+		return result;
+	}
+
+	private void search(int from, long departureTime, int iteration,
+			IntArrayList results) {
+		final IntArrayList[] seeds = new IntArrayList[rounds];
+		timeLimit = bounds.getTimeLimit(departureTime, departureTime, reverse);
+		// Pairs of round and node of the labels created in this iteration
+		final IntArrayList created = new IntArrayList();
+		final int root = arena.add(departureTime, EdgeIterator.NO_EDGE, from,
+				0, Long.MAX_VALUE, LabelArena.NO_LABEL);
+		if (improves(0, from, departureTime)) {
+			set(0, from, root, departureTime, iteration, created);
+		}
+		heap.add(root, departureTime, 0, Long.MAX_VALUE);
+
+		for (int round = 0; round < rounds; round++) {
+			if (round > 0) {
+				if (seeds[round] == null) {
+					continue;
+				}
+				for (int index = 0; index < seeds[round].size(); index++) {
+					final int seed = seeds[round].get(index);
+					// Skip seeds which were improved on later in the round
+					if (labelIds[round][arena.getAdjNode(seed)] == seed) {
+						heap.add(seed, arena.getCurrentTime(seed), round,
+								arena.getFirstPtDepartureTime(seed));
+					}
+				}
+				peakHeapSize = Math.max(peakHeapSize, heap.size());
+			}
+			while (!heap.isEmpty()) {
+				if (++visitedNodes > maxVisitedNodes) {
+					break;
+				}
+				if (bounds.isDeadlineReached(visitedNodes)) {
+					deadlineReached = true;
+					break;
+				}
+				final int labelId = heap.poll();
+				expand(labelId, round, iteration, seeds, created);
+				arena.release(labelId);
+			}
+			if (visitedNodes > maxVisitedNodes || deadlineReached) {
+				break;
+			}
+		}
+
+		// Labels replaced within this iteration are not part of the profile
+		for (int index = 0; index < created.size(); index += 2) {
+			final int round = created.get(index);
+			final int node = created.get(index + 1);
+			if (iterations[round][node] == iteration) {
+				results.add(labelIds[round][node]);
+				if (settledLabels != null) {
+					settledLabels.accept(labelIds[round][node]);
+				}
+				iterations[round][node] = -1 - iteration;
+			}
+		}
+	}
+
+	private void expand(int labelId, int round, int iteration,
+			IntArrayList[] seeds, IntArrayList created) {
+		final Label label = arena.toLabel(labelId);
+		for (EdgeIteratorState edge : explorer.exploreEdgesAround(label)) {
+			final GtfsStorage.EdgeType edgeType = flagEncoder.getEdgeType(edge
+					.getFlags());
+			final long travelTime = weighting.calcTravelTimeSeconds(edge,
+					label.currentTime);
+			final long nextTime = reverse ? label.currentTime - travelTime
+					: label.currentTime + travelTime;
+			final int nTransfers = label.nTransfers
+					+ weighting.calcNTransfers(edge);
+			if (nTransfers >= rounds
+					|| (reverse ? nextTime < timeLimit : nextTime > timeLimit)) {
+				continue;
+			}
+			long firstPtDepartureTime = label.firstPtDepartureTime;
+			if (firstPtDepartureTime == Long.MAX_VALUE
+					&& edgeType == (reverse ? GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK
+							: GtfsStorage.EdgeType.BOARD)) {
+				firstPtDepartureTime = nextTime;
+			}
+			final int adjNode = edge.getAdjNode();
+			if (!improves(nTransfers, adjNode, nextTime)) {
+				labelsRejected++;
+				continue;
+			}
+			labelsCreated++;
+			final int id = arena.add(nextTime, edge.getEdge(), adjNode,
+					nTransfers, firstPtDepartureTime, labelId);
+			final int previous = set(nTransfers, adjNode, id, nextTime,
+					iteration, created);
+			if (previous != LabelArena.NO_LABEL) {
+				arena.release(previous);
+				dominatedRemovals++;
+			}
+			if (nTransfers == round) {
+				if (previous != LabelArena.NO_LABEL) {
+					heap.remove(previous);
+				}
+				heap.add(id, nextTime, nTransfers, firstPtDepartureTime);
+				peakHeapSize = Math.max(peakHeapSize, heap.size());
+			} else {
+				if (seeds[nTransfers] == null) {
+					seeds[nTransfers] = new IntArrayList();
+				}
+				seeds[nTransfers].add(id);
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the time is strictly better than the best
+	 *         time at the node with at most the given number of transfers.
+	 */
+	private boolean improves(int round, int node, long time) {
+		for (int index = 0; index <= round; index++) {
+			if (bestTimes[index] != null) {
+				final long bestTime = bestTimes[index][node];
+				if (reverse ? bestTime >= time : bestTime <= time) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return id of the label replaced at the node in this iteration or
+	 *         {@link LabelArena#NO_LABEL}.
+	 */
+	private int set(int round, int node, int id, long time, int iteration,
+			IntArrayList created) {
+		if (bestTimes[round] == null) {
+			bestTimes[round] = new long[nodes];
+			Arrays.fill(bestTimes[round], reverse ? Long.MIN_VALUE
+					: Long.MAX_VALUE);
+			labelIds[round] = new int[nodes];
+			Arrays.fill(labelIds[round], LabelArena.NO_LABEL);
+			iterations[round] = new int[nodes];
+			Arrays.fill(iterations[round], -1);
+		}
+		final int previous = labelIds[round][node];
+		final boolean replaced = iterations[round][node] == iteration;
+		bestTimes[round][node] = time;
+		labelIds[round][node] = id;
+		if (!replaced) {
+			iterations[round][node] = iteration;
+			created.add(round, node);
+		}
+		return replaced ? previous : LabelArena.NO_LABEL;
+	}
+}
@@ -0,0 +1,150 @@
+package com.graphhopper.reader.gtfs;
+
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.spi.JsonProvider;
+
+/**
+ * Counters and phase timings of one roads query.
+ * <p>
+ * The searches count in plain fields of their own and only copy the counters
+ * here once they are done, so collecting statistics does not cost anything in
+ * the search loop. Instances are not thread-safe, they belong to one query.
+ */
+public final class QueryStatistics {
+
+	private int visitedNodes;
+	private int labelsCreated;
+	private int labelsRejected;
+	private int dominatedRemovals;
+	private int peakHeapSize;
+	private int peakLabelsPerNode;
+	private boolean cached;
+	private boolean deadlineReached;
+
+	private long snappingNanos;
+	private long searchNanos;
+	private long roadBuildingNanos;
+	private long serializationNanos;
+
+	void addSearch(int visitedNodes, int labelsCreated, int labelsRejected,
+			int dominatedRemovals, int peakHeapSize, int peakLabelsPerNode) {
+		this.visitedNodes += visitedNodes;
+		this.labelsCreated += labelsCreated;
+		this.labelsRejected += labelsRejected;
+		this.dominatedRemovals += dominatedRemovals;
+		this.peakHeapSize = Math.max(this.peakHeapSize, peakHeapSize);
+		this.peakLabelsPerNode = Math.max(this.peakLabelsPerNode,
+				peakLabelsPerNode);
+	}
+
+	void addDeadlineReached(boolean deadlineReached) {
+		this.deadlineReached |= deadlineReached;
+	}
+
+	void setCached(boolean cached) {
+		this.cached = cached;
+	}
+
+	void setSnappingNanos(long snappingNanos) {
+		this.snappingNanos = snappingNanos;
+	}
+
+	void setSearchNanos(long searchNanos) {
+		this.searchNanos = searchNanos;
+	}
+
+	void setRoadBuildingNanos(long roadBuildingNanos) {
+		this.roadBuildingNanos = roadBuildingNanos;
+	}
+
+	void setSerializationNanos(long serializationNanos) {
+		this.serializationNanos = serializationNanos;
+	}
+
+	public int getVisitedNodes() {
+		return visitedNodes;
+	}
+
+	public int getLabelsCreated() {
+		return labelsCreated;
+	}
+
+	/**
+	 * @return number of labels which were not created since they did not
+	 *         improve on the labels of their node.
+	 */
+	public int getLabelsRejected() {
+		return labelsRejected;
+	}
+
+	/**
+	 * @return number of labels removed since a new label dominated them.
+	 */
+	public int getDominatedRemovals() {
+		return dominatedRemovals;
+	}
+
+	public int getPeakHeapSize() {
+		return peakHeapSize;
+	}
+
+	public int getPeakLabelsPerNode() {
+		return peakLabelsPerNode;
+	}
+
+	/**
+	 * @return <code>true</code> if the roads were taken from the cache
+	 *         without a search.
+	 */
+	public boolean isCached() {
+		return cached;
+	}
+
+	/**
+	 * @return <code>true</code> if the search was stopped at its deadline and
+	 *         the roads are partial.
+	 */
+	public boolean isDeadlineReached() {
+		return deadlineReached;
+	}
+
+	public long getSnappingNanos() {
+		return snappingNanos;
+	}
+
+	public long getSearchNanos() {
+		return searchNanos;
+	}
+
+	public long getRoadBuildingNanos() {
+		return roadBuildingNanos;
+	}
+
+	public long getSerializationNanos() {
+		return serializationNanos;
+	}
+
+	public JsonObject toJsonObject() {
+		final JsonObjectBuilder builder = JsonProvider.provider()
+				.createObjectBuilder();
+		builder.add("visitedNodes", visitedNodes);
+		builder.add("labelsCreated", labelsCreated);
+		builder.add("labelsRejected", labelsRejected);
+		builder.add("dominatedRemovals", dominatedRemovals);
+		builder.add("peakHeapSize", peakHeapSize);
+		builder.add("peakLabelsPerNode", peakLabelsPerNode);
+		builder.add("cached", cached);
+		builder.add("deadlineReached", deadlineReached);
+		builder.add("snappingNanos", snappingNanos);
+		builder.add("searchNanos", searchNanos);
+		builder.add("roadBuildingNanos", roadBuildingNanos);
+		builder.add("serializationNanos", serializationNanos);
+		return builder.build();
+	}
+
+	@Override
+	public String toString() {
+		return toJsonObject().toString();
+	}
+}
@@ -0,0 +1,11 @@
+package com.graphhopper.reader.gtfs;
+
+/**
+ * Receives the statistics of finished roads queries.
+ * <p>
+ * Listeners may be called from several query threads concurrently.
+ */
+public interface QueryStatisticsListener {
+
+	void queryFinished(QueryStatistics statistics);
+}
@@ -20,11 +20,22 @@ public class Road {
 		this.numberOfTransfers = numberOfTransfers;
 	}
 
+	public Road(long startTime, int numberOfTransfers, PointList pointList,
+			int numberOfThreads) {
+		this(startTime, numberOfTransfers, pointList);
+		this.numberOfThreads = numberOfThreads;
+	}
+
 	public Road increadNumberOfThreads() {
 		this.numberOfThreads++;
 		return this;
 	}
 
+	public Road increadNumberOfThreads(int numberOfThreads) {
+		this.numberOfThreads += numberOfThreads;
+		return this;
+	}
+
 	public long getCurrentTime() {
 		return currentTime;
 	}
@@ -1,96 +1,284 @@
 package com.graphhopper.reader.gtfs;
 
-import java.text.MessageFormat;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
 
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.carrotsearch.hppc.LongObjectHashMap;
+import com.carrotsearch.hppc.cursors.IntCursor;
 import com.graphhopper.storage.GraphHopperStorage;
-import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointList;
 
+/**
+ * Builds roads from the labels of a search.
+ * <p>
+ * For every location the label with the earliest arrival (or the latest
+ * departure for a reverse search) is kept. The parent chains of these labels
+ * are cut into segments which span at least two distinct points, equal
+ * segments are merged into one road counting the number of chains (threads)
+ * passing through it. Segments are equal if their points have the same
+ * {@link #location(double, double) locations}, the precision the graph keeps
+ * coordinates at. A chain which reaches the root of the search before it
+ * spans two distinct points has no road. Labels are processed in descending order of their ids
+ * (parents always have smaller ids than their children), so that every
+ * segment is built once and its count is passed on to the segment before it.
+ * <p>
+ * Roads run in the direction of travel: away from the origin of a forward
+ * search and towards the destination of a reverse search. The time of a road
+ * is the time of the label at its end farther from the root of the search,
+ * the arrival for a forward and the departure for a reverse search.
+ */
 public class RoadBuilder {
 
 	private final GraphHopperStorage storage;
 
-	public RoadBuilder(GraphHopperStorage storage) {
-		this.storage = storage;
-	}
+	private final LabelArena arena;
 
-	private Map<PointList, Label> labels = new HashMap<>();
+	private final boolean reverse;
 
-	private Map<PointList, Road> roads = new HashMap<>();
+	/**
+	 * Label with the earliest arrival (latest departure) per location, keyed
+	 * by the location.
+	 */
+	private final LongIntHashMap labels = new LongIntHashMap();
 
-	public void addLabel(Label label) {
-		double lastLat = storage.getNodeAccess().getLat(label.adjNode);
-		double lastLon = storage.getNodeAccess().getLon(label.adjNode);
-		final PointList lastPoint = new PointList(1, false);
-		lastPoint.add(lastLat, lastLon);
+	private final LongObjectHashMap<PointList> geometries = new LongObjectHashMap<>();
 
-		labels.compute(lastPoint, (key, oldLabel) -> {
-			if (oldLabel == null) {
-				return label;
-			} else if (label.currentTime < oldLabel.currentTime) {
+	private final IntFunction<PointList> labelGeometries = this::fetchGeometry;
 
-				return label;
-			} else {
-				return oldLabel;
-			}
-		});
+	private final List<Road> roads = new ArrayList<>();
+
+	/**
+	 * Index of the first road per geometry hash, further roads with the same
+	 * hash are chained in {@link #nextRoads}.
+	 */
+	private final LongIntHashMap roadsByHash = new LongIntHashMap();
+
+	private final IntArrayList nextRoads = new IntArrayList();
+
+	/**
+	 * Locations of the points of all roads in the direction of travel, the
+	 * points of a road start at its index in {@link #roadStarts} and end at
+	 * the next one.
+	 */
+	private final LongArrayList roadLocations = new LongArrayList();
+
+	private final IntArrayList roadStarts = IntArrayList.from(0);
+
+	RoadBuilder(GraphHopperStorage storage, LabelArena arena) {
+		this(storage, arena, false);
 	}
 
-	public Roads buildRoads() {
-		this.labels.values().forEach(this::buildRoads);
-		return new Roads(this.roads.values());
+	/**
+	 * @param reverse
+	 *            whether the labels are of a reverse (arrive-by) search
+	 */
+	RoadBuilder(GraphHopperStorage storage, LabelArena arena, boolean reverse) {
+		this.storage = storage;
+		this.arena = arena;
+		this.reverse = reverse;
 	}
 
-	private void buildRoads(Label label) {
-		if (label == null || label.edge == -1) {
-			return;
+	public void addLabel(int label) {
+		final int adjNode = arena.getAdjNode(label);
+		final NodeAccess nodeAccess = storage.getNodeAccess();
+		final long location = location(nodeAccess.getLat(adjNode),
+				nodeAccess.getLon(adjNode));
+		final int index = labels.indexOf(location);
+		if (!labels.indexExists(index)) {
+			labels.indexInsert(index, location, label);
+		} else if (reverse ? arena.getCurrentTime(label) > arena
+				.getCurrentTime(labels.indexGet(index)) : arena
+				.getCurrentTime(label) < arena.getCurrentTime(labels
+				.indexGet(index))) {
+			labels.indexReplace(index, label);
 		}
-		long currentTime;
-		final PointList pointList = new PointList();
-		int numberOfTransfers = 0;
+	}
 
+	/**
+	 * Builds the roads. The numbers of chains starting a segment at a label
+	 * are counted in the {@link LabelArena#getThreads(int) threads} of the
+	 * arena, so that they are spilled with the labels, and are reset to zero
+	 * once the segment is built.
+	 */
+	public Roads buildRoads() {
+		for (IntCursor cursor : labels.values()) {
+			arena.setThreads(cursor.value, arena.getThreads(cursor.value) + 1);
+		}
+		final PointList points = new PointList();
+		for (int label = arena.size() - 1; label >= 0; label--) {
+			final int threads = arena.getThreads(label);
+			if (threads == 0) {
+				continue;
+			}
+			arena.setThreads(label, 0);
+			if (arena.getEdge(label) == EdgeIterator.NO_EDGE) {
+				continue;
+			}
+			final int end = collectPoints(arena, labelGeometries, label, points);
+			if (points.size() >= 2) {
+				int numberOfTransfers = 0;
+				for (int currentLabel = label; currentLabel != end; currentLabel = arena
+						.getParent(currentLabel)) {
+					numberOfTransfers += arena.getNTransfers(currentLabel);
+				}
+				addRoad(arena.getCurrentTime(label), numberOfTransfers, points,
+						threads);
+			}
+			if (end != LabelArena.NO_LABEL) {
+				arena.setThreads(end, arena.getThreads(end) + threads);
+			}
+		}
+		return new Roads(roads);
+	}
+
+	/**
+	 * Collects the points of the chain from the label towards the root,
+	 * until they span at least two distinct points. A point is only collected
+	 * if both its latitude and its longitude differ from the point before it
+	 * in the chain. Fewer than two points are collected if the chain reaches
+	 * the root first. Shared with the {@link IncrementalRoadBuilder}, as are
+	 * the hash and the equality of segments, so that streamed and built roads
+	 * are the same.
+	 *
+	 * @param geometries
+	 *            geometry of the edge of a label, from its base to its
+	 *            adjacent node
+	 * @return the label the segment ends at.
+	 */
+	static int collectPoints(LabelArena arena,
+			IntFunction<PointList> geometries, int label, PointList points) {
+		points.clear();
 		double lastLat = Double.NaN;
 		double lastLon = Double.NaN;
-		Label currentLabel = label;
-		currentTime = currentLabel.currentTime;
+		int currentLabel = label;
 		do {
-			numberOfTransfers += currentLabel.nTransfers;
-			final EdgeIteratorState state = storage.getEdgeIteratorState(
-					currentLabel.edge, currentLabel.adjNode);
-			final PointList geometry = state.fetchWayGeometry(3);
+			final PointList geometry = geometries.apply(currentLabel);
 			for (int index = geometry.getSize() - 1; index >= 0; index--) {
-				double currentLat = geometry.getLat(index);
-				double currentLon = geometry.getLon(index);
+				final double currentLat = geometry.getLat(index);
+				final double currentLon = geometry.getLon(index);
 				if (Double.doubleToLongBits(currentLat) != Double
 						.doubleToLongBits(lastLat)
 						&& Double.doubleToLongBits(currentLon) != Double
 								.doubleToLongBits(lastLon)) {
-					pointList.add(currentLat, currentLon);
+					points.add(currentLat, currentLon);
 				}
 				lastLat = currentLat;
 				lastLon = currentLon;
+			}
+			currentLabel = arena.getParent(currentLabel);
+		} while (currentLabel != LabelArena.NO_LABEL
+				&& arena.getEdge(currentLabel) != EdgeIterator.NO_EDGE
+				&& points.size() < 2);
+		return currentLabel;
+	}
 
+	/**
+	 * Adds a road with the given points, collected from the end of the chain
+	 * towards the root, or increases the number of threads of the equal road.
+	 */
+	private void addRoad(long currentTime, int numberOfTransfers,
+			PointList chainPoints, int numberOfThreads) {
+		final long hash = hash(chainPoints, reverse);
+		final int first = roadsByHash.getOrDefault(hash, -1);
+		for (int index = first; index >= 0; index = nextRoads.get(index)) {
+			if (equalsChain(roadLocations, roadStarts.get(index),
+					roadStarts.get(index + 1), chainPoints, reverse)) {
+				roads.get(index).increadNumberOfThreads(numberOfThreads);
+				return;
 			}
-			currentLabel = currentLabel.parent;
-		} while (currentLabel != null && currentLabel.edge != -1
-				&& pointList.size() < 2);
-		if (pointList.size() < 2) {
-			System.out.println(MessageFormat.format("Point list size is {0}.",
-					pointList.size()));
 		}
+		final int size = chainPoints.size();
+		final PointList pointList = new PointList(size, false);
+		for (int index = 0; index < size; index++) {
+			final int point = travelOrder(index, size, reverse);
+			pointList.add(chainPoints.getLat(point), chainPoints.getLon(point));
+		}
+		final Road road = new Road(currentTime, numberOfTransfers, pointList,
+				numberOfThreads);
+		roadsByHash.put(hash, roads.size());
+		nextRoads.add(first);
+		addLocations(chainPoints, reverse, roadLocations);
+		roadStarts.add(roadLocations.size());
+		roads.add(road);
+	}
+
+	private PointList fetchGeometry(int label) {
+		final int edge = arena.getEdge(label);
+		final int adjNode = arena.getAdjNode(label);
+		final long key = ((long) edge << 32) | (adjNode & 0xFFFFFFFFL);
+		PointList geometry = geometries.get(key);
+		if (geometry == null) {
+			geometry = storage.getEdgeIteratorState(edge, adjNode)
+					.fetchWayGeometry(3);
+			geometries.put(key, geometry);
+		}
+		return geometry;
+	}
 
-		pointList.reverse();
-		final Road road = new Road(currentTime, numberOfTransfers, pointList);
+	/**
+	 * @return index of the chain point at the given index in the direction
+	 *         of travel. Chains run against the direction of travel in a
+	 *         forward search and along it in a reverse search.
+	 */
+	static int travelOrder(int index, int size, boolean reverse) {
+		return reverse ? index : size - 1 - index;
+	}
 
-		roads.compute(road.getPointList(), (key, oldRoad) -> {
-			if (oldRoad == null) {
-				return road;
-			} else {
-				return oldRoad.increadNumberOfThreads();
+	/**
+	 * Adds the locations of the chain points in the direction of travel.
+	 */
+	static void addLocations(PointList chainPoints, boolean reverse,
+			LongArrayList locations) {
+		final int size = chainPoints.size();
+		for (int index = 0; index < size; index++) {
+			final int point = travelOrder(index, size, reverse);
+			locations.add(location(chainPoints.getLat(point),
+					chainPoints.getLon(point)));
+		}
+	}
+
+	/**
+	 * @return whether the locations from <code>start</code> (inclusive) to
+	 *         <code>end</code> (exclusive) are those of the chain points in the
+	 *         direction of travel.
+	 */
+	static boolean equalsChain(LongArrayList locations, int start, int end,
+			PointList chainPoints, boolean reverse) {
+		final int size = chainPoints.size();
+		if (end - start != size) {
+			return false;
+		}
+		for (int index = 0; index < size; index++) {
+			final int point = travelOrder(index, size, reverse);
+			if (locations.get(start + index) != location(
+					chainPoints.getLat(point), chainPoints.getLon(point))) {
+				return false;
 			}
-		});
-		buildRoads(currentLabel);
+		}
+		return true;
+	}
+
+	static long hash(PointList chainPoints, boolean reverse) {
+		final int size = chainPoints.size();
+		long hash = size;
+		for (int index = 0; index < size; index++) {
+			final int point = travelOrder(index, size, reverse);
+			hash = 31 * hash
+					+ location(chainPoints.getLat(point),
+							chainPoints.getLon(point));
+		}
+		return hash;
+	}
+
+	static long location(double lat, double lon) {
+		return ((long) Helper.degreeToInt(lat) << 32)
+				| (Helper.degreeToInt(lon) & 0xFFFFFFFFL);
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
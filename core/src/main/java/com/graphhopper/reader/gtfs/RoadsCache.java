@@ -0,0 +1,259 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.MessageFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded LRU cache of calculated roads.
+ * <p>
+ * Roads are keyed by the snapped start node and the parameters of the search,
+ * so that all the queries which snap to the same node share one entry. If a
+ * directory is given, roads are additionally persisted there in the binary
+ * format and read back on a miss of the in-memory cache, also after a
+ * restart. The directory must only be used for one graph.
+ */
+public class RoadsCache {
+
+	private static final String FILE_SUFFIX = ".roads";
+
+	/**
+	 * Decimal places of the persisted coordinates. The graph keeps seven,
+	 * coordinates with up to nine decimal places are read back as the same
+	 * doubles, so that roads from disk equal the roads from memory.
+	 */
+	private static final int PRECISION = BinaryRoadsWriter.MAX_PRECISION;
+
+	private final int maximumSize;
+	private final File directory;
+	private final Map<Key, Roads> entries;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong diskHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	public RoadsCache(int maximumSize) {
+		this(maximumSize, null);
+	}
+
+	/**
+	 * @param maximumSize
+	 *            maximum number of roads kept in memory
+	 * @param directory
+	 *            directory to persist roads to, may be <code>null</code>
+	 */
+	public RoadsCache(int maximumSize, File directory) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException(
+					"Maximum size must be positive, but was: " + maximumSize);
+		}
+		this.maximumSize = maximumSize;
+		this.directory = directory;
+		if (directory != null && !directory.isDirectory()
+				&& !directory.mkdirs()) {
+			throw new IllegalArgumentException(
+					"Could not create cache directory " + directory + ".");
+		}
+		this.entries = new LinkedHashMap<Key, Roads>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Roads> eldest) {
+				if (size() > RoadsCache.this.maximumSize) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @return cached roads or <code>null</code> if there are none.
+	 */
+	public Roads get(Key key) {
+		Roads roads;
+		synchronized (entries) {
+			roads = entries.get(key);
+		}
+		if (roads != null) {
+			hits.incrementAndGet();
+			return roads;
+		}
+		roads = readFromDisk(key);
+		if (roads != null) {
+			diskHits.incrementAndGet();
+			synchronized (entries) {
+				entries.put(key, roads);
+			}
+			return roads;
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	public void put(Key key, Roads roads) {
+		synchronized (entries) {
+			entries.put(key, roads);
+		}
+		writeToDisk(key, roads);
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getDiskHits() {
+		return diskHits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	@Override
+	public String toString() {
+		return MessageFormat.format(
+				"RoadsCache [size={0}, hits={1}, diskHits={2}, misses={3}, evictions={4}]",
+				size(), getHits(), getDiskHits(), getMisses(), getEvictions());
+	}
+
+	private Roads readFromDisk(Key key) {
+		if (directory == null) {
+			return null;
+		}
+		final File file = new File(directory, key.toFileName());
+		if (!file.isFile()) {
+			return null;
+		}
+		try (InputStream is = new FileInputStream(file)) {
+			return BinaryRoadsReader.read(is);
+		} catch (IOException ioex) {
+			System.err.println(MessageFormat.format(
+					"Could not read cached roads from {0}.", file));
+			ioex.printStackTrace();
+			return null;
+		}
+	}
+
+	private void writeToDisk(Key key, Roads roads) {
+		if (directory == null) {
+			return;
+		}
+		final File file = new File(directory, key.toFileName());
+		try {
+			final File tempFile = File.createTempFile(key.toFileName(), ".tmp",
+					directory);
+			try (BinaryRoadsWriter writer = new BinaryRoadsWriter(
+					new FileOutputStream(tempFile), PRECISION)) {
+				writer.write(roads);
+			}
+			Files.move(tempFile.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ioex) {
+			System.err.println(MessageFormat.format(
+					"Could not write cached roads to {0}.", file));
+			ioex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Snapped start node and search parameters of a roads query.
+	 */
+	public static final class Key {
+
+		private final int startNode;
+		private final long departureTime;
+		private final long rangeQueryEndTime;
+		private final boolean arriveBy;
+		private final int maxVisitedNodes;
+		private final String algorithm;
+		private final long maxTravelTime;
+		private final int maxTransfers;
+
+		public Key(int startNode, long departureTime, long rangeQueryEndTime,
+				boolean arriveBy, int maxVisitedNodes, String algorithm,
+				long maxTravelTime, int maxTransfers) {
+			this.startNode = startNode;
+			this.departureTime = departureTime;
+			this.rangeQueryEndTime = rangeQueryEndTime;
+			this.arriveBy = arriveBy;
+			this.maxVisitedNodes = maxVisitedNodes;
+			this.algorithm = algorithm;
+			this.maxTravelTime = maxTravelTime;
+			this.maxTransfers = maxTransfers;
+		}
+
+		String toFileName() {
+			return startNode + "_" + departureTime + "_" + rangeQueryEndTime
+					+ "_" + (arriveBy ? "arriveby" : "departat") + "_"
+					+ maxVisitedNodes + "_" + algorithm + "_" + maxTravelTime
+					+ "_" + maxTransfers + FILE_SUFFIX;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = startNode;
+			result = 31 * result
+					+ (int) (departureTime ^ (departureTime >>> 32));
+			result = 31 * result
+					+ (int) (rangeQueryEndTime ^ (rangeQueryEndTime >>> 32));
+			result = 31 * result + (arriveBy ? 1 : 0);
+			result = 31 * result + maxVisitedNodes;
+			result = 31 * result + algorithm.hashCode();
+			result = 31 * result
+					+ (int) (maxTravelTime ^ (maxTravelTime >>> 32));
+			result = 31 * result + maxTransfers;
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return startNode == other.startNode
+					&& departureTime == other.departureTime
+					&& rangeQueryEndTime == other.rangeQueryEndTime
+					&& arriveBy == other.arriveBy
+					&& maxVisitedNodes == other.maxVisitedNodes
+					&& algorithm.equals(other.algorithm)
+					&& maxTravelTime == other.maxTravelTime
+					&& maxTransfers == other.maxTransfers;
+		}
+
+		@Override
+		public String toString() {
+			return "Key [startNode=" + startNode + ", departureTime="
+					+ departureTime + ", rangeQueryEndTime="
+					+ rangeQueryEndTime + ", arriveBy=" + arriveBy
+					+ ", maxVisitedNodes=" + maxVisitedNodes + ", algorithm="
+					+ algorithm + ", maxTravelTime=" + maxTravelTime
+					+ ", maxTransfers=" + maxTransfers + "]";
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package com.graphhopper.reader.gtfs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.graphhopper.util.DouglasPeucker;
+import com.graphhopper.util.PointList;
+
+/**
+ * Simplifies the geometries of roads for output.
+ * <p>
+ * Every road is first simplified with Douglas-Peucker, then its coordinates
+ * are rounded to the given number of decimal places. Points which are equal
+ * to their predecessor after rounding are dropped and consecutive segments
+ * which continue in the same direction are merged into one. Roads which
+ * collapse to a single point are left out.
+ * <p>
+ * The given roads are not changed, since they may be shared with the
+ * {@link RoadsCache}. Instances may be used from several threads.
+ */
+public class RoadsSimplifier {
+
+	/**
+	 * Sine of the largest angle between segments at full precision which are
+	 * still merged, to allow for the rounding errors of the directions.
+	 */
+	static final double MAX_SINE = 1e-6;
+
+	private final double tolerance;
+	private final int decimals;
+	private final double scale;
+	private final DouglasPeucker douglasPeucker;
+
+	/**
+	 * @param tolerance
+	 *            maximum distance of removed points from the simplified
+	 *            geometry in meters, <code>0</code> to skip Douglas-Peucker.
+	 * @param decimals
+	 *            number of decimal places of the coordinates, negative to
+	 *            keep full precision.
+	 */
+	public RoadsSimplifier(double tolerance, int decimals) {
+		this.tolerance = tolerance;
+		this.decimals = decimals;
+		this.scale = Math.pow(10, decimals);
+		this.douglasPeucker = new DouglasPeucker().setMaxDistance(tolerance);
+	}
+
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	public int getDecimals() {
+		return decimals;
+	}
+
+	public Roads simplify(Roads roads) {
+		final List<Road> simplifiedRoads = new ArrayList<>(roads.getRoads()
+				.size());
+		for (Road road : roads.getRoads()) {
+			final Road simplifiedRoad = simplify(road);
+			if (simplifiedRoad != null) {
+				simplifiedRoads.add(simplifiedRoad);
+			}
+		}
+		return new Roads(simplifiedRoads);
+	}
+
+	/**
+	 * @return the simplified road or <code>null</code> if it collapses to a
+	 *         single point.
+	 */
+	public Road simplify(Road road) {
+		final PointList pointList = simplify(road.getPointList());
+		if (pointList.size() < 2) {
+			return null;
+		}
+		return new Road(road.getCurrentTime(), road.getNumberOfTransfers(),
+				pointList, road.getNumberOfThreads());
+	}
+
+	PointList simplify(PointList original) {
+		final int size = original.size();
+		final PointList points = new PointList(size, false);
+		for (int index = 0; index < size; index++) {
+			points.add(original.getLat(index), original.getLon(index));
+		}
+		if (tolerance > 0 && size > 2) {
+			douglasPeucker.simplify(points);
+		}
+
+		final PointList result = new PointList(points.size(), false);
+		for (int index = 0; index < points.size(); index++) {
+			final double lat = round(points.getLat(index));
+			final double lon = round(points.getLon(index));
+			final int last = result.size() - 1;
+			if (last >= 0 && result.getLat(last) == lat
+					&& result.getLon(last) == lon) {
+				continue;
+			}
+			if (last >= 1
+					&& continues(result.getLat(last - 1),
+							result.getLon(last - 1), result.getLat(last),
+							result.getLon(last), lat, lon)) {
+				result.setNode(last, lat, lon);
+			} else {
+				result.add(lat, lon);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return <code>true</code> if the segment from b to c continues the
+	 *         segment from a to b in the same direction, exactly for rounded
+	 *         coordinates and up to {@link #MAX_SINE} otherwise.
+	 */
+	private boolean continues(double aLat, double aLon, double bLat,
+			double bLon, double cLat, double cLon) {
+		if (decimals >= 0) {
+			// Rounded coordinates are compared exactly as integers
+			final long abLat = units(bLat) - units(aLat);
+			final long abLon = units(bLon) - units(aLon);
+			final long bcLat = units(cLat) - units(bLat);
+			final long bcLon = units(cLon) - units(bLon);
+			return abLat * bcLon == abLon * bcLat
+					&& abLat * bcLat + abLon * bcLon > 0;
+		} else {
+			final double abLat = bLat - aLat;
+			final double abLon = bLon - aLon;
+			final double bcLat = cLat - bLat;
+			final double bcLon = cLon - bLon;
+			// The cross product is the sine times both lengths
+			final double lengths = Math.sqrt((abLat * abLat + abLon * abLon)
+					* (bcLat * bcLat + bcLon * bcLon));
+			return Math.abs(abLat * bcLon - abLon * bcLat) <= MAX_SINE
+					* lengths && abLat * bcLat + abLon * bcLon > 0;
+		}
+	}
+
+	private double round(double value) {
+		return decimals >= 0 ? Math.round(value * scale) / scale : value;
+	}
+
+	private long units(double value) {
+		return Math.round(value * scale);
+	}
+}
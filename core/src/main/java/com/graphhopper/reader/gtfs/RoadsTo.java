@@ -1,20 +1,42 @@
 package com.graphhopper.reader.gtfs;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.Writer;
-import java.util.Collections;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.json.JsonWriter;
 import javax.json.spi.JsonProvider;
-import javax.json.stream.JsonGenerator;
 
+import com.graphhopper.GHRequest;
+import com.graphhopper.storage.DAType;
 import com.graphhopper.util.CmdArgs;
 import com.graphhopper.util.Helper;
 
 public class RoadsTo {
 
+	public static final String ID_PLACEHOLDER = "{id}";
+
+	private RoadsToMetrics metrics;
+
+	/**
+	 * Report of the start, printed and cleared after the first query.
+	 */
+	private volatile StartupReport startupReport;
+
 	public static void main(String[] strs) {
 		CmdArgs args = CmdArgs.read(strs);
 		new RoadsTo().process(args);
@@ -27,59 +49,605 @@ public class RoadsTo {
 	public void process(CmdArgs args) {
 		final RoadsToGraphHopperGtfs roadsToGraphHopperGtfs = init(args);
 
-		String fromlatString = args.get("fromlat", "fromlat not specified");
-		String fromlonString = args.get("fromlon", "fromlon not specified");
+		String originsFile = args.get("origins.file", "");
+		if (!Helper.isEmpty(originsFile)) {
+			processBatch(roadsToGraphHopperGtfs, originsFile, args);
+		} else {
+			processSingle(roadsToGraphHopperGtfs, args);
+		}
+		writeMetrics(args.get("metrics.file", ""));
+	}
+
+	/**
+	 * Calculates roads from <code>fromlat</code>, <code>fromlon</code> or, in
+	 * arrive-by mode, to <code>tolat</code>, <code>tolon</code>.
+	 */
+	private void processSingle(
+			final RoadsToGraphHopperGtfs roadsToGraphHopperGtfs, CmdArgs args) {
+		final String prefix = args.getBool("arrive.by", false) ? "to" : "from";
+		String latString = args.get(prefix + "lat", prefix
+				+ "lat not specified");
+		String lonString = args.get(prefix + "lon", prefix
+				+ "lon not specified");
 
-		double fromlat = Double.parseDouble(fromlatString);
-		double fromlon = Double.parseDouble(fromlonString);
+		double lat = Double.parseDouble(latString);
+		double lon = Double.parseDouble(lonString);
 
-		final Roads roads = roadsToGraphHopperGtfs.roadsFrom(fromlat, fromlon);
+		query(roadsToGraphHopperGtfs, lat, lon, getOutputFile(args, ""), args);
+	}
 
-		String geojsonFile = args.get("geojson.file", "");
-		String geojsonVar = args.get("geojson.var", "");
+	/**
+	 * Calculates roads for every origin of the origins file on a shared graph.
+	 * Origins are given as <code>id,lat,lon</code> lines, one output file is
+	 * written per origin. The output file argument (or the tiles directory,
+	 * the grid and the isochrones file) is used as a file name pattern,
+	 * <code>{id}</code> is replaced with the id of the origin.
+	 */
+	public void processBatch(
+			final RoadsToGraphHopperGtfs roadsToGraphHopperGtfs,
+			String originsFile, CmdArgs args) {
+		final String outputFile = getOutputFile(args, ID_PLACEHOLDER + ".json");
+		if (!outputFile.contains(ID_PLACEHOLDER)) {
+			throw new IllegalArgumentException(
+					"The output file name must contain the " + ID_PLACEHOLDER
+							+ " placeholder in batch mode, but was: "
+							+ outputFile);
+		}
+		final int threads = args.getInt("threads", Runtime.getRuntime()
+				.availableProcessors());
 
-		// OutputStream os = null;
-		Writer writer = null;
+		final List<Origin> origins = readOrigins(originsFile);
+		final ExecutorService executorService = Executors
+				.newFixedThreadPool(threads);
 		try {
+			final List<Future<?>> futures = new ArrayList<>(origins.size());
+			for (Origin origin : origins) {
+				futures.add(executorService.submit(() -> query(
+						roadsToGraphHopperGtfs, origin.lat, origin.lon,
+						outputFile.replace(ID_PLACEHOLDER, origin.id),
+						forOrigin(args, origin.id))));
+			}
+			for (int index = 0; index < futures.size(); index++) {
+				try {
+					futures.get(index).get();
+				} catch (ExecutionException ex) {
+					System.err.println(MessageFormat.format(
+							"Could not process origin {0}.",
+							origins.get(index).id));
+					ex.getCause().printStackTrace();
+				}
+			}
+		} catch (InterruptedException iex) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executorService.shutdownNow();
+		}
+		if (roadsToGraphHopperGtfs.getRoadsCache() != null) {
+			System.err.println(roadsToGraphHopperGtfs.getRoadsCache());
+		}
+	}
+
+	/**
+	 * @return the arguments with the id of the origin in the name of the
+	 *         isochrones file.
+	 */
+	private static CmdArgs forOrigin(CmdArgs args, String id) {
+		final String isochronesFile = args.get("isochrones.file", "");
+		if (!isochronesFile.contains(ID_PLACEHOLDER)) {
+			return args;
+		}
+		final CmdArgs originArgs = new CmdArgs(args.toMap());
+		originArgs.put("isochrones.file",
+				isochronesFile.replace(ID_PLACEHOLDER, id));
+		return originArgs;
+	}
+
+	/**
+	 * Creates the request for roads from the given location. The departure
+	 * time (<code>departure.time</code>) and the length of the departure
+	 * window (<code>departure.window</code>) are given in seconds or as
+	 * <code>HH:MM[:SS]</code>, the algorithm with <code>algorithm</code>. The
+	 * <code>profile</code> algorithm finds journeys with at most
+	 * {@link ProfileLabelsSetting#DEFAULT_MAX_TRANSFERS} transfers, unless
+	 * <code>max.transfers</code> is lower.
+	 * With <code>arrive.by</code> the request is for roads to the location,
+	 * arriving by <code>arrival.time</code> within the window of
+	 * <code>arrival.window</code> before it.
+	 * The search is bounded by the maximum travel time
+	 * (<code>max.travel.time</code>, in the same format), the maximum number
+	 * of transfers (<code>max.transfers</code>) and the search timeout in
+	 * milliseconds (<code>search.timeout</code>), if given. The labels of the
+	 * search take at most <code>search.memory</code> megabytes of heap, if
+	 * given, besides the Pareto sets per node and the search frontier.
+	 */
+	public GHRequest createRequest(double lat, double lon, CmdArgs args) {
+		final GHRequest request = new GHRequest(lat, lon, lat, lon);
+		if (args.getBool("arrive.by", false)) {
+			final long arrivalTime = parseTime(args.get("arrival.time", "0"));
+			final long arrivalWindow = parseTime(args.get("arrival.window",
+					"0"));
+			request.getHints().put(RoadsToGraphHopperGtfs.ARRIVE_BY, true);
+			request.getHints().put(
+					RoadsToGraphHopperGtfs.EARLIEST_DEPARTURE_TIME_HINT,
+					arrivalTime);
+			request.getHints().put(
+					RoadsToGraphHopperGtfs.RANGE_QUERY_END_TIME,
+					arrivalTime - arrivalWindow);
+		} else {
+			final long departureTime = parseTime(args.get("departure.time",
+					"0"));
+			final long departureWindow = parseTime(args.get(
+					"departure.window", "0"));
+			request.getHints().put(
+					RoadsToGraphHopperGtfs.EARLIEST_DEPARTURE_TIME_HINT,
+					departureTime);
+			request.getHints().put(
+					RoadsToGraphHopperGtfs.RANGE_QUERY_END_TIME,
+					departureTime + departureWindow);
+		}
+		request.setAlgorithm(args.get("algorithm",
+				RoadsToGraphHopperGtfs.MLS_ALGORITHM));
+		final String maxTravelTime = args.get("max.travel.time", "");
+		if (!Helper.isEmpty(maxTravelTime)) {
+			request.getHints().put(RoadsToGraphHopperGtfs.MAX_TRAVEL_TIME,
+					parseTime(maxTravelTime));
+		}
+		final int maxTransfers = args.getInt("max.transfers", -1);
+		if (maxTransfers >= 0) {
+			request.getHints().put(RoadsToGraphHopperGtfs.MAX_TRANSFERS,
+					maxTransfers);
+		}
+		final long searchTimeout = args.getLong("search.timeout", -1);
+		if (searchTimeout >= 0) {
+			request.getHints().put(RoadsToGraphHopperGtfs.SEARCH_TIMEOUT,
+					searchTimeout);
+		}
+		final long searchMemory = args.getLong("search.memory", -1);
+		if (searchMemory >= 0) {
+			request.getHints().put(RoadsToGraphHopperGtfs.SEARCH_MEMORY,
+					searchMemory);
+		}
+		return request;
+	}
+
+	static long parseTime(String time) {
+		final String[] parts = time.trim().split(":");
+		if (parts.length == 1) {
+			return Long.parseLong(parts[0]);
+		} else if (parts.length == 2 || parts.length == 3) {
+			long seconds = 0;
+			for (int index = 0; index < 3; index++) {
+				seconds = seconds * 60
+						+ (index < parts.length ? Long.parseLong(parts[index])
+								: 0);
+			}
+			return seconds;
+		} else {
+			throw new IllegalArgumentException(
+					"Expected seconds or HH:MM[:SS] but got: " + time);
+		}
+	}
 
-			if (Helper.isEmpty(geojsonFile)) {
-				writer = new OutputStreamWriter(System.out, "UTF-8");
+	/**
+	 * Calculates and writes roads (or the travel time grid if a grid file is
+	 * given, or the accessibility if a sampling step is given) from the given
+	 * location, reports the statistics of the query to the metrics if they
+	 * are enabled. With <code>stream</code> roads are written while the
+	 * search runs, unless they are written as tiles.
+	 */
+	public void query(RoadsToGraphHopperGtfs roadsToGraphHopperGtfs,
+			double lat, double lon, String outputFile, CmdArgs args) {
+		final long queryStart = System.nanoTime();
+		final QueryStatistics statistics = metrics == null ? null
+				: new QueryStatistics();
+		final long serializationStart;
+		if (!Helper.isEmpty(args.get("sampling.step", ""))) {
+			final long searchStart = System.nanoTime();
+			final Accessibility accessibility = accessibilityFrom(
+					roadsToGraphHopperGtfs, createRequest(lat, lon, args),
+					args);
+			if (statistics != null) {
+				statistics.setSearchNanos(System.nanoTime() - searchStart);
+			}
+			serializationStart = System.nanoTime();
+			writeAccessibility(accessibility, outputFile, args);
+		} else if (!Helper.isEmpty(args.get("grid.file", ""))) {
+			final TravelTimeGrid grid = travelTimeGridFrom(
+					roadsToGraphHopperGtfs, createRequest(lat, lon, args),
+					statistics, args);
+			serializationStart = System.nanoTime();
+			writeGrid(grid, outputFile, args);
+		} else if (args.getBool("stream", false)
+				&& Helper.isEmpty(args.get("tiles.dir", ""))) {
+			streamRoads(roadsToGraphHopperGtfs, createRequest(lat, lon, args),
+					statistics, outputFile, args);
+			serializationStart = System.nanoTime();
+		} else {
+			final Roads roads = simplify(roadsToGraphHopperGtfs.roadsFrom(
+					createRequest(lat, lon, args), statistics), args);
+			serializationStart = System.nanoTime();
+			if (Helper.isEmpty(args.get("tiles.dir", ""))) {
+				write(roads, outputFile, args);
 			} else {
-				writer = new OutputStreamWriter(new FileOutputStream(
-						geojsonFile), "UTF-8");
+				writeTiles(roads, outputFile, args);
 			}
-			if (!Helper.isEmpty(geojsonVar)) {
-				writer.write("var " + geojsonVar + "=");
+		}
+		if (statistics != null) {
+			statistics.setSerializationNanos(System.nanoTime()
+					- serializationStart);
+			metrics.queryFinished(statistics);
+		}
+		if (startupReport != null) {
+			firstQueryFinished(roadsToGraphHopperGtfs, queryStart);
+		}
+	}
+
+	private synchronized void firstQueryFinished(
+			RoadsToGraphHopperGtfs roadsToGraphHopperGtfs, long queryStart) {
+		if (startupReport == null) {
+			return;
+		}
+		final long queryNanos = System.nanoTime() - queryStart;
+		final long locationIndexNanos = roadsToGraphHopperGtfs
+				.getLocationIndexLoadNanos();
+		startupReport.phase("location index", locationIndexNanos);
+		startupReport.phase("first query", queryNanos - locationIndexNanos);
+		System.err.println(startupReport);
+		startupReport = null;
+	}
+
+	/**
+	 * Simplifies the roads for output with the tolerance in meters
+	 * (<code>simplify.tolerance</code>) and the number of decimal places
+	 * (<code>simplify.decimals</code>), if given.
+	 */
+	public Roads simplify(Roads roads, CmdArgs args) {
+		final RoadsSimplifier simplifier = createSimplifier(args);
+		return simplifier == null ? roads : simplifier.simplify(roads);
+	}
+
+	/**
+	 * @return the simplifier for <code>simplify.tolerance</code> and
+	 *         <code>simplify.decimals</code> or <code>null</code> if roads
+	 *         are not simplified.
+	 */
+	private static RoadsSimplifier createSimplifier(CmdArgs args) {
+		final double tolerance = args.getDouble("simplify.tolerance", 0);
+		final int decimals = args.getInt("simplify.decimals", -1);
+		if (tolerance <= 0 && decimals < 0) {
+			return null;
+		}
+		return new RoadsSimplifier(tolerance, decimals);
+	}
+
+	/**
+	 * Writes the roads to the output file (or standard output) while the
+	 * search runs, simplified as in {@link #simplify(Roads, CmdArgs)}.
+	 */
+	private void streamRoads(RoadsToGraphHopperGtfs roadsToGraphHopperGtfs,
+			GHRequest request, QueryStatistics statistics, String outputFile,
+			CmdArgs args) {
+		RoadsWriter writer = null;
+		try {
+			final OutputStream os;
+			if (Helper.isEmpty(outputFile)) {
+				os = System.out;
+			} else {
+				os = new FileOutputStream(outputFile);
+			}
+			writer = createRoadsWriter(os, args);
+			streamRoads(roadsToGraphHopperGtfs, request, statistics, writer,
+					args);
+		} catch (IOException ioex) {
+			ioex.printStackTrace();
+		} finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException ioex) {
+					ioex.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the roads as a complete document with the writer while the
+	 * search runs, simplified as in {@link #simplify(Roads, CmdArgs)}. The
+	 * writer is not closed.
+	 */
+	public void streamRoads(RoadsToGraphHopperGtfs roadsToGraphHopperGtfs,
+			GHRequest request, QueryStatistics statistics, RoadsWriter writer,
+			CmdArgs args) throws IOException {
+		final RoadsSimplifier simplifier = createSimplifier(args);
+		writer.writeStart();
+		try {
+			roadsToGraphHopperGtfs.streamRoadsFrom(request, road -> {
+				final Road simplifiedRoad = simplifier == null ? road
+						: simplifier.simplify(road);
+				if (simplifiedRoad != null) {
+					try {
+						writer.write(simplifiedRoad);
+					} catch (IOException ioex) {
+						throw new UncheckedIOException(ioex);
+					}
+				}
+			}, statistics);
+		} catch (UncheckedIOException uioex) {
+			throw uioex.getCause();
+		}
+		writer.writeEnd();
+	}
+
+	/**
+	 * Calculates the travel time grid with cells of <code>grid.cellsize</code>
+	 * meters, walking from reached locations to the cells with
+	 * <code>grid.walkspeed</code> km/h for at most <code>grid.maxwalk</code>
+	 * meters.
+	 */
+	public TravelTimeGrid travelTimeGridFrom(
+			RoadsToGraphHopperGtfs roadsToGraphHopperGtfs, GHRequest request,
+			QueryStatistics statistics, CmdArgs args) {
+		return roadsToGraphHopperGtfs.travelTimeGridFrom(request, args
+				.getDouble("grid.cellsize",
+						TravelTimeGridBuilder.DEFAULT_CELL_SIZE), args
+				.getDouble("grid.walkspeed",
+						TravelTimeGridBuilder.DEFAULT_WALK_SPEED * 3.6) / 3.6,
+				args.getDouble("grid.maxwalk",
+						TravelTimeGridBuilder.DEFAULT_MAX_WALK_DISTANCE),
+				statistics);
+	}
+
+	/**
+	 * Samples the accessibility every <code>sampling.step</code> (in seconds
+	 * or as <code>HH:MM[:SS]</code>) over the departure (or arrival) window
+	 * of the request, running <code>sampling.threads</code> searches in
+	 * parallel.
+	 */
+	public Accessibility accessibilityFrom(
+			RoadsToGraphHopperGtfs roadsToGraphHopperGtfs, GHRequest request,
+			CmdArgs args) {
+		return roadsToGraphHopperGtfs.accessibilityFrom(request,
+				parseTime(args.get("sampling.step", "60")), args.getInt(
+						"sampling.threads", Runtime.getRuntime()
+								.availableProcessors()));
+	}
+
+	/**
+	 * Writes the accessibility with the travel time percentiles given with
+	 * <code>sampling.percentiles</code> (comma separated) to the output file
+	 * or, if none is given, to standard output.
+	 */
+	public void writeAccessibility(Accessibility accessibility,
+			String outputFile, CmdArgs args) {
+		final String[] values = args.get("sampling.percentiles", "10,50,90")
+				.split(",");
+		final double[] percentiles = new double[values.length];
+		for (int index = 0; index < values.length; index++) {
+			percentiles[index] = Double.parseDouble(values[index].trim());
+		}
+		if (Helper.isEmpty(outputFile)) {
+			try {
+				AccessibilityWriter.write(accessibility, percentiles,
+						System.out);
+			} catch (IOException ioex) {
+				ioex.printStackTrace();
 			}
+			return;
+		}
+		try (OutputStream os = new FileOutputStream(outputFile)) {
+			AccessibilityWriter.write(accessibility, percentiles, os);
+		} catch (IOException ioex) {
+			ioex.printStackTrace();
+		}
+	}
 
-			final JsonWriter jsonWriter = JsonProvider
-					.provider()
-					.createWriterFactory(
-							Collections
-									.singletonMap(
-											JsonGenerator.PRETTY_PRINTING,
-											Boolean.TRUE)).createWriter(writer);
-			jsonWriter.writeObject(roads.toJsonObject());
-			if (!Helper.isEmpty(geojsonVar)) {
-				writer.write(";");
+	/**
+	 * Writes the grid to the grid file and, if travel times are given with
+	 * <code>isochrones</code> (comma separated, in seconds or as
+	 * <code>HH:MM[:SS]</code>), its isochrones to
+	 * <code>isochrones.file</code>.
+	 */
+	public void writeGrid(TravelTimeGrid grid, String gridFile, CmdArgs args) {
+		try (OutputStream os = new FileOutputStream(gridFile)) {
+			TravelTimeGridWriter.write(grid, os);
+		} catch (IOException ioex) {
+			ioex.printStackTrace();
+		}
+		final String isochrones = args.get("isochrones", "");
+		final String isochronesFile = args.get("isochrones.file", "");
+		if (Helper.isEmpty(isochrones) || Helper.isEmpty(isochronesFile)) {
+			return;
+		}
+		final String[] values = isochrones.split(",");
+		final long[] travelTimes = new long[values.length];
+		for (int index = 0; index < values.length; index++) {
+			travelTimes[index] = parseTime(values[index]);
+		}
+		try (OutputStream os = new FileOutputStream(isochronesFile)) {
+			IsochronesWriter.write(grid, travelTimes, os);
+		} catch (IOException ioex) {
+			ioex.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return aggregated statistics of the queries or <code>null</code> if
+	 *         metrics are not enabled.
+	 */
+	public RoadsToMetrics getMetrics() {
+		return metrics;
+	}
+
+	private void writeMetrics(String metricsFile) {
+		if (metrics == null || Helper.isEmpty(metricsFile)) {
+			return;
+		}
+		try (JsonWriter writer = JsonProvider.provider().createWriter(
+				new OutputStreamWriter(new FileOutputStream(metricsFile),
+						StandardCharsets.UTF_8))) {
+			writer.writeObject(metrics.toJsonObject());
+		} catch (IOException ioex) {
+			ioex.printStackTrace();
+		}
+	}
+
+	public void write(Roads roads, String outputFile, CmdArgs args) {
+		RoadsWriter writer = null;
+		try {
+			final OutputStream os;
+			if (Helper.isEmpty(outputFile)) {
+				os = System.out;
+			} else {
+				os = new FileOutputStream(outputFile);
 			}
-			jsonWriter.close();
+			writer = createRoadsWriter(os, args);
+			writer.write(roads);
 		} catch (IOException ioex) {
+			ioex.printStackTrace();
+		} finally {
 			if (writer != null) {
 				try {
 					writer.close();
-				} catch (IOException ignored) {
+				} catch (IOException ioex) {
 					ioex.printStackTrace();
 				}
 			}
 		}
 	}
 
+	/**
+	 * Writes the roads as a pyramid of vector tiles from
+	 * <code>tiles.minzoom</code> to <code>tiles.maxzoom</code> into the given
+	 * directory, using <code>tiles.threads</code> threads.
+	 */
+	public void writeTiles(Roads roads, String tilesDirectory, CmdArgs args) {
+		final VectorTilePyramidWriter writer = new VectorTilePyramidWriter(
+				args.getInt("tiles.minzoom",
+						VectorTilePyramidWriter.DEFAULT_MIN_ZOOM), args.getInt(
+						"tiles.maxzoom",
+						VectorTilePyramidWriter.DEFAULT_MAX_ZOOM), args.getInt(
+						"tiles.threads", Runtime.getRuntime()
+								.availableProcessors()));
+		try {
+			writer.write(roads, new File(tilesDirectory));
+		} catch (IOException ioex) {
+			ioex.printStackTrace();
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the format is neither <code>geojson</code> nor
+	 *             <code>binary</code>.
+	 */
+	public static void checkOutputFormat(String format) {
+		if (!"geojson".equals(format) && !"binary".equals(format)) {
+			throw new IllegalArgumentException("Unknown output format: "
+					+ format);
+		}
+	}
+
+	public RoadsWriter createRoadsWriter(OutputStream os, CmdArgs args) {
+		final String format = args.get("output.format", "geojson");
+		checkOutputFormat(format);
+		if ("geojson".equals(format)) {
+			return new GeoJsonRoadsWriter(os, args.get("geojson.var", ""),
+					args.getBool("geojson.pretty", false), args.getInt(
+							"geojson.precision",
+							GeoJsonRoadsWriter.DEFAULT_PRECISION));
+		} else {
+			return new BinaryRoadsWriter(os, args.getInt("binary.precision",
+					BinaryRoadsWriter.DEFAULT_PRECISION));
+		}
+	}
+
+	/**
+	 * Loads (or imports) the graph. The location index is only loaded by the
+	 * first query. With <code>startup.report</code> the times of the start
+	 * phases are printed after the first query.
+	 */
 	public RoadsToGraphHopperGtfs init(CmdArgs args) {
+		if (args.getBool("startup.report", false)) {
+			startupReport = new StartupReport();
+		}
 		String gtfsFile = args.get("gtfs.file", "");
 		String graphLocation = args.get("graph.location", "");
-		return RoadsToGraphHopperGtfs.createGraphHopperGtfs(graphLocation,
-				gtfsFile, true);
+		DAType dataAccessType = DAType.fromString(args.get("graph.dataaccess",
+				DAType.RAM_STORE.toString()));
+		int importThreads = args.getInt("import.threads", Runtime.getRuntime()
+				.availableProcessors());
+		final RoadsToGraphHopperGtfs roadsToGraphHopperGtfs = RoadsToGraphHopperGtfs
+				.createGraphHopperGtfs(graphLocation,
+						RoadsToGraphHopperGtfs.splitGtfsFiles(gtfsFile), true,
+						dataAccessType, importThreads);
+		if (startupReport != null) {
+			startupReport.phase("graph");
+		}
+		if (args.getBool("metrics.jmx", false)
+				|| !Helper.isEmpty(args.get("metrics.file", ""))) {
+			metrics = new RoadsToMetrics();
+			if (args.getBool("metrics.jmx", false)) {
+				metrics.register();
+			}
+		}
+		int cacheSize = args.getInt("cache.size", 0);
+		String cacheDirectory = args.get("cache.dir", "");
+		if (cacheSize > 0) {
+			roadsToGraphHopperGtfs.setRoadsCache(new RoadsCache(cacheSize,
+					Helper.isEmpty(cacheDirectory) ? null : new File(
+							cacheDirectory)));
+		}
+		if (startupReport != null) {
+			startupReport.phase("setup");
+		}
+		return roadsToGraphHopperGtfs;
+	}
+
+	/**
+	 * @return the grid file in grid mode, the tiles directory in tiles mode,
+	 *         the output file otherwise.
+	 */
+	private String getOutputFile(CmdArgs args, String defaultOutputFile) {
+		return args.get("grid.file", args.get("tiles.dir", args.get(
+				"output.file", args.get("geojson.file", defaultOutputFile))));
+	}
+
+	private List<Origin> readOrigins(String originsFile) {
+		final List<Origin> origins = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(originsFile), "UTF-8"))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				final String[] values = line.split(",");
+				if (values.length != 3) {
+					throw new IllegalArgumentException(
+							"Expected id,lat,lon but got: " + line);
+				}
+				origins.add(new Origin(values[0].trim(), Double
+						.parseDouble(values[1].trim()), Double
+						.parseDouble(values[2].trim())));
+			}
+		} catch (IOException ioex) {
+			throw new RuntimeException("Could not read origins file "
+					+ originsFile, ioex);
+		}
+		return origins;
 	}
 
+	private static class Origin {
+		private final String id;
+		private final double lat;
+		private final double lon;
+
+		public Origin(String id, double lat, double lon) {
+			this.id = id;
+			this.lat = lat;
+			this.lon = lon;
+		}
+	}
 }
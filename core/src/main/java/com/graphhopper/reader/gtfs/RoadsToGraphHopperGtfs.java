@@ -7,13 +7,19 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.conveyal.gtfs.GTFSFeed;
 import com.graphhopper.GHRequest;
 import com.graphhopper.reader.osm.OSMReader;
-import com.graphhopper.routing.QueryGraph;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
@@ -30,32 +36,154 @@ import com.graphhopper.util.TranslationMap;
 import com.graphhopper.util.Unzipper;
 import com.graphhopper.util.shapes.GHPoint;
 
+/**
+ * Calculates roads from a location over a loaded public transport graph.
+ * <p>
+ * The graph, the location index and the GTFS storage are only read after
+ * construction. Every call of {@link #roadsFrom(double, double)} creates its
+ * own query graph, graph explorer and router, so that one instance may be
+ * queried from several threads concurrently.
+ * <p>
+ * Instances created with {@link #createGraphHopperGtfs(String, String, boolean)}
+ * only load the graph, the location index is loaded by the first query and
+ * the translation map is only imported if it is asked for.
+ */
 public final class RoadsToGraphHopperGtfs {
 
+	private static final Logger LOGGER = LoggerFactory
+			.getLogger(RoadsToGraphHopperGtfs.class);
+
 	public static final String EARLIEST_DEPARTURE_TIME_HINT = "earliestDepartureTime";
 	public static final String RANGE_QUERY_END_TIME = "rangeQueryEndTime";
+	/**
+	 * Searches backwards from the second point of the request: the roads lead
+	 * there with the latest departures to arrive by the time given with
+	 * {@link #EARLIEST_DEPARTURE_TIME_HINT}. The window then lies before that
+	 * time, {@link #RANGE_QUERY_END_TIME} is its start.
+	 */
 	public static final String ARRIVE_BY = "arriveBy";
-
-	private final TranslationMap translationMap;
+	/**
+	 * Maximum travel time in seconds after the end of the departure window
+	 * (before the start of the arrival window in {@link #ARRIVE_BY} mode).
+	 */
+	public static final String MAX_TRAVEL_TIME = "maxTravelTime";
+	public static final String MAX_TRANSFERS = "maxTransfers";
+	/**
+	 * Wall-clock time in milliseconds after which the search stops and the
+	 * roads found so far are returned.
+	 */
+	public static final String SEARCH_TIMEOUT = "searchTimeout";
+	/**
+	 * Heap in megabytes the labels of a search may take, further labels are
+	 * spilled to memory-mapped files in the temporary directory. The Pareto
+	 * sets per node and the queue of the search frontier are not covered by
+	 * the budget, see {@link SearchBounds}.
+	 */
+	public static final String SEARCH_MEMORY = "searchMemory";
+
+	/**
+	 * Multi-criteria label setting, the default algorithm.
+	 */
+	public static final String MLS_ALGORITHM = "mls";
+	/**
+	 * Round-based profile search over the departure window, with at most
+	 * {@link ProfileLabelsSetting#DEFAULT_MAX_TRANSFERS} transfers.
+	 */
+	public static final String PROFILE_ALGORITHM = "profile";
+	/**
+	 * Single-criterion earliest arrival search. It departs at a single time,
+	 * requests with a departure window are rejected unless the window is the
+	 * range of {@link #accessibilityFrom(GHRequest, long, int) sampled}
+	 * departure times.
+	 */
+	public static final String EARLIEST_ARRIVAL_ALGORITHM = "earliest_arrival";
+
+	/**
+	 * Maximum travel time in seconds of accessibility samples if the request
+	 * does not set {@link #MAX_TRAVEL_TIME}, it also sizes the histograms.
+	 */
+	public static final long DEFAULT_SAMPLING_MAX_TRAVEL_TIME = 2 * 60 * 60;
+
+	private volatile TranslationMap translationMap;
 	private final EncodingManager encodingManager;
 
-	private GraphHopperStorage graphHopperStorage;
-	private LocationIndex locationIndex;
-	private GtfsStorage gtfsStorage;
+	private final GraphHopperStorage graphHopperStorage;
+	/**
+	 * Directory to load the location index from on first use, or
+	 * <code>null</code> if it was given on construction.
+	 */
+	private final GHDirectory indexDirectory;
+	private volatile LocationIndex locationIndex;
+	private volatile long locationIndexLoadNanos;
+	/**
+	 * Segments of the walk network, indexed by the first accessibility query.
+	 */
+	private AccessibilitySampler accessibilitySampler;
+	private final GtfsStorage gtfsStorage;
+	private volatile RoadsCache roadsCache;
 
 	public RoadsToGraphHopperGtfs(EncodingManager encodingManager,
 			TranslationMap translationMap,
 			GraphHopperStorage graphHopperStorage, LocationIndex locationIndex,
 			GtfsStorage gtfsStorage) {
+		this(encodingManager, translationMap, graphHopperStorage,
+				locationIndex, null, gtfsStorage);
+	}
+
+	/**
+	 * Creates an instance which loads (or prepares) the location index of the
+	 * graph from the given directory on first use.
+	 */
+	public RoadsToGraphHopperGtfs(EncodingManager encodingManager,
+			GraphHopperStorage graphHopperStorage, GHDirectory indexDirectory,
+			GtfsStorage gtfsStorage) {
+		this(encodingManager, null, graphHopperStorage, null, indexDirectory,
+				gtfsStorage);
+	}
+
+	private RoadsToGraphHopperGtfs(EncodingManager encodingManager,
+			TranslationMap translationMap,
+			GraphHopperStorage graphHopperStorage, LocationIndex locationIndex,
+			GHDirectory indexDirectory, GtfsStorage gtfsStorage) {
 		this.encodingManager = encodingManager;
 		this.translationMap = translationMap;
 		this.graphHopperStorage = graphHopperStorage;
 		this.locationIndex = locationIndex;
+		this.indexDirectory = indexDirectory;
 		this.gtfsStorage = gtfsStorage;
 	}
 
 	public static RoadsToGraphHopperGtfs createGraphHopperGtfs(
 			String graphHopperFolder, String gtfsFile, boolean createWalkNetwork) {
+		return createGraphHopperGtfs(graphHopperFolder, gtfsFile,
+				createWalkNetwork, DAType.RAM_STORE);
+	}
+
+	/**
+	 * @param gtfsFile
+	 *            GTFS file or several GTFS files separated by commas.
+	 * @param dataAccessType
+	 *            type of the data access of the graph and the location index,
+	 *            for instance {@link DAType#RAM_STORE} to keep the graph on
+	 *            heap or {@link DAType#MMAP} to memory-map the graph files.
+	 */
+	public static RoadsToGraphHopperGtfs createGraphHopperGtfs(
+			String graphHopperFolder, String gtfsFile,
+			boolean createWalkNetwork, DAType dataAccessType) {
+		return createGraphHopperGtfs(graphHopperFolder,
+				splitGtfsFiles(gtfsFile), createWalkNetwork, dataAccessType,
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param importThreads
+	 *            number of threads parsing the GTFS files if the graph is
+	 *            imported.
+	 */
+	public static RoadsToGraphHopperGtfs createGraphHopperGtfs(
+			String graphHopperFolder, Collection<String> gtfsFiles,
+			boolean createWalkNetwork, DAType dataAccessType,
+			int importThreads) {
 		EncodingManager encodingManager = createEncodingManager();
 
 		if (Helper.isEmpty(graphHopperFolder))
@@ -87,16 +215,13 @@ public final class RoadsToGraphHopperGtfs {
 
 		GtfsStorage gtfsStorage = createGtfsStorage();
 
-		GHDirectory directory = createGHDirectory(graphHopperFolder);
+		GHDirectory directory = createGHDirectory(graphHopperFolder,
+				dataAccessType);
 		GraphHopperStorage graphHopperStorage = createOrLoad(directory,
-				encodingManager, gtfsStorage, createWalkNetwork,
-				Collections.singleton(gtfsFile), Collections.emptyList());
-		LocationIndex locationIndex = createOrLoadIndex(directory,
-				graphHopperStorage);
-
-		return new RoadsToGraphHopperGtfs(encodingManager,
-				createTranslationMap(), graphHopperStorage, locationIndex,
-				gtfsStorage);
+				encodingManager, gtfsStorage, createWalkNetwork, gtfsFiles,
+				Collections.emptyList(), importThreads);
+		return new RoadsToGraphHopperGtfs(encodingManager, graphHopperStorage,
+				directory, gtfsStorage);
 	}
 
 	public static GtfsStorage createGtfsStorage() {
@@ -104,7 +229,12 @@ public final class RoadsToGraphHopperGtfs {
 	}
 
 	public static GHDirectory createGHDirectory(String graphHopperFolder) {
-		return new GHDirectory(graphHopperFolder, DAType.RAM_STORE);
+		return createGHDirectory(graphHopperFolder, DAType.RAM_STORE);
+	}
+
+	public static GHDirectory createGHDirectory(String graphHopperFolder,
+			DAType dataAccessType) {
+		return new GHDirectory(graphHopperFolder, dataAccessType);
 	}
 
 	public static TranslationMap createTranslationMap() {
@@ -115,141 +245,222 @@ public final class RoadsToGraphHopperGtfs {
 		return new EncodingManager(Arrays.asList(new PtFlagEncoder()), 8);
 	}
 
+	/**
+	 * @return GTFS files of a comma-separated list.
+	 */
+	public static List<String> splitGtfsFiles(String gtfsFiles) {
+		final List<String> files = new ArrayList<>();
+		for (String file : gtfsFiles.split(",")) {
+			if (!file.trim().isEmpty()) {
+				files.add(file.trim());
+			}
+		}
+		return files;
+	}
+
 	public static GraphHopperStorage createOrLoad(GHDirectory directory,
 			EncodingManager encodingManager, GtfsStorage gtfsStorage,
 			boolean createWalkNetwork, Collection<String> gtfsFiles,
 			Collection<String> osmFiles) {
+		return createOrLoad(directory, encodingManager, gtfsStorage,
+				createWalkNetwork, gtfsFiles, osmFiles, Runtime.getRuntime()
+						.availableProcessors());
+	}
+
+	/**
+	 * Loads the graph from the directory or imports it if the directory does
+	 * not exist yet.
+	 * <p>
+	 * The import runs in stages: the GTFS files are parsed concurrently on
+	 * their own pool of threads, then the OSM files, the walk network, the
+	 * walk network index and the public transport network of each feed are
+	 * added to the graph one after the other. The graph itself is not
+	 * thread-safe. The time of every stage is logged.
+	 */
+	public static GraphHopperStorage createOrLoad(GHDirectory directory,
+			EncodingManager encodingManager, GtfsStorage gtfsStorage,
+			boolean createWalkNetwork, Collection<String> gtfsFiles,
+			Collection<String> osmFiles, int importThreads) {
 		GraphHopperStorage graphHopperStorage = new GraphHopperStorage(
 				directory, encodingManager, false, gtfsStorage);
 		if (!new File(directory.getLocation()).exists()) {
+			final long importStart = System.nanoTime();
 			graphHopperStorage.create(1000);
-			for (String osmFile : osmFiles) {
-				OSMReader osmReader = new OSMReader(graphHopperStorage);
-				osmReader.setEncodingManager(encodingManager);
-				osmReader.setFile(new File(osmFile));
-				osmReader.setDontCreateStorage(true);
-				try {
-					osmReader.readGraph();
-				} catch (IOException e) {
-					throw new RuntimeException(e);
+			// Parsing does not touch the graph, start it first
+			final ExecutorService executorService = Executors
+					.newFixedThreadPool(Math.max(1,
+							Math.min(importThreads, gtfsFiles.size())));
+			final List<Future<GTFSFeed>> parsedFeeds = new ArrayList<>(
+					gtfsFiles.size());
+			try {
+				for (String gtfsFile : gtfsFiles) {
+					parsedFeeds.add(executorService
+							.submit(() -> parseFeed(gtfsFile)));
 				}
+				long stageStart = System.nanoTime();
+				for (String osmFile : osmFiles) {
+					OSMReader osmReader = new OSMReader(graphHopperStorage);
+					osmReader.setEncodingManager(encodingManager);
+					osmReader.setFile(new File(osmFile));
+					osmReader.setDontCreateStorage(true);
+					try {
+						osmReader.readGraph();
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+					logStage("Read OSM file " + osmFile, stageStart);
+					stageStart = System.nanoTime();
+				}
+
+				final List<GTFSFeed> feeds = new ArrayList<>(
+						parsedFeeds.size());
+				for (Future<GTFSFeed> parsedFeed : parsedFeeds) {
+					feeds.add(parsedFeed.get());
+				}
+				logStage("Waited for the parsed GTFS files", stageStart);
+
+				stageStart = System.nanoTime();
+				if (createWalkNetwork) {
+					FakeWalkNetworkBuilder.buildWalkNetwork(feeds,
+							graphHopperStorage,
+							(PtFlagEncoder) encodingManager.getEncoder("pt"),
+							Helper.DIST_EARTH);
+					logStage("Built the walk network", stageStart);
+				}
+
+				stageStart = System.nanoTime();
+				LocationIndex locationIndex;
+				if (graphHopperStorage.getNodes() > 0) {
+					locationIndex = new LocationIndexTree(graphHopperStorage,
+							new RAMDirectory()).prepareIndex();
+				} else {
+					locationIndex = new EmptyLocationIndex();
+				}
+				logStage("Prepared the walk network index", stageStart);
+
+				for (GTFSFeed feed : feeds) {
+					stageStart = System.nanoTime();
+					new GtfsReader(feed, graphHopperStorage, locationIndex)
+							.readGraph();
+					logStage("Added the public transport network of feed "
+							+ feed.feedId, stageStart);
+				}
+			} catch (InterruptedException iex) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Import was interrupted.", iex);
+			} catch (ExecutionException eex) {
+				throw new IllegalStateException("Could not parse GTFS file.",
+						eex.getCause());
+			} finally {
+				executorService.shutdownNow();
 			}
-			List<GTFSFeed> feeds = gtfsFiles
-					.parallelStream()
-					.map(filename -> GTFSFeed.fromFile(new File(filename)
-							.getPath())).collect(Collectors.toList());
-			if (createWalkNetwork) {
-				FakeWalkNetworkBuilder.buildWalkNetwork(feeds,
-						graphHopperStorage,
-						(PtFlagEncoder) encodingManager.getEncoder("pt"),
-						Helper.DIST_EARTH);
-			}
-			LocationIndex locationIndex;
-			if (graphHopperStorage.getNodes() > 0) {
-				locationIndex = new LocationIndexTree(graphHopperStorage,
-						new RAMDirectory()).prepareIndex();
-			} else {
-				locationIndex = new EmptyLocationIndex();
-			}
-			for (GTFSFeed feed : feeds) {
-				new GtfsReader(feed, graphHopperStorage, locationIndex)
-						.readGraph();
-			}
+			final long stageStart = System.nanoTime();
 			graphHopperStorage.flush();
+			logStage("Flushed the graph", stageStart);
+			logStage("Imported the graph with " + graphHopperStorage.getNodes()
+					+ " nodes", importStart);
 		} else {
 			graphHopperStorage.loadExisting();
 		}
 		return graphHopperStorage;
 	}
 
+	private static GTFSFeed parseFeed(String gtfsFile) {
+		final long start = System.nanoTime();
+		final GTFSFeed feed = GTFSFeed.fromFile(new File(gtfsFile).getPath());
+		logStage("Parsed GTFS file " + gtfsFile + " with " + feed.stops.size()
+				+ " stops, " + feed.trips.size() + " trips and "
+				+ feed.errors.size() + " errors", start);
+		return feed;
+	}
+
+	private static void logStage(String stage, long start) {
+		LOGGER.info("{} in {} ms.", stage,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+	}
+
 	public static LocationIndex createOrLoadIndex(GHDirectory directory,
 			GraphHopperStorage graphHopperStorage) {
 		LocationIndex locationIndex = new LocationIndexTree(graphHopperStorage,
 				directory);
 		if (!locationIndex.loadExisting()) {
 			locationIndex.prepareIndex();
+			// Later starts only load the index
+			locationIndex.flush();
 		}
 		return locationIndex;
 	}
 
-	public boolean load(String graphHopperFolder) {
-		throw new IllegalStateException(
-				"We are always loaded, or we wouldn't exist.");
-	}
-
-	public Roads roadsFrom(double lat, double lon) {
-		GHRequest request = new GHRequest(lat, lon, lat, lon);
-		final int maxVisitedNodesForRequest = request.getHints().getInt(
-				Parameters.Routing.MAX_VISITED_NODES, Integer.MAX_VALUE);
-		final long requestedTimeOfDay = request.getHints().getInt(
-				EARLIEST_DEPARTURE_TIME_HINT, 0)
-				% (24 * 60 * 60);
-		final long requestedDay = request.getHints().getInt(
-				EARLIEST_DEPARTURE_TIME_HINT, 0)
-				/ (24 * 60 * 60);
-		final long initialTime = requestedTimeOfDay + requestedDay
-				* (24 * 60 * 60);
-		final long rangeQueryEndTime = request.getHints().getLong(
-				RANGE_QUERY_END_TIME, initialTime);
-		final boolean arriveBy = request.getHints().getBool(ARRIVE_BY, false);
-
-		if (graphHopperStorage == null)
-			throw new IllegalStateException(
-					"Do a successful call to load or importOrLoad before routing");
-
-		if (graphHopperStorage.isClosed())
-			throw new IllegalStateException(
-					"You need to create a new GraphHopper instance as it is already closed");
-
-		PtFlagEncoder encoder = (PtFlagEncoder) encodingManager
-				.getEncoder("pt");
-
-		if (request.getPoints().size() != 2) {
-			throw new IllegalArgumentException(
-					"Exactly 2 points have to be specified, but was:"
-							+ request.getPoints().size());
+	/**
+	 * @return translation map, imported on first call.
+	 */
+	public TranslationMap getTranslationMap() {
+		TranslationMap result = translationMap;
+		if (result == null) {
+			synchronized (this) {
+				result = translationMap;
+				if (result == null) {
+					translationMap = result = createTranslationMap();
+				}
+			}
 		}
+		return result;
+	}
 
-		final GHPoint enter = request.getPoints().get(0);
-		final GHPoint exit = request.getPoints().get(1);
-
-		Locale locale = request.getLocale();
-
-		EdgeFilter enterFilter = new EverythingButPt(encoder);
-		EdgeFilter exitFilter = new EverythingButPt(encoder);
-
-		List<QueryResult> queryResults = new ArrayList<>();
-
-		QueryResult source = locationIndex.findClosest(enter.lat, enter.lon,
-				enterFilter);
-		if (!source.isValid()) {
-			return new Roads(Collections.emptySet());
+	/**
+	 * @return location index of the graph, loaded on first call.
+	 */
+	LocationIndex getLocationIndex() {
+		LocationIndex result = locationIndex;
+		if (result == null) {
+			synchronized (this) {
+				result = locationIndex;
+				if (result == null) {
+					final long start = System.nanoTime();
+					result = createOrLoadIndex(indexDirectory,
+							graphHopperStorage);
+					locationIndexLoadNanos = System.nanoTime() - start;
+					locationIndex = result;
+				}
+			}
 		}
-		queryResults.add(source);
+		return result;
+	}
 
-		QueryResult dest = locationIndex.findClosest(exit.lat, exit.lon,
-				exitFilter);
-		if (!dest.isValid()) {
-			return new Roads(Collections.emptySet());
-		}
-		queryResults.add(dest);
+	/**
+	 * @return time it took to load the location index on first use, or
+	 *         <code>0</code> if it was not loaded (yet) or given on
+	 *         construction.
+	 */
+	public long getLocationIndexLoadNanos() {
+		return locationIndexLoadNanos;
+	}
 
-		int startNode;
-		int destNode;
-		if (arriveBy) {
-			startNode = dest.getClosestNode();
-			destNode = source.getClosestNode();
-		} else {
-			startNode = source.getClosestNode();
-			destNode = dest.getClosestNode();
-		}
+	public RoadsCache getRoadsCache() {
+		return roadsCache;
+	}
 
-		ArrayList<Integer> toNodes = new ArrayList<>();
-		toNodes.add(destNode);
+	/**
+	 * Sets the cache of calculated roads, <code>null</code> disables caching.
+	 * The cache must only be shared between instances using the same graph.
+	 */
+	public void setRoadsCache(RoadsCache roadsCache) {
+		this.roadsCache = roadsCache;
+	}
 
-		QueryGraph queryGraph = new QueryGraph(graphHopperStorage);
-		queryGraph.lookup(queryResults);
+	LabelsSetting createLabelsSetting(String algorithm, boolean arriveBy,
+			int maxVisitedNodes) {
+		return createLabelsSetting(algorithm, arriveBy, maxVisitedNodes,
+				SearchBounds.UNBOUNDED);
+	}
 
+	/**
+	 * Creates a new search over the graph, searches can only be used once.
+	 */
+	LabelsSetting createLabelsSetting(String algorithm, boolean arriveBy,
+			int maxVisitedNodes, SearchBounds bounds) {
+		PtFlagEncoder encoder = (PtFlagEncoder) encodingManager
+				.getEncoder("pt");
 		PtTravelTimeWeighting weighting;
 		if (arriveBy) {
 			weighting = new PtTravelTimeWeighting(encoder).reverse();
@@ -257,35 +468,137 @@ public final class RoadsToGraphHopperGtfs {
 			weighting = new PtTravelTimeWeighting(encoder);
 		}
 
-		GraphExplorer explorer;
+		final DefaultEdgeFilter edgeFilter;
 		if (arriveBy) {
-			explorer = new GraphExplorer(
-					graphHopperStorage.createEdgeExplorer(new DefaultEdgeFilter(
-							encoder, true, false)), encoder, gtfsStorage, true);
+			edgeFilter = new DefaultEdgeFilter(encoder, true, false);
 		} else {
-			explorer = new GraphExplorer(
-					graphHopperStorage.createEdgeExplorer(new DefaultEdgeFilter(
-							encoder, false, true)), encoder, gtfsStorage, false);
+			edgeFilter = new DefaultEdgeFilter(encoder, false, true);
 		}
-
-		MultiCriteriaLabelsSetting router;
-		if (arriveBy) {
-			router = new MultiCriteriaLabelsSetting(graphHopperStorage,
-					weighting, maxVisitedNodesForRequest, explorer, true);
+		GraphExplorer explorer = new GraphExplorer(
+				graphHopperStorage.createEdgeExplorer(edgeFilter), encoder,
+				gtfsStorage, arriveBy);
+
+		final LabelsSetting router;
+		if (PROFILE_ALGORITHM.equals(algorithm)) {
+			router = new ProfileLabelsSetting(graphHopperStorage, weighting,
+					maxVisitedNodes, bounds, explorer,
+					graphHopperStorage.createEdgeExplorer(edgeFilter),
+					arriveBy, Math.min(bounds.getMaxTransfers(),
+							ProfileLabelsSetting.DEFAULT_MAX_TRANSFERS));
+		} else if (EARLIEST_ARRIVAL_ALGORITHM.equals(algorithm)) {
+			router = new EarliestArrivalLabelsSetting(graphHopperStorage,
+					weighting, maxVisitedNodes, bounds, explorer, arriveBy);
 		} else {
 			router = new MultiCriteriaLabelsSetting(graphHopperStorage,
-					weighting, maxVisitedNodesForRequest, explorer, false);
+					weighting, maxVisitedNodes, bounds, explorer, arriveBy);
+		}
+		return router;
+	}
+
+	GraphHopperStorage getGraphHopperStorage() {
+		return graphHopperStorage;
+	}
+
+	/**
+	 * @return closest node of the walk network to the location or
+	 *         <code>-1</code> if there is none.
+	 */
+	int findClosestNode(double lat, double lon) {
+		final QueryResult queryResult = getLocationIndex().findClosest(lat,
+				lon, new EverythingButPt((PtFlagEncoder) encodingManager
+						.getEncoder("pt")));
+		return queryResult.isValid() ? queryResult.getClosestNode()
+				: -1;
+	}
+
+	public boolean load(String graphHopperFolder) {
+		throw new IllegalStateException(
+				"We are always loaded, or we wouldn't exist.");
+	}
+
+	public Roads roadsFrom(double lat, double lon) {
+		return roadsFrom(new GHRequest(lat, lon, lat, lon));
+	}
+
+	/**
+	 * Calculates roads to the location arriving by the given time, see
+	 * {@link #ARRIVE_BY}.
+	 */
+	public Roads roadsTo(double lat, double lon, long arrivalTime) {
+		final GHRequest request = new GHRequest(lat, lon, lat, lon);
+		request.getHints().put(EARLIEST_DEPARTURE_TIME_HINT, arrivalTime);
+		request.getHints().put(ARRIVE_BY, true);
+		return roadsFrom(request);
+	}
+
+	/**
+	 * Calculates roads from the first point of the request (or to the second
+	 * point in {@link #ARRIVE_BY} mode). Departure time, range query end time
+	 * and arrive-by are taken from the hints of the request, the algorithm is one of {@link #MLS_ALGORITHM},
+	 * {@link #PROFILE_ALGORITHM} or {@link #EARLIEST_ARRIVAL_ALGORITHM}.
+	 * <p>
+	 * The search may be bounded with the {@link #MAX_TRAVEL_TIME},
+	 * {@link #MAX_TRANSFERS} and {@link #SEARCH_TIMEOUT} hints. If the search
+	 * times out, the roads found so far are returned and not cached. The
+	 * {@link #SEARCH_MEMORY} hint bounds the heap taken by its labels.
+	 */
+	public Roads roadsFrom(GHRequest request) {
+		return roadsFrom(request, null);
+	}
+
+	/**
+	 * Calculates roads as {@link #roadsFrom(GHRequest)} and records counters
+	 * and timings of snapping, search and road building in the given
+	 * statistics.
+	 *
+	 * @param statistics
+	 *            statistics of the query, may be <code>null</code>.
+	 */
+	public Roads roadsFrom(GHRequest request, QueryStatistics statistics) {
+		// The cache may be replaced concurrently, one query uses one cache
+		final RoadsCache cache = roadsCache;
+		final Search search = snap(request, statistics);
+		if (search == null) {
+			return new Roads(Collections.emptySet());
 		}
 
-		Collection<Label> solutions = router.calcLabels(startNode, initialTime,
-				rangeQueryEndTime);
+		final RoadsCache.Key cacheKey;
+		if (cache != null) {
+			cacheKey = new RoadsCache.Key(search.startNode, search.initialTime,
+					search.rangeQueryEndTime, search.arriveBy,
+					search.maxVisitedNodes, search.algorithm,
+					search.maxTravelTime, search.maxTransfers);
+			final Roads cachedRoads = cache.get(cacheKey);
+			if (cachedRoads != null) {
+				if (statistics != null) {
+					statistics.setCached(true);
+				}
+				return cachedRoads;
+			}
+		} else {
+			cacheKey = null;
+		}
 
-		final RoadBuilder roadsBuilder = new RoadBuilder(graphHopperStorage);
+		final LabelsSetting router = search(search, statistics);
+		final long roadBuildingStart = System.nanoTime();
 
-		for (Label label : solutions) {
-			roadsBuilder.addLabel(label);
+		final Roads roads;
+		try (LabelArena arena = router.getArena()) {
+			final RoadBuilder roadsBuilder = new RoadBuilder(
+					graphHopperStorage, arena, search.arriveBy);
+			for (int label : search.labels) {
+				roadsBuilder.addLabel(label);
+			}
+			roads = roadsBuilder.buildRoads();
+		}
+		if (statistics != null) {
+			statistics.setRoadBuildingNanos(System.nanoTime()
+					- roadBuildingStart);
+		}
+		if (cacheKey != null && !router.isDeadlineReached()) {
+			cache.put(cacheKey, roads);
 		}
-		return roadsBuilder.buildRoads();
+		return roads;
 
 		/*
 		 * Map<Integer, AtomicInteger> cnt = new HashMap<>();
@@ -337,4 +650,343 @@ public final class RoadsToGraphHopperGtfs {
 		 */
 	}
 
+	/**
+	 * Calculates roads as {@link #roadsFrom(GHRequest, QueryStatistics)}, but
+	 * passes them on while the search runs, as soon as their labels are
+	 * settled. Streamed roads are not cached and carry one thread each, see
+	 * {@link IncrementalRoadBuilder}. Building the roads is recorded as part
+	 * of the search.
+	 *
+	 * @param roads
+	 *            receives the roads, on the calling thread
+	 * @param statistics
+	 *            statistics of the query, may be <code>null</code>.
+	 */
+	public void streamRoadsFrom(GHRequest request, Consumer<Road> roads,
+			QueryStatistics statistics) {
+		final Search search = snap(request, statistics);
+		if (search == null) {
+			return;
+		}
+		final LabelsSetting router = createLabelsSetting(search.algorithm,
+				search.arriveBy, search.maxVisitedNodes, search.bounds);
+		try (LabelArena arena = router.getArena()) {
+			final IncrementalRoadBuilder roadBuilder = new IncrementalRoadBuilder(
+					graphHopperStorage, arena, search.arriveBy, roads);
+			router.setSettledLabelListener(roadBuilder::addLabel);
+			search(search, router, statistics);
+		}
+	}
+
+	/**
+	 * Calculates a travel time grid over the bounds of the graph from the
+	 * first point of the request, which is searched like in
+	 * {@link #roadsFrom(GHRequest)}. In arrive-by mode the grid holds the
+	 * travel times to the point. Grids are not cached.
+	 *
+	 * @param cellSize
+	 *            width and height of a cell in meters
+	 * @param walkSpeed
+	 *            speed of the walk from reached locations to the cells in
+	 *            meters per second
+	 * @param maxWalkDistance
+	 *            maximum distance of the walk in meters
+	 * @param statistics
+	 *            statistics of the query, may be <code>null</code>. Building
+	 *            the grid is recorded as road building.
+	 * @see TravelTimeGridBuilder
+	 */
+	public TravelTimeGrid travelTimeGridFrom(GHRequest request,
+			double cellSize, double walkSpeed, double maxWalkDistance,
+			QueryStatistics statistics) {
+		final Search search = snap(request, statistics);
+		final long gridBuildingStart;
+		final TravelTimeGrid grid;
+		try (LabelArena arena = search == null ? new ArrayLabelArena()
+				: search(search, statistics).getArena()) {
+			final TravelTimeGridBuilder gridBuilder;
+			if (search == null) {
+				gridBuilder = new TravelTimeGridBuilder(graphHopperStorage,
+						arena, 0, false);
+			} else {
+				gridBuilder = new TravelTimeGridBuilder(graphHopperStorage,
+						arena, search.initialTime, search.arriveBy);
+				for (int label : search.labels) {
+					gridBuilder.addLabel(label);
+				}
+			}
+			gridBuildingStart = System.nanoTime();
+			grid = gridBuilder.build(graphHopperStorage.getBounds(), cellSize,
+					walkSpeed, maxWalkDistance);
+		}
+		if (statistics != null) {
+			statistics.setRoadBuildingNanos(System.nanoTime()
+					- gridBuildingStart);
+		}
+		return grid;
+	}
+
+	/**
+	 * Samples the travel times from the first point of the request (or to
+	 * the second in {@link #ARRIVE_BY} mode) to the segments of the walk
+	 * network, searching once per step over the departure (arrival) window of
+	 * the request. The searches run in parallel on a fork-join pool, each
+	 * over a single departure time, and are not cached. The search timeout of
+	 * the request is ignored.
+	 *
+	 * @param samplingStep
+	 *            seconds between the sampled departure times
+	 * @param threads
+	 *            number of searches which run in parallel
+	 * @see AccessibilitySampler
+	 */
+	public Accessibility accessibilityFrom(GHRequest request,
+			long samplingStep, int threads) {
+		if (samplingStep <= 0) {
+			throw new IllegalArgumentException(
+					"Sampling step must be positive, but was: " + samplingStep);
+		}
+		final AccessibilitySampler sampler = getAccessibilitySampler();
+		// The window is sampled one departure time after the other
+		final Search search = snap(request, readSearch(request), null,
+				System.nanoTime());
+		final long maxTravelTime;
+		final long[] startTimes;
+		if (search == null) {
+			maxTravelTime = DEFAULT_SAMPLING_MAX_TRAVEL_TIME;
+			startTimes = new long[0];
+		} else {
+			maxTravelTime = search.maxTravelTime == Long.MAX_VALUE ? DEFAULT_SAMPLING_MAX_TRAVEL_TIME
+					: search.maxTravelTime;
+			// In arrive-by mode the window lies before the initial time
+			final long first = Math.min(search.initialTime,
+					search.rangeQueryEndTime);
+			final long last = Math.max(search.initialTime,
+					search.rangeQueryEndTime);
+			startTimes = new long[(int) ((last - first) / samplingStep) + 1];
+			for (int index = 0; index < startTimes.length; index++) {
+				startTimes[index] = first + index * samplingStep;
+			}
+		}
+		final SearchBounds bounds = new SearchBounds(maxTravelTime,
+				search == null ? Integer.MAX_VALUE : search.maxTransfers,
+				Long.MAX_VALUE, search == null ? Long.MAX_VALUE
+						: search.bounds.getMemoryBytes());
+		return sampler.sample(
+				() -> createLabelsSetting(search.algorithm, search.arriveBy,
+						search.maxVisitedNodes, bounds),
+				search == null ? -1 : search.startNode, startTimes,
+				search != null && search.arriveBy, maxTravelTime, threads);
+	}
+
+	private synchronized AccessibilitySampler getAccessibilitySampler() {
+		if (accessibilitySampler == null) {
+			accessibilitySampler = new AccessibilitySampler(
+					graphHopperStorage,
+					(PtFlagEncoder) encodingManager.getEncoder("pt"));
+		}
+		return accessibilitySampler;
+	}
+
+	/**
+	 * Checks the hints, the algorithm and the points of the request without
+	 * searching, so that callers can reject the request before they commit
+	 * to a response.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the request could not be searched.
+	 */
+	public static void checkRequest(GHRequest request) {
+		checkDepartureWindow(readSearch(request));
+	}
+
+	/**
+	 * Reads the search from the hints of the request and snaps its first
+	 * point (or the second in arrive-by mode) to the graph.
+	 *
+	 * @return the search or <code>null</code> if the point could not be
+	 *         snapped.
+	 */
+	private Search snap(GHRequest request, QueryStatistics statistics) {
+		final long snappingStart = System.nanoTime();
+		final Search search = readSearch(request);
+		checkDepartureWindow(search);
+		return snap(request, search, statistics, snappingStart);
+	}
+
+	/**
+	 * Snaps the first point of the request (or the second in arrive-by mode)
+	 * to the graph.
+	 *
+	 * @return the search or <code>null</code> if the point could not be
+	 *         snapped.
+	 */
+	private Search snap(GHRequest request, Search search,
+			QueryStatistics statistics, long snappingStart) {
+
+		if (graphHopperStorage == null)
+			throw new IllegalStateException(
+					"Do a successful call to load or importOrLoad before routing");
+
+		if (graphHopperStorage.isClosed())
+			throw new IllegalStateException(
+					"You need to create a new GraphHopper instance as it is already closed");
+
+		PtFlagEncoder encoder = (PtFlagEncoder) encodingManager
+				.getEncoder("pt");
+
+		final GHPoint enter = request.getPoints().get(0);
+		final GHPoint exit = request.getPoints().get(1);
+
+		EdgeFilter enterFilter = new EverythingButPt(encoder);
+		EdgeFilter exitFilter = new EverythingButPt(encoder);
+
+		final LocationIndex locationIndex = getLocationIndex();
+		QueryResult source = locationIndex.findClosest(enter.lat, enter.lon,
+				enterFilter);
+		if (!source.isValid()) {
+			return null;
+		}
+
+		QueryResult dest = locationIndex.findClosest(exit.lat, exit.lon,
+				exitFilter);
+		if (!dest.isValid()) {
+			return null;
+		}
+
+		if (search.arriveBy) {
+			search.startNode = dest.getClosestNode();
+		} else {
+			search.startNode = source.getClosestNode();
+		}
+
+		if (statistics != null) {
+			statistics.setSnappingNanos(System.nanoTime() - snappingStart);
+		}
+		return search;
+	}
+
+	/**
+	 * Reads the search from the hints of the request.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a hint, the algorithm or the number of points is not
+	 *             valid.
+	 */
+	private static Search readSearch(GHRequest request) {
+		final Search search = new Search();
+		search.maxVisitedNodes = request.getHints().getInt(
+				Parameters.Routing.MAX_VISITED_NODES, Integer.MAX_VALUE);
+		final long requestedTimeOfDay = request.getHints().getInt(
+				EARLIEST_DEPARTURE_TIME_HINT, 0)
+				% (24 * 60 * 60);
+		final long requestedDay = request.getHints().getInt(
+				EARLIEST_DEPARTURE_TIME_HINT, 0)
+				/ (24 * 60 * 60);
+		search.initialTime = requestedTimeOfDay + requestedDay
+				* (24 * 60 * 60);
+		search.rangeQueryEndTime = request.getHints().getLong(
+				RANGE_QUERY_END_TIME, search.initialTime);
+		search.arriveBy = request.getHints().getBool(ARRIVE_BY, false);
+		search.maxTravelTime = request.getHints().getLong(MAX_TRAVEL_TIME,
+				Long.MAX_VALUE);
+		search.maxTransfers = request.getHints().getInt(MAX_TRANSFERS,
+				Integer.MAX_VALUE);
+		final long searchTimeout = request.getHints().getLong(SEARCH_TIMEOUT,
+				Long.MAX_VALUE);
+		final long searchMemory = request.getHints().getLong(SEARCH_MEMORY,
+				Long.MAX_VALUE);
+		// Megabytes are shifted to bytes, which must not overflow
+		if (searchMemory < 0 || searchMemory != Long.MAX_VALUE
+				&& searchMemory > Long.MAX_VALUE >> 20) {
+			throw new IllegalArgumentException(
+					"Search memory must be between 0 and "
+							+ (Long.MAX_VALUE >> 20) + " megabytes, but was: "
+							+ searchMemory);
+		}
+		// The deadline starts with the request, snapping counts as well
+		search.bounds = new SearchBounds(search.maxTravelTime,
+				search.maxTransfers,
+				searchTimeout == Long.MAX_VALUE ? Long.MAX_VALUE
+						: TimeUnit.MILLISECONDS.toNanos(searchTimeout),
+				searchMemory == Long.MAX_VALUE ? Long.MAX_VALUE
+						: searchMemory << 20);
+		search.algorithm = Helper.isEmpty(request.getAlgorithm()) ? MLS_ALGORITHM
+				: request.getAlgorithm();
+		if (!MLS_ALGORITHM.equals(search.algorithm)
+				&& !PROFILE_ALGORITHM.equals(search.algorithm)
+				&& !EARLIEST_ARRIVAL_ALGORITHM.equals(search.algorithm)) {
+			throw new IllegalArgumentException("Unknown algorithm: "
+					+ search.algorithm);
+		}
+
+		if (request.getPoints().size() != 2) {
+			throw new IllegalArgumentException(
+					"Exactly 2 points have to be specified, but was:"
+							+ request.getPoints().size());
+		}
+		return search;
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the earliest arrival search is requested with a departure
+	 *             window.
+	 */
+	private static void checkDepartureWindow(Search search) {
+		if (EARLIEST_ARRIVAL_ALGORITHM.equals(search.algorithm)
+				&& search.rangeQueryEndTime != search.initialTime) {
+			throw new IllegalArgumentException("The "
+					+ EARLIEST_ARRIVAL_ALGORITHM
+					+ " algorithm departs at a single time, but a departure window of "
+					+ Math.abs(search.rangeQueryEndTime - search.initialTime)
+					+ " seconds was requested.");
+		}
+	}
+
+	/**
+	 * Runs the search, its labels are stored in {@link Search#labels}. If the
+	 * search fails, its arena is closed.
+	 *
+	 * @return the finished search, the caller must close its arena.
+	 */
+	private LabelsSetting search(Search search, QueryStatistics statistics) {
+		final LabelsSetting router = createLabelsSetting(search.algorithm,
+				search.arriveBy, search.maxVisitedNodes, search.bounds);
+		try {
+			search(search, router, statistics);
+		} catch (RuntimeException | Error ex) {
+			router.getArena().close();
+			throw ex;
+		}
+		return router;
+	}
+
+	private void search(Search search, LabelsSetting router,
+			QueryStatistics statistics) {
+		final long searchStart = System.nanoTime();
+		search.labels = router.calcLabels(search.startNode,
+				search.initialTime, search.rangeQueryEndTime);
+		if (statistics != null) {
+			statistics.setSearchNanos(System.nanoTime() - searchStart);
+			router.addStatistics(statistics);
+		}
+	}
+
+	/**
+	 * Parameters of a search read from a request, the node it starts from
+	 * and its labels once it ran.
+	 */
+	private static final class Search {
+		private int maxVisitedNodes;
+		private long initialTime;
+		private long rangeQueryEndTime;
+		private boolean arriveBy;
+		private long maxTravelTime;
+		private int maxTransfers;
+		private SearchBounds bounds;
+		private String algorithm;
+		private int startNode;
+		private int[] labels;
+	}
 }
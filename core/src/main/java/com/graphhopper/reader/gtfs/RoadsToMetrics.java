@@ -0,0 +1,187 @@
+package com.graphhopper.reader.gtfs;
+
+import java.lang.management.ManagementFactory;
+
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.spi.JsonProvider;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Aggregates the statistics of roads queries, may be registered as an MBean
+ * and written as a JSON summary.
+ */
+public class RoadsToMetrics implements QueryStatisticsListener,
+		RoadsToMetricsMBean {
+
+	public static final String OBJECT_NAME = "com.graphhopper.reader.gtfs:type=RoadsToMetrics";
+
+	private long queries;
+	private long cachedQueries;
+	private long deadlineReachedQueries;
+	private long visitedNodes;
+	private long labelsCreated;
+	private long labelsRejected;
+	private long dominatedRemovals;
+	private int maxPeakHeapSize;
+	private int maxPeakLabelsPerNode;
+	private long snappingNanos;
+	private long searchNanos;
+	private long roadBuildingNanos;
+	private long serializationNanos;
+	private long maxSearchNanos;
+
+	@Override
+	public synchronized void queryFinished(QueryStatistics statistics) {
+		queries++;
+		if (statistics.isCached()) {
+			cachedQueries++;
+		}
+		if (statistics.isDeadlineReached()) {
+			deadlineReachedQueries++;
+		}
+		visitedNodes += statistics.getVisitedNodes();
+		labelsCreated += statistics.getLabelsCreated();
+		labelsRejected += statistics.getLabelsRejected();
+		dominatedRemovals += statistics.getDominatedRemovals();
+		maxPeakHeapSize = Math.max(maxPeakHeapSize,
+				statistics.getPeakHeapSize());
+		maxPeakLabelsPerNode = Math.max(maxPeakLabelsPerNode,
+				statistics.getPeakLabelsPerNode());
+		snappingNanos += statistics.getSnappingNanos();
+		searchNanos += statistics.getSearchNanos();
+		roadBuildingNanos += statistics.getRoadBuildingNanos();
+		serializationNanos += statistics.getSerializationNanos();
+		maxSearchNanos = Math.max(maxSearchNanos, statistics.getSearchNanos());
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server under
+	 * {@link #OBJECT_NAME}.
+	 */
+	public void register() {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(this, new ObjectName(OBJECT_NAME));
+		} catch (JMException jmex) {
+			throw new IllegalStateException(
+					"Could not register the RoadsTo metrics MBean.", jmex);
+		}
+	}
+
+	@Override
+	public synchronized long getQueries() {
+		return queries;
+	}
+
+	@Override
+	public synchronized long getCachedQueries() {
+		return cachedQueries;
+	}
+
+	@Override
+	public synchronized long getDeadlineReachedQueries() {
+		return deadlineReachedQueries;
+	}
+
+	@Override
+	public synchronized long getVisitedNodes() {
+		return visitedNodes;
+	}
+
+	@Override
+	public synchronized long getLabelsCreated() {
+		return labelsCreated;
+	}
+
+	@Override
+	public synchronized long getLabelsRejected() {
+		return labelsRejected;
+	}
+
+	@Override
+	public synchronized long getDominatedRemovals() {
+		return dominatedRemovals;
+	}
+
+	@Override
+	public synchronized int getMaxPeakHeapSize() {
+		return maxPeakHeapSize;
+	}
+
+	@Override
+	public synchronized int getMaxPeakLabelsPerNode() {
+		return maxPeakLabelsPerNode;
+	}
+
+	@Override
+	public synchronized double getAverageSnappingMillis() {
+		return averageMillis(snappingNanos);
+	}
+
+	@Override
+	public synchronized double getAverageSearchMillis() {
+		return averageMillis(searchNanos);
+	}
+
+	@Override
+	public synchronized double getAverageRoadBuildingMillis() {
+		return averageMillis(roadBuildingNanos);
+	}
+
+	@Override
+	public synchronized double getAverageSerializationMillis() {
+		return averageMillis(serializationNanos);
+	}
+
+	@Override
+	public synchronized double getMaxSearchMillis() {
+		return maxSearchNanos / 1e6;
+	}
+
+	@Override
+	public synchronized void reset() {
+		queries = 0;
+		cachedQueries = 0;
+		deadlineReachedQueries = 0;
+		visitedNodes = 0;
+		labelsCreated = 0;
+		labelsRejected = 0;
+		dominatedRemovals = 0;
+		maxPeakHeapSize = 0;
+		maxPeakLabelsPerNode = 0;
+		snappingNanos = 0;
+		searchNanos = 0;
+		roadBuildingNanos = 0;
+		serializationNanos = 0;
+		maxSearchNanos = 0;
+	}
+
+	public synchronized JsonObject toJsonObject() {
+		final JsonObjectBuilder builder = JsonProvider.provider()
+				.createObjectBuilder();
+		builder.add("queries", queries);
+		builder.add("cachedQueries", cachedQueries);
+		builder.add("deadlineReachedQueries", deadlineReachedQueries);
+		builder.add("visitedNodes", visitedNodes);
+		builder.add("labelsCreated", labelsCreated);
+		builder.add("labelsRejected", labelsRejected);
+		builder.add("dominatedRemovals", dominatedRemovals);
+		builder.add("maxPeakHeapSize", maxPeakHeapSize);
+		builder.add("maxPeakLabelsPerNode", maxPeakLabelsPerNode);
+		builder.add("averageSnappingMillis", getAverageSnappingMillis());
+		builder.add("averageSearchMillis", getAverageSearchMillis());
+		builder.add("averageRoadBuildingMillis",
+				getAverageRoadBuildingMillis());
+		builder.add("averageSerializationMillis",
+				getAverageSerializationMillis());
+		builder.add("maxSearchMillis", getMaxSearchMillis());
+		return builder.build();
+	}
+
+	private double averageMillis(long nanos) {
+		return queries == 0 ? 0 : nanos / 1e6 / queries;
+	}
+}
@@ -0,0 +1,37 @@
+package com.graphhopper.reader.gtfs;
+
+/**
+ * JMX view of the {@link RoadsToMetrics}.
+ */
+public interface RoadsToMetricsMBean {
+
+	long getQueries();
+
+	long getCachedQueries();
+
+	long getDeadlineReachedQueries();
+
+	long getVisitedNodes();
+
+	long getLabelsCreated();
+
+	long getLabelsRejected();
+
+	long getDominatedRemovals();
+
+	int getMaxPeakHeapSize();
+
+	int getMaxPeakLabelsPerNode();
+
+	double getAverageSnappingMillis();
+
+	double getAverageSearchMillis();
+
+	double getAverageRoadBuildingMillis();
+
+	double getAverageSerializationMillis();
+
+	double getMaxSearchMillis();
+
+	void reset();
+}
@@ -0,0 +1,28 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes roads in some output format. Roads are passed one by one between
+ * {@link #writeStart()} and {@link #writeEnd()}.
+ */
+public interface RoadsWriter extends Closeable {
+
+	public void writeStart() throws IOException;
+
+	public void write(Road road) throws IOException;
+
+	public void writeEnd() throws IOException;
+
+	/**
+	 * Writes all the roads as a complete document.
+	 */
+	public default void write(Roads roads) throws IOException {
+		writeStart();
+		for (Road road : roads.getRoads()) {
+			write(road);
+		}
+		writeEnd();
+	}
+}
@@ -0,0 +1,120 @@
+package com.graphhopper.reader.gtfs;
+
+/**
+ * Bounds of a search besides the maximum number of visited nodes.
+ * <p>
+ * Labels which arrive later than the maximum travel time after the end of
+ * the departure window or which exceed the maximum number of transfers are
+ * not created at all. The deadline stops the search, the labels found so far
+ * are returned as they are. Since every label keeps its parent, partial
+ * results still consist of complete chains back to the start node. With a
+ * memory budget the settled and dominated labels are spilled from the heap
+ * to memory-mapped files, as are new labels once the budget is taken, see
+ * {@link MappedLabelArena}.
+ * <p>
+ * The budget covers the labels of the arena only. The Pareto sets per node,
+ * which keep the ids and criteria of their labels for the dominance checks,
+ * and the priority queue of the search frontier stay on the heap besides the
+ * budget and grow with the search.
+ */
+final class SearchBounds {
+
+	static final SearchBounds UNBOUNDED = new SearchBounds(Long.MAX_VALUE,
+			Integer.MAX_VALUE, Long.MAX_VALUE);
+
+	/**
+	 * The deadline is only checked every so many visited nodes, the check
+	 * must be a power of two.
+	 */
+	static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+	private final long maxTravelTime;
+	private final int maxTransfers;
+	private final long timeoutNanos;
+	private final long deadlineNanos;
+	private final long memoryBytes;
+
+	/**
+	 * @param maxTravelTime
+	 *            maximum travel time in seconds, {@link Long#MAX_VALUE} for no
+	 *            bound.
+	 * @param maxTransfers
+	 *            maximum number of transfers, {@link Integer#MAX_VALUE} for
+	 *            no bound.
+	 * @param timeoutNanos
+	 *            wall-clock time the search may take from now on,
+	 *            {@link Long#MAX_VALUE} for no deadline.
+	 */
+	SearchBounds(long maxTravelTime, int maxTransfers, long timeoutNanos) {
+		this(maxTravelTime, maxTransfers, timeoutNanos, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param memoryBytes
+	 *            heap the labels of the search may take,
+	 *            {@link Long#MAX_VALUE} for no bound.
+	 */
+	SearchBounds(long maxTravelTime, int maxTransfers, long timeoutNanos,
+			long memoryBytes) {
+		if (maxTravelTime < 0 || maxTransfers < 0 || timeoutNanos < 0
+				|| memoryBytes < 0) {
+			throw new IllegalArgumentException(
+					"Search bounds must not be negative.");
+		}
+		this.maxTravelTime = maxTravelTime;
+		this.maxTransfers = maxTransfers;
+		this.timeoutNanos = timeoutNanos;
+		this.deadlineNanos = timeoutNanos == Long.MAX_VALUE ? 0 : System
+				.nanoTime() + timeoutNanos;
+		this.memoryBytes = memoryBytes;
+	}
+
+	long getMaxTravelTime() {
+		return maxTravelTime;
+	}
+
+	int getMaxTransfers() {
+		return maxTransfers;
+	}
+
+	long getMemoryBytes() {
+		return memoryBytes;
+	}
+
+	/**
+	 * @return arena for the labels of a search, which keeps at most as many
+	 *         labels on the heap as fit into the memory budget.
+	 */
+	LabelArena createArena(int capacity) {
+		if (memoryBytes == Long.MAX_VALUE) {
+			return new ArrayLabelArena(capacity);
+		}
+		return new MappedLabelArena(capacity, (int) Math.min(
+				Integer.MAX_VALUE, memoryBytes
+						/ MappedLabelArena.BYTES_PER_HEAP_LABEL), null);
+	}
+
+	/**
+	 * @return latest arrival (or earliest departure in reverse mode) of the
+	 *         labels of a search departing within the given window.
+	 */
+	long getTimeLimit(long startTime, long rangeQueryEndTime, boolean reverse) {
+		if (maxTravelTime == Long.MAX_VALUE) {
+			return reverse ? Long.MIN_VALUE : Long.MAX_VALUE;
+		}
+		return reverse ? Math.min(startTime, rangeQueryEndTime)
+				- maxTravelTime : Math.max(startTime, rangeQueryEndTime)
+				+ maxTravelTime;
+	}
+
+	/**
+	 * @param visitedNodes
+	 *            number of nodes visited so far, the clock is only read every
+	 *            {@link #DEADLINE_CHECK_INTERVAL} nodes.
+	 */
+	boolean isDeadlineReached(int visitedNodes) {
+		return timeoutNanos != Long.MAX_VALUE
+				&& (visitedNodes & (DEADLINE_CHECK_INTERVAL - 1)) == 0
+				&& System.nanoTime() - deadlineNanos >= 0;
+	}
+}
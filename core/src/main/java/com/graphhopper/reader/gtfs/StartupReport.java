@@ -0,0 +1,78 @@
+package com.graphhopper.reader.gtfs;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.spi.JsonProvider;
+
+/**
+ * Times of the phases of a start, from the start of the JVM up to the first
+ * answered query.
+ */
+public final class StartupReport {
+
+	private final long jvmMillis;
+	private final Map<String, Long> phaseMillis = new LinkedHashMap<>();
+	private long phaseStart;
+
+	/**
+	 * Starts the report, the time since the start of the JVM is the first
+	 * phase.
+	 */
+	public StartupReport() {
+		this.jvmMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+		this.phaseStart = System.nanoTime();
+	}
+
+	/**
+	 * Ends the current phase, the next phase starts now.
+	 */
+	public void phase(String name) {
+		final long now = System.nanoTime();
+		phase(name, now - phaseStart);
+		phaseStart = now;
+	}
+
+	/**
+	 * Adds a phase which was timed elsewhere.
+	 */
+	public void phase(String name, long nanos) {
+		phaseMillis.put(name, TimeUnit.NANOSECONDS.toMillis(nanos));
+	}
+
+	public long getTotalMillis() {
+		long totalMillis = jvmMillis;
+		for (long millis : phaseMillis.values()) {
+			totalMillis += millis;
+		}
+		return totalMillis;
+	}
+
+	public JsonObject toJsonObject() {
+		final JsonObjectBuilder builder = JsonProvider.provider()
+				.createObjectBuilder();
+		builder.add("jvm", jvmMillis);
+		for (Entry<String, Long> entry : phaseMillis.entrySet()) {
+			builder.add(entry.getKey(), entry.getValue());
+		}
+		builder.add("total", getTotalMillis());
+		return builder.build();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder("Startup: jvm ")
+				.append(jvmMillis).append(" ms");
+		for (Entry<String, Long> entry : phaseMillis.entrySet()) {
+			builder.append(", ").append(entry.getKey()).append(' ')
+					.append(entry.getValue()).append(" ms");
+		}
+		return builder.append(", total ").append(getTotalMillis())
+				.append(" ms.").toString();
+	}
+}
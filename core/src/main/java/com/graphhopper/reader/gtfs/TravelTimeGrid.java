@@ -0,0 +1,94 @@
+package com.graphhopper.reader.gtfs;
+
+/**
+ * Travel times in seconds on a regular grid of geographic cells. Rows run
+ * from north to south, columns from west to east. Cells which cannot be
+ * reached hold {@link Float#NaN}.
+ */
+public class TravelTimeGrid {
+
+	private final double west;
+	private final double north;
+	private final double cellWidth;
+	private final double cellHeight;
+	private final int columns;
+	private final int rows;
+	private final float[] values;
+
+	/**
+	 * @param west
+	 *            longitude of the western edge of the grid
+	 * @param north
+	 *            latitude of the northern edge of the grid
+	 * @param cellWidth
+	 *            width of a cell in degrees of longitude
+	 * @param cellHeight
+	 *            height of a cell in degrees of latitude
+	 * @param values
+	 *            travel times row by row, <code>columns * rows</code> values
+	 */
+	public TravelTimeGrid(double west, double north, double cellWidth,
+			double cellHeight, int columns, int rows, float[] values) {
+		if (values.length != (long) columns * rows) {
+			throw new IllegalArgumentException("Expected " + columns + " x "
+					+ rows + " values, but got: " + values.length);
+		}
+		this.west = west;
+		this.north = north;
+		this.cellWidth = cellWidth;
+		this.cellHeight = cellHeight;
+		this.columns = columns;
+		this.rows = rows;
+		this.values = values;
+	}
+
+	public double getWest() {
+		return west;
+	}
+
+	public double getNorth() {
+		return north;
+	}
+
+	public double getCellWidth() {
+		return cellWidth;
+	}
+
+	public double getCellHeight() {
+		return cellHeight;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return travel time to the cell in seconds, {@link Float#NaN} if it
+	 *         cannot be reached.
+	 */
+	public float getValue(int column, int row) {
+		return values[row * columns + column];
+	}
+
+	float[] getValues() {
+		return values;
+	}
+
+	/**
+	 * @return longitude of the center of cells in the column.
+	 */
+	public double getLon(int column) {
+		return west + (column + 0.5) * cellWidth;
+	}
+
+	/**
+	 * @return latitude of the center of cells in the row.
+	 */
+	public double getLat(int row) {
+		return north - (row + 0.5) * cellHeight;
+	}
+}
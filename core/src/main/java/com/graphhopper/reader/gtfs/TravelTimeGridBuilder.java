@@ -0,0 +1,185 @@
+package com.graphhopper.reader.gtfs;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.carrotsearch.hppc.cursors.LongIntCursor;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.BBox;
+
+/**
+ * Builds a travel time grid from the labels of a search.
+ * <p>
+ * For every location the label with the shortest travel time is kept. Every
+ * cell of the grid then gets the shortest travel time to one of these
+ * locations plus the time to walk from there to the center of the cell in a
+ * straight line, as long as the walk is not longer than the maximum walk
+ * distance. Locations are bucketed by cell, so that only the cells around a
+ * cell have to be looked at. Rows are filled in parallel.
+ */
+public class TravelTimeGridBuilder {
+
+	public static final double DEFAULT_CELL_SIZE = 100;
+	/**
+	 * Walk speed in meters per second, 5 km/h.
+	 */
+	public static final double DEFAULT_WALK_SPEED = 5 / 3.6;
+	public static final double DEFAULT_MAX_WALK_DISTANCE = 1000;
+
+	private static final double METERS_PER_DEGREE = DistanceCalcEarth.R
+			* Math.PI / 180;
+
+	private final GraphHopperStorage storage;
+
+	private final LabelArena arena;
+
+	private final long startTime;
+
+	private final boolean reverse;
+
+	/**
+	 * Label with the shortest travel time per location, keyed by the
+	 * location.
+	 */
+	private final LongIntHashMap labels = new LongIntHashMap();
+
+	TravelTimeGridBuilder(GraphHopperStorage storage, LabelArena arena,
+			long startTime, boolean reverse) {
+		this.storage = storage;
+		this.arena = arena;
+		this.startTime = startTime;
+		this.reverse = reverse;
+	}
+
+	public void addLabel(int label) {
+		final int adjNode = arena.getAdjNode(label);
+		final NodeAccess nodeAccess = storage.getNodeAccess();
+		final long location = RoadBuilder.location(nodeAccess.getLat(adjNode),
+				nodeAccess.getLon(adjNode));
+		final int index = labels.indexOf(location);
+		if (!labels.indexExists(index)) {
+			labels.indexInsert(index, location, label);
+		} else if (travelTime(label) < travelTime(labels.indexGet(index))) {
+			labels.indexReplace(index, label);
+		}
+	}
+
+	private long travelTime(int label) {
+		return reverse ? startTime - arena.getCurrentTime(label) : arena
+				.getCurrentTime(label) - startTime;
+	}
+
+	/**
+	 * @param bounds
+	 *            area covered by the grid
+	 * @param cellSize
+	 *            width and height of a cell in meters
+	 * @param walkSpeed
+	 *            walk speed in meters per second
+	 * @param maxWalkDistance
+	 *            maximum distance in meters to walk from a location to a cell
+	 */
+	public TravelTimeGrid build(BBox bounds, double cellSize,
+			double walkSpeed, double maxWalkDistance) {
+		if (cellSize <= 0 || walkSpeed <= 0 || maxWalkDistance < 0) {
+			throw new IllegalArgumentException(
+					"Cell size and walk speed must be positive and the maximum walk distance must not be negative.");
+		}
+		final double cellHeight = cellSize / METERS_PER_DEGREE;
+		final double cellWidth = cellHeight
+				/ Math.cos(Math.toRadians((bounds.minLat + bounds.maxLat) / 2));
+		final int columns = bounds.maxLon < bounds.minLon ? 0 : Math.max(1,
+				(int) Math.ceil((bounds.maxLon - bounds.minLon) / cellWidth));
+		final int rows = bounds.maxLat < bounds.minLat ? 0 : Math.max(1,
+				(int) Math.ceil((bounds.maxLat - bounds.minLat) / cellHeight));
+		if ((long) columns * rows > Integer.MAX_VALUE - 1) {
+			throw new IllegalArgumentException("Grid of " + columns + " x "
+					+ rows + " cells is too large, use a larger cell size.");
+		}
+		final TravelTimeGrid grid = new TravelTimeGrid(bounds.minLon,
+				bounds.maxLat, cellWidth, cellHeight, columns, rows,
+				new float[columns * rows]);
+		if (columns * rows == 0) {
+			return grid;
+		}
+
+		// Locations sorted by cell, the locations of a cell are found from
+		// cellStarts[cell] to cellStarts[cell + 1]
+		final int size = labels.size();
+		final int[] cells = new int[size];
+		final int[] cellStarts = new int[columns * rows + 1];
+		int location = 0;
+		for (LongIntCursor cursor : labels) {
+			final double lat = Helper.intToDegree((int) (cursor.key >> 32));
+			final double lon = Helper.intToDegree((int) cursor.key);
+			cells[location] = cell(grid, lat, lon);
+			cellStarts[cells[location] + 1]++;
+			location++;
+		}
+		for (int cell = 0; cell < columns * rows; cell++) {
+			cellStarts[cell + 1] += cellStarts[cell];
+		}
+		final double[] lats = new double[size];
+		final double[] lons = new double[size];
+		final double[] travelTimes = new double[size];
+		final int[] next = Arrays.copyOf(cellStarts, cellStarts.length);
+		location = 0;
+		for (LongIntCursor cursor : labels) {
+			final int sorted = next[cells[location++]]++;
+			lats[sorted] = Helper.intToDegree((int) (cursor.key >> 32));
+			lons[sorted] = Helper.intToDegree((int) cursor.key);
+			travelTimes[sorted] = travelTime(cursor.value);
+		}
+
+		final int rowRadius = (int) Math.ceil(maxWalkDistance / cellSize);
+		IntStream.range(0, rows).parallel().forEach(row -> {
+			final double lat = grid.getLat(row);
+			final double metersPerDegreeLon = METERS_PER_DEGREE
+					* Math.cos(Math.toRadians(lat));
+			final int columnRadius = (int) Math.ceil(maxWalkDistance
+					/ (cellWidth * metersPerDegreeLon));
+			final int fromRow = Math.max(0, row - rowRadius);
+			final int toRow = Math.min(rows - 1, row + rowRadius);
+			for (int column = 0; column < columns; column++) {
+				final double lon = grid.getLon(column);
+				final int fromColumn = Math.max(0, column - columnRadius);
+				final int toColumn = Math.min(columns - 1, column
+						+ columnRadius);
+				double best = Double.POSITIVE_INFINITY;
+				for (int otherRow = fromRow; otherRow <= toRow; otherRow++) {
+					final int rowStart = otherRow * columns;
+					for (int index = cellStarts[rowStart + fromColumn]; index < cellStarts[rowStart
+							+ toColumn + 1]; index++) {
+						final double dy = (lats[index] - lat) * METERS_PER_DEGREE;
+						final double dx = (lons[index] - lon)
+								* metersPerDegreeLon;
+						final double distance = Math.sqrt(dx * dx + dy * dy);
+						if (distance <= maxWalkDistance) {
+							best = Math.min(best, travelTimes[index]
+									+ distance / walkSpeed);
+						}
+					}
+				}
+				grid.getValues()[row * columns + column] = best == Double.POSITIVE_INFINITY ? Float.NaN
+						: (float) best;
+			}
+		});
+		return grid;
+	}
+
+	/**
+	 * @return index of the cell containing the location, locations outside
+	 *         of the grid are moved to the nearest cell.
+	 */
+	private static int cell(TravelTimeGrid grid, double lat, double lon) {
+		final int column = Math.max(0, Math.min(grid.getColumns() - 1,
+				(int) Math.floor((lon - grid.getWest()) / grid.getCellWidth())));
+		final int row = Math.max(0, Math.min(grid.getRows() - 1,
+				(int) Math.floor((grid.getNorth() - lat) / grid.getCellHeight())));
+		return row * grid.getColumns() + column;
+	}
+}
@@ -0,0 +1,48 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads travel time grids written by the {@link TravelTimeGridWriter}.
+ */
+public class TravelTimeGridReader {
+
+	private TravelTimeGridReader() {
+	}
+
+	public static TravelTimeGrid read(InputStream is) throws IOException {
+		final DataInputStream in = new DataInputStream(
+				new BufferedInputStream(is));
+		final int magic = in.readInt();
+		if (magic != TravelTimeGridWriter.MAGIC) {
+			throw new IOException(
+					"Not a travel time grid file, unexpected magic number "
+							+ Integer.toHexString(magic) + ".");
+		}
+		final int version = in.readUnsignedByte();
+		if (version != TravelTimeGridWriter.VERSION) {
+			throw new IOException("Unsupported travel time grid file version "
+					+ version + ".");
+		}
+		final double west = in.readDouble();
+		final double north = in.readDouble();
+		final double cellWidth = in.readDouble();
+		final double cellHeight = in.readDouble();
+		final int columns = in.readInt();
+		final int rows = in.readInt();
+		if (columns < 0 || rows < 0
+				|| (long) columns * rows > Integer.MAX_VALUE) {
+			throw new IOException("Invalid grid size " + columns + " x "
+					+ rows + ".");
+		}
+		final float[] values = new float[columns * rows];
+		for (int index = 0; index < values.length; index++) {
+			values[index] = in.readFloat();
+		}
+		return new TravelTimeGrid(west, north, cellWidth, cellHeight, columns,
+				rows, values);
+	}
+}
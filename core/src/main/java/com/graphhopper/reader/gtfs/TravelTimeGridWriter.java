@@ -0,0 +1,62 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes travel time grids as a headered binary float grid.
+ * <p>
+ * Layout of the format:
+ *
+ * <pre>
+ * header:
+ *   int32    magic, "TTG1" (0x54544731)
+ *   uint8    version, currently 1
+ *   float64  west, longitude of the western edge
+ *   float64  north, latitude of the northern edge
+ *   float64  width of a cell in degrees of longitude
+ *   float64  height of a cell in degrees of latitude
+ *   int32    number of columns
+ *   int32    number of rows
+ * cells, row by row from north to south, west to east in a row:
+ *   float32  travel time in seconds, NaN if the cell cannot be reached
+ * </pre>
+ *
+ * All values are big-endian.
+ *
+ * @see TravelTimeGridReader
+ */
+public class TravelTimeGridWriter {
+
+	public static final int MAGIC = 0x54544731;
+
+	public static final int VERSION = 1;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private TravelTimeGridWriter() {
+	}
+
+	/**
+	 * Writes the grid, the stream is flushed but not closed.
+	 */
+	public static void write(TravelTimeGrid grid, OutputStream os)
+			throws IOException {
+		final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(os, BUFFER_SIZE));
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeDouble(grid.getWest());
+		out.writeDouble(grid.getNorth());
+		out.writeDouble(grid.getCellWidth());
+		out.writeDouble(grid.getCellHeight());
+		out.writeInt(grid.getColumns());
+		out.writeInt(grid.getRows());
+		for (float value : grid.getValues()) {
+			out.writeFloat(value);
+		}
+		out.flush();
+	}
+}
@@ -0,0 +1,117 @@
+package com.graphhopper.reader.gtfs;
+
+/**
+ * Histograms of travel times of many samples, one histogram per item (for
+ * instance a road segment), all kept in one flat array of counts per bin.
+ * Travel times beyond the last bin are counted in the last bin. Samples are
+ * added as a whole and may be added from several threads.
+ */
+public class TravelTimeHistograms {
+
+	public static final int DEFAULT_BIN_SECONDS = 60;
+
+	/**
+	 * Travel time of items which were not reached in a sample.
+	 */
+	public static final int UNREACHED = -1;
+
+	private final int size;
+	private final int binSeconds;
+	private final int binCount;
+	private final int[] counts;
+	private final int[] reached;
+	private int samples;
+
+	/**
+	 * @param size
+	 *            number of items
+	 * @param binSeconds
+	 *            width of a bin in seconds
+	 * @param maxTravelTime
+	 *            largest travel time in seconds which gets a bin of its own
+	 */
+	public TravelTimeHistograms(int size, int binSeconds, long maxTravelTime) {
+		if (binSeconds <= 0 || maxTravelTime < 0) {
+			throw new IllegalArgumentException(
+					"Bins must be positive and the maximum travel time must not be negative.");
+		}
+		final long bins = maxTravelTime / binSeconds + 1;
+		if (bins * size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Histograms of " + size
+					+ " items with " + bins + " bins are too large.");
+		}
+		this.size = size;
+		this.binSeconds = binSeconds;
+		this.binCount = (int) bins;
+		this.counts = new int[size * binCount];
+		this.reached = new int[size];
+	}
+
+	/**
+	 * @param travelTimes
+	 *            travel time of every item in seconds, {@link #UNREACHED} if
+	 *            it was not reached
+	 */
+	public synchronized void addSample(int[] travelTimes) {
+		if (travelTimes.length != size) {
+			throw new IllegalArgumentException("Expected " + size
+					+ " travel times, but got: " + travelTimes.length);
+		}
+		for (int index = 0; index < size; index++) {
+			final int travelTime = travelTimes[index];
+			if (travelTime != UNREACHED) {
+				final int bin = Math.min(binCount - 1, travelTime / binSeconds);
+				counts[index * binCount + bin]++;
+				reached[index]++;
+			}
+		}
+		samples++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getBinSeconds() {
+		return binSeconds;
+	}
+
+	public synchronized int getSamples() {
+		return samples;
+	}
+
+	/**
+	 * @return number of samples which reached the item.
+	 */
+	public synchronized int getReached(int index) {
+		return reached[index];
+	}
+
+	/**
+	 * @param percentile
+	 *            percentile between <code>0</code> (exclusive) and
+	 *            <code>100</code>
+	 * @return upper bound in seconds of the bin of the percentile (nearest
+	 *         rank) of the travel times of all samples, {@link #UNREACHED} if
+	 *         the item is not reached in that share of the samples.
+	 */
+	public synchronized int getPercentile(int index, double percentile) {
+		if (percentile <= 0 || percentile > 100) {
+			throw new IllegalArgumentException(
+					"Percentile must be within 0 (exclusive) and 100, but was: "
+							+ percentile);
+		}
+		final int rank = (int) Math.ceil(percentile / 100 * samples);
+		if (rank == 0 || rank > reached[index]) {
+			return UNREACHED;
+		}
+		int count = 0;
+		for (int bin = 0; bin < binCount; bin++) {
+			count += counts[index * binCount + bin];
+			if (count >= rank) {
+				return (bin + 1) * binSeconds;
+			}
+		}
+		throw new IllegalStateException("Counts do not match the reached samples.");
+	}
+}
@@ -0,0 +1,197 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.carrotsearch.hppc.LongIntHashMap;
+
+/**
+ * Encodes one Mapbox Vector Tile (version 2) with a single layer of line
+ * features.
+ * <p>
+ * The protocol buffer messages are written by hand, the tile only needs a
+ * small part of the format: a layer with keys, values and line string
+ * features. Features carry the attributes <code>currentTime</code>,
+ * <code>numberOfTransfers</code> and <code>numberOfThreads</code> of their
+ * road, equal values are shared within the layer. Instances are not
+ * thread-safe.
+ */
+final class VectorTileEncoder {
+
+	static final String[] KEYS = { "currentTime", "numberOfTransfers",
+			"numberOfThreads" };
+
+	private static final int WIRE_VARINT = 0;
+	private static final int WIRE_LENGTH_DELIMITED = 2;
+
+	// Tile
+	private static final int TILE_LAYERS = 3;
+	// Layer
+	private static final int LAYER_NAME = 1;
+	private static final int LAYER_FEATURES = 2;
+	private static final int LAYER_KEYS = 3;
+	private static final int LAYER_VALUES = 4;
+	private static final int LAYER_EXTENT = 5;
+	private static final int LAYER_VERSION = 15;
+	// Feature
+	private static final int FEATURE_TAGS = 2;
+	private static final int FEATURE_TYPE = 3;
+	private static final int FEATURE_GEOMETRY = 4;
+	private static final int GEOMETRY_TYPE_LINESTRING = 2;
+	// Value
+	private static final int VALUE_UINT = 5;
+	private static final int VALUE_SINT = 6;
+
+	private static final int COMMAND_MOVE_TO = 1;
+	private static final int COMMAND_LINE_TO = 2;
+
+	private final String layerName;
+	private final int extent;
+	private final ByteArrayOutputStream features = new ByteArrayOutputStream();
+	private final ByteArrayOutputStream values = new ByteArrayOutputStream();
+	/**
+	 * Index of the value per key, keyed by the value.
+	 */
+	private final LongIntHashMap[] valueIndexes = new LongIntHashMap[KEYS.length];
+	private int valueCount;
+	private int featureCount;
+
+	VectorTileEncoder(String layerName, int extent) {
+		this.layerName = layerName;
+		this.extent = extent;
+		for (int index = 0; index < KEYS.length; index++) {
+			valueIndexes[index] = new LongIntHashMap();
+		}
+	}
+
+	int getFeatureCount() {
+		return featureCount;
+	}
+
+	/**
+	 * Adds a (multi) line string feature.
+	 *
+	 * @param parts
+	 *            parts of the line, each given as tile coordinates
+	 *            <code>x0, y0, x1, y1, ...</code> with at least two points.
+	 * @param partCount
+	 *            number of parts to add.
+	 */
+	void addLineFeature(long currentTime, int numberOfTransfers,
+			int numberOfThreads, int[][] parts, int partCount) {
+		final ByteArrayOutputStream feature = new ByteArrayOutputStream();
+
+		final ByteArrayOutputStream tags = new ByteArrayOutputStream();
+		writeTag(tags, 0, value(0, VALUE_SINT, currentTime));
+		writeTag(tags, 1, value(1, VALUE_UINT, numberOfTransfers));
+		writeTag(tags, 2, value(2, VALUE_UINT, numberOfThreads));
+		writeBytes(feature, FEATURE_TAGS, tags);
+
+		writeKey(feature, FEATURE_TYPE, WIRE_VARINT);
+		writeVarint(feature, GEOMETRY_TYPE_LINESTRING);
+
+		final ByteArrayOutputStream geometry = new ByteArrayOutputStream();
+		int x = 0;
+		int y = 0;
+		for (int part = 0; part < partCount; part++) {
+			final int[] coordinates = parts[part];
+			final int points = coordinates.length / 2;
+			writeVarint(geometry, command(COMMAND_MOVE_TO, 1));
+			writeVarint(geometry, zigZag(coordinates[0] - x));
+			writeVarint(geometry, zigZag(coordinates[1] - y));
+			x = coordinates[0];
+			y = coordinates[1];
+			writeVarint(geometry, command(COMMAND_LINE_TO, points - 1));
+			for (int point = 1; point < points; point++) {
+				writeVarint(geometry, zigZag(coordinates[2 * point] - x));
+				writeVarint(geometry, zigZag(coordinates[2 * point + 1] - y));
+				x = coordinates[2 * point];
+				y = coordinates[2 * point + 1];
+			}
+		}
+		writeBytes(feature, FEATURE_GEOMETRY, geometry);
+
+		writeBytes(features, LAYER_FEATURES, feature);
+		featureCount++;
+	}
+
+	byte[] encode() {
+		final ByteArrayOutputStream layer = new ByteArrayOutputStream();
+		writeKey(layer, LAYER_VERSION, WIRE_VARINT);
+		writeVarint(layer, 2);
+		writeString(layer, LAYER_NAME, layerName);
+		layer.write(features.toByteArray(), 0, features.size());
+		for (String key : KEYS) {
+			writeString(layer, LAYER_KEYS, key);
+		}
+		layer.write(values.toByteArray(), 0, values.size());
+		writeKey(layer, LAYER_EXTENT, WIRE_VARINT);
+		writeVarint(layer, extent);
+
+		final ByteArrayOutputStream tile = new ByteArrayOutputStream();
+		writeBytes(tile, TILE_LAYERS, layer);
+		return tile.toByteArray();
+	}
+
+	/**
+	 * @return index of the value in the layer, added if new.
+	 */
+	private int value(int key, int field, long value) {
+		final LongIntHashMap valueIndex = valueIndexes[key];
+		final int index = valueIndex.indexOf(value);
+		if (valueIndex.indexExists(index)) {
+			return valueIndex.indexGet(index);
+		}
+		final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		writeKey(encoded, field, WIRE_VARINT);
+		writeVarint(encoded, field == VALUE_SINT ? zigZag(value) : value);
+		writeBytes(values, LAYER_VALUES, encoded);
+		valueIndex.indexInsert(index, value, valueCount);
+		return valueCount++;
+	}
+
+	private static void writeTag(ByteArrayOutputStream os, int key, int value) {
+		writeVarint(os, key);
+		writeVarint(os, value);
+	}
+
+	private static int command(int id, int count) {
+		return (id & 0x7) | (count << 3);
+	}
+
+	private static int zigZag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static void writeKey(ByteArrayOutputStream os, int field,
+			int wireType) {
+		writeVarint(os, (field << 3) | wireType);
+	}
+
+	private static void writeString(ByteArrayOutputStream os, int field,
+			String value) {
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeKey(os, field, WIRE_LENGTH_DELIMITED);
+		writeVarint(os, bytes.length);
+		os.write(bytes, 0, bytes.length);
+	}
+
+	private static void writeBytes(ByteArrayOutputStream os, int field,
+			ByteArrayOutputStream message) {
+		writeKey(os, field, WIRE_LENGTH_DELIMITED);
+		writeVarint(os, message.size());
+		os.write(message.toByteArray(), 0, message.size());
+	}
+
+	private static void writeVarint(ByteArrayOutputStream os, long value) {
+		while ((value & ~0x7FL) != 0) {
+			os.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		os.write((int) value);
+	}
+}
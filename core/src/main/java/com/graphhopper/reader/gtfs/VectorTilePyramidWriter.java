@@ -0,0 +1,320 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongObjectHashMap;
+import com.carrotsearch.hppc.cursors.LongObjectCursor;
+import com.graphhopper.util.PointList;
+
+/**
+ * Cuts roads into a pyramid of Mapbox Vector Tiles, written as
+ * <code>{z}/{x}/{y}.pbf</code> into a directory.
+ * <p>
+ * Per zoom level the roads are simplified with a tolerance of about one unit
+ * of the tile extent, projected to web mercator and assigned to the tiles
+ * their bounding box (plus a buffer) touches. Every tile is then clipped,
+ * encoded and written as a task of its own, on a pool of threads. Tiles
+ * without features are not written.
+ */
+public class VectorTilePyramidWriter {
+
+	public static final String LAYER_NAME = "roads";
+	public static final int DEFAULT_MIN_ZOOM = 8;
+	public static final int DEFAULT_MAX_ZOOM = 14;
+	public static final int EXTENT = 4096;
+	/**
+	 * Features are clipped to the tile plus this many units of the extent on
+	 * every side, so that lines do not end visibly at tile borders.
+	 */
+	public static final int BUFFER = 64;
+
+	private static final double EARTH_CIRCUMFERENCE = 40075016.686;
+
+	private final int minZoom;
+	private final int maxZoom;
+	private final int threads;
+
+	public VectorTilePyramidWriter(int minZoom, int maxZoom, int threads) {
+		if (minZoom < 0 || maxZoom > 24 || minZoom > maxZoom) {
+			throw new IllegalArgumentException(
+					"Zoom levels must be within 0 and 24, but were: "
+							+ minZoom + " to " + maxZoom);
+		}
+		this.minZoom = minZoom;
+		this.maxZoom = maxZoom;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * @return number of tiles written.
+	 */
+	public int write(Roads roads, File directory) throws IOException {
+		final ExecutorService executorService = Executors
+				.newFixedThreadPool(threads);
+		try {
+			final List<Future<Boolean>> futures = new ArrayList<>();
+			for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+				submitTiles(roads, zoom, directory, executorService, futures);
+			}
+			int tiles = 0;
+			for (Future<Boolean> future : futures) {
+				if (future.get()) {
+					tiles++;
+				}
+			}
+			return tiles;
+		} catch (InterruptedException iex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Writing tiles was interrupted.", iex);
+		} catch (ExecutionException eex) {
+			if (eex.getCause() instanceof IOException) {
+				throw (IOException) eex.getCause();
+			}
+			throw new IllegalStateException("Could not write tile.",
+					eex.getCause());
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	private void submitTiles(Roads roads, int zoom, File directory,
+			ExecutorService executorService, List<Future<Boolean>> futures) {
+		final int tileCount = 1 << zoom;
+		final List<Road> simplifiedRoads = new ArrayList<>(
+				new RoadsSimplifier(getTolerance(roads, zoom), -1).simplify(
+						roads).getRoads());
+		// Projected coordinates of the roads in tiles, x0, y0, x1, y1, ...
+		final List<double[]> projectedRoads = new ArrayList<>(
+				simplifiedRoads.size());
+		final LongObjectHashMap<IntArrayList> roadsByTile = new LongObjectHashMap<>();
+		final double buffer = (double) BUFFER / EXTENT;
+		for (int index = 0; index < simplifiedRoads.size(); index++) {
+			final PointList pointList = simplifiedRoads.get(index)
+					.getPointList();
+			final double[] projected = new double[2 * pointList.size()];
+			double minX = Double.POSITIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY;
+			double maxY = Double.NEGATIVE_INFINITY;
+			for (int point = 0; point < pointList.size(); point++) {
+				final double x = projectX(pointList.getLon(point))
+						* tileCount;
+				final double y = projectY(pointList.getLat(point))
+						* tileCount;
+				projected[2 * point] = x;
+				projected[2 * point + 1] = y;
+				minX = Math.min(minX, x);
+				minY = Math.min(minY, y);
+				maxX = Math.max(maxX, x);
+				maxY = Math.max(maxY, y);
+			}
+			projectedRoads.add(projected);
+			final int fromX = clamp(minX - buffer, tileCount);
+			final int toX = clamp(maxX + buffer, tileCount);
+			final int fromY = clamp(minY - buffer, tileCount);
+			final int toY = clamp(maxY + buffer, tileCount);
+			for (int x = fromX; x <= toX; x++) {
+				for (int y = fromY; y <= toY; y++) {
+					final long key = ((long) x << 32) | y;
+					IntArrayList tileRoads = roadsByTile.get(key);
+					if (tileRoads == null) {
+						tileRoads = new IntArrayList();
+						roadsByTile.put(key, tileRoads);
+					}
+					tileRoads.add(index);
+				}
+			}
+		}
+		for (LongObjectCursor<IntArrayList> cursor : roadsByTile) {
+			final int x = (int) (cursor.key >>> 32);
+			final int y = (int) cursor.key;
+			final IntArrayList tileRoads = cursor.value;
+			futures.add(executorService.submit(() -> writeTile(
+					simplifiedRoads, projectedRoads, tileRoads, zoom, x, y,
+					directory)));
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the tile had features and was written.
+	 */
+	private boolean writeTile(List<Road> roads, List<double[]> projectedRoads,
+			IntArrayList tileRoads, int zoom, int x, int y, File directory)
+			throws IOException {
+		final VectorTileEncoder encoder = new VectorTileEncoder(LAYER_NAME,
+				EXTENT);
+		final TileClipper clipper = new TileClipper(x, y);
+		for (int index = 0; index < tileRoads.size(); index++) {
+			final int roadIndex = tileRoads.get(index);
+			final int partCount = clipper
+					.clip(projectedRoads.get(roadIndex));
+			if (partCount > 0) {
+				final Road road = roads.get(roadIndex);
+				encoder.addLineFeature(road.getCurrentTime(),
+						road.getNumberOfTransfers(), road.getNumberOfThreads(),
+						clipper.parts, partCount);
+			}
+		}
+		if (encoder.getFeatureCount() == 0) {
+			return false;
+		}
+		final File tileDirectory = new File(directory, zoom + File.separator
+				+ x);
+		// Tiles of the same column are written concurrently
+		if (!tileDirectory.mkdirs() && !tileDirectory.isDirectory()) {
+			throw new IOException("Could not create directory "
+					+ tileDirectory);
+		}
+		try (OutputStream os = new FileOutputStream(new File(tileDirectory, y
+				+ ".pbf"))) {
+			os.write(encoder.encode());
+		}
+		return true;
+	}
+
+	/**
+	 * @return tolerance of about one unit of the tile extent in meters at the
+	 *         latitude of the first road.
+	 */
+	private static double getTolerance(Roads roads, int zoom) {
+		double lat = 0;
+		for (Road road : roads.getRoads()) {
+			if (road.getPointList().size() > 0) {
+				lat = road.getPointList().getLat(0);
+				break;
+			}
+		}
+		return EARTH_CIRCUMFERENCE * Math.cos(Math.toRadians(lat))
+				/ ((double) EXTENT * (1 << zoom));
+	}
+
+	static double projectX(double lon) {
+		return (lon + 180) / 360;
+	}
+
+	static double projectY(double lat) {
+		final double sin = Math.sin(Math.toRadians(Math.max(-85.05112878,
+				Math.min(85.05112878, lat))));
+		return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+	}
+
+	/**
+	 * @return tile of the projected coordinate, within the world.
+	 */
+	private static int clamp(double coordinate, int tileCount) {
+		return Math.max(0,
+				Math.min(tileCount - 1, (int) Math.floor(coordinate)));
+	}
+
+	/**
+	 * Clips projected lines to a buffered tile and converts them to integer
+	 * tile coordinates. Lines leaving and entering the tile again are split
+	 * into several parts.
+	 */
+	static final class TileClipper {
+
+		private final int tileX;
+		private final int tileY;
+		int[][] parts = new int[4][];
+		private int[] current = new int[16];
+		private int currentSize;
+		private int partCount;
+
+		TileClipper(int tileX, int tileY) {
+			this.tileX = tileX;
+			this.tileY = tileY;
+		}
+
+		/**
+		 * @param projected
+		 *            coordinates in tiles of the zoom level
+		 * @return number of {@link #parts} of the clipped line.
+		 */
+		int clip(double[] projected) {
+			partCount = 0;
+			currentSize = 0;
+			final double min = -BUFFER;
+			final double max = EXTENT + BUFFER;
+			for (int index = 2; index < projected.length; index += 2) {
+				final double x0 = (projected[index - 2] - tileX) * EXTENT;
+				final double y0 = (projected[index - 1] - tileY) * EXTENT;
+				final double x1 = (projected[index] - tileX) * EXTENT;
+				final double y1 = (projected[index + 1] - tileY) * EXTENT;
+				// Liang-Barsky
+				final double dx = x1 - x0;
+				final double dy = y1 - y0;
+				double t0 = 0;
+				double t1 = 1;
+				final double[] p = { -dx, dx, -dy, dy };
+				final double[] q = { x0 - min, max - x0, y0 - min, max - y0 };
+				boolean outside = false;
+				for (int edge = 0; edge < 4; edge++) {
+					if (p[edge] == 0) {
+						if (q[edge] < 0) {
+							outside = true;
+							break;
+						}
+					} else {
+						final double t = q[edge] / p[edge];
+						if (p[edge] < 0) {
+							t0 = Math.max(t0, t);
+						} else {
+							t1 = Math.min(t1, t);
+						}
+					}
+				}
+				if (outside || t0 > t1) {
+					endPart();
+					continue;
+				}
+				if (t0 > 0) {
+					// Entering the tile
+					endPart();
+				}
+				addPoint(x0 + t0 * dx, y0 + t0 * dy);
+				addPoint(x0 + t1 * dx, y0 + t1 * dy);
+				if (t1 < 1) {
+					// Leaving the tile
+					endPart();
+				}
+			}
+			endPart();
+			return partCount;
+		}
+
+		private void addPoint(double x, double y) {
+			final int tx = (int) Math.round(x);
+			final int ty = (int) Math.round(y);
+			if (currentSize >= 2 && current[currentSize - 2] == tx
+					&& current[currentSize - 1] == ty) {
+				return;
+			}
+			if (currentSize == current.length) {
+				current = Arrays.copyOf(current, 2 * currentSize);
+			}
+			current[currentSize++] = tx;
+			current[currentSize++] = ty;
+		}
+
+		private void endPart() {
+			if (currentSize >= 4) {
+				if (partCount == parts.length) {
+					parts = Arrays.copyOf(parts, 2 * partCount);
+				}
+				parts[partCount++] = Arrays.copyOf(current, currentSize);
+			}
+			currentSize = 0;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package com.graphhopper.reader.gtfs;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.graphhopper.util.PointList;
+
+public class BinaryRoadsFormatTest {
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		final PointList first = new PointList(3, false);
+		first.add(48.399368824050626, 9.984123929980187);
+		first.add(48.4012345, 9.9876543);
+		first.add(-33.8688197, 151.2092955);
+		final PointList second = new PointList(2, false);
+		second.add(48.4012345, 9.9876543);
+		second.add(48.4012345, 9.9876543);
+		final Roads roads = new Roads(Arrays.asList(new Road(30600, 2, first,
+				5), new Road(-60, 0, second, 1), new Road(0, 0, new PointList(
+				0, false), 1)));
+
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		try (BinaryRoadsWriter writer = new BinaryRoadsWriter(os, 6)) {
+			writer.write(roads);
+		}
+		final Roads readRoads = BinaryRoadsReader.read(new ByteArrayInputStream(
+				os.toByteArray()));
+
+		final List<Road> expected = new ArrayList<>(roads.getRoads());
+		final List<Road> actual = new ArrayList<>(readRoads.getRoads());
+		assertEquals(expected.size(), actual.size());
+		for (int index = 0; index < expected.size(); index++) {
+			final Road expectedRoad = expected.get(index);
+			final Road actualRoad = actual.get(index);
+			assertEquals(expectedRoad.getCurrentTime(),
+					actualRoad.getCurrentTime());
+			assertEquals(expectedRoad.getNumberOfTransfers(),
+					actualRoad.getNumberOfTransfers());
+			assertEquals(expectedRoad.getNumberOfThreads(),
+					actualRoad.getNumberOfThreads());
+			final PointList expectedPoints = expectedRoad.getPointList();
+			final PointList actualPoints = actualRoad.getPointList();
+			assertEquals(expectedPoints.size(), actualPoints.size());
+			for (int point = 0; point < expectedPoints.size(); point++) {
+				assertEquals(expectedPoints.getLat(point),
+						actualPoints.getLat(point), 0.5e-6);
+				assertEquals(expectedPoints.getLon(point),
+						actualPoints.getLon(point), 0.5e-6);
+			}
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package com.graphhopper.reader.gtfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LabelHeapTest {
+
+	@Test
+	public void testOrdering() {
+		final LabelHeap heap = new LabelHeap(2, false);
+		heap.add(0, 100, 1, 50);
+		heap.add(1, 100, 0, 60);
+		heap.add(2, 90, 3, 70);
+		heap.add(3, 100, 0, 55);
+		assertEquals(2, heap.poll());
+		assertEquals(3, heap.poll());
+		assertEquals(1, heap.poll());
+		assertEquals(0, heap.poll());
+		assertTrue(heap.isEmpty());
+	}
+
+	@Test
+	public void testReverseOrdering() {
+		final LabelHeap heap = new LabelHeap(2, true);
+		heap.add(0, 90, 0, 50);
+		heap.add(1, 100, 1, 60);
+		heap.add(2, 100, 1, 70);
+		assertEquals(2, heap.poll());
+		assertEquals(1, heap.poll());
+		assertEquals(0, heap.poll());
+	}
+
+	@Test
+	public void testIdsBeyondCapacity() {
+		final LabelHeap heap = new LabelHeap(2, false);
+		heap.add(Integer.MAX_VALUE - 1, 100, 0, 0);
+		heap.add(1 << 24, 90, 0, 0);
+		assertTrue(heap.contains(Integer.MAX_VALUE - 1));
+		assertTrue(heap.remove(1 << 24));
+		assertFalse(heap.contains(1 << 24));
+		assertEquals(Integer.MAX_VALUE - 1, heap.poll());
+		assertTrue(heap.isEmpty());
+	}
+
+	@Test
+	public void testRemove() {
+		final Random random = new Random(42);
+		final int count = 1000;
+		final LabelHeap heap = new LabelHeap(16, false);
+		final long[] times = new long[count];
+		for (int id = 0; id < count; id++) {
+			times[id] = random.nextInt(500);
+			heap.add(id, times[id], 0, 0);
+		}
+		for (int id = 0; id < count; id += 3) {
+			assertTrue(heap.remove(id));
+		}
+		assertFalse(heap.remove(0));
+		long lastTime = Long.MIN_VALUE;
+		int polled = 0;
+		while (!heap.isEmpty()) {
+			final int id = heap.poll();
+			assertTrue(id % 3 != 0);
+			assertTrue(times[id] >= lastTime);
+			lastTime = times[id];
+			polled++;
+		}
+		assertEquals(count - (count + 2) / 3, polled);
+	}
+}
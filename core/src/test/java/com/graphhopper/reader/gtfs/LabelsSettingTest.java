@@ -0,0 +1,310 @@
+package com.graphhopper.reader.gtfs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Searches over the graph of a small generated feed, imported once for all
+ * the tests.
+ */
+public class LabelsSettingTest {
+
+	/**
+	 * 08:00 on the first day of the generated feed, a Monday.
+	 */
+	private static final long DEPARTURE_TIME = 8 * 60 * 60;
+
+	private static final long MAX_TRAVEL_TIME = 60 * 60;
+
+	@ClassRule
+	public static final TemporaryFolder folder = new TemporaryFolder();
+
+	private static RoadsToGraphHopperGtfs graphHopper;
+	private static int startNode;
+
+	@BeforeClass
+	public static void init() throws IOException {
+		final File feed = folder.newFile("feed.zip");
+		final GtfsFeedGenerator generator = new GtfsFeedGenerator()
+				.preset(GtfsFeedGenerator.TOWN);
+		generator.write(feed);
+		graphHopper = RoadsToGraphHopperGtfs.createGraphHopperGtfs(new File(
+				folder.getRoot(), "graph").getPath(), feed.getPath(), true);
+		startNode = graphHopper.findClosestNode(generator.getCenterLat(),
+				generator.getCenterLon());
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		graphHopper.getGraphHopperStorage().close();
+	}
+
+	@Test
+	public void testSpilledSearchHasTheSameLabels() {
+		final SearchBounds bounds = new SearchBounds(MAX_TRAVEL_TIME,
+				Integer.MAX_VALUE, Long.MAX_VALUE);
+		// Room for a few labels, most of them are spilled
+		final SearchBounds spillingBounds = new SearchBounds(MAX_TRAVEL_TIME,
+				Integer.MAX_VALUE, Long.MAX_VALUE,
+				16 * MappedLabelArena.BYTES_PER_HEAP_LABEL);
+		final LabelsSetting search = createSearch(
+				RoadsToGraphHopperGtfs.MLS_ALGORITHM, bounds);
+		final LabelsSetting spillingSearch = createSearch(
+				RoadsToGraphHopperGtfs.MLS_ALGORITHM, spillingBounds);
+		try (LabelArena arena = search.getArena();
+				LabelArena spillingArena = spillingSearch.getArena()) {
+			assertTrue(arena instanceof ArrayLabelArena);
+			assertTrue(spillingArena instanceof MappedLabelArena);
+			final int[] labels = search.calcLabels(startNode, DEPARTURE_TIME,
+					DEPARTURE_TIME);
+			final int[] spilledLabels = spillingSearch.calcLabels(startNode,
+					DEPARTURE_TIME, DEPARTURE_TIME);
+			assertTrue(spillingArena.size() > 16);
+			Arrays.sort(labels);
+			Arrays.sort(spilledLabels);
+			assertArrayEquals(labels, spilledLabels);
+			for (int label : labels) {
+				assertEquals(arena.getCurrentTime(label),
+						spillingArena.getCurrentTime(label));
+				assertEquals(arena.getEdge(label), spillingArena.getEdge(label));
+				assertEquals(arena.getAdjNode(label),
+						spillingArena.getAdjNode(label));
+				assertEquals(arena.getNTransfers(label),
+						spillingArena.getNTransfers(label));
+				assertEquals(arena.getFirstPtDepartureTime(label),
+						spillingArena.getFirstPtDepartureTime(label));
+				assertEquals(arena.getParent(label),
+						spillingArena.getParent(label));
+			}
+		}
+	}
+
+	@Test
+	public void testEarlierDeparturesOnlyAddEarlierArrivals() {
+		final SearchBounds bounds = new SearchBounds(MAX_TRAVEL_TIME,
+				Integer.MAX_VALUE, Long.MAX_VALUE);
+		final long[] departures = createProfileSearch(bounds)
+				.collectDepartures(startNode, DEPARTURE_TIME,
+						DEPARTURE_TIME + 60 * 60);
+		assertTrue(departures.length > 2);
+		// A window of two departures, the later one is searched first
+		final long later = departures[0];
+		final long earlier = departures[1];
+		final ProfileLabelsSetting search = createProfileSearch(bounds);
+		final ProfileLabelsSetting laterSearch = createProfileSearch(bounds);
+		try (LabelArena arena = search.getArena();
+				LabelArena laterArena = laterSearch.getArena()) {
+			assertArrayEquals(new long[] { later, earlier },
+					search.collectDepartures(startNode, earlier, later));
+			final int[] labels = search.calcLabels(startNode, earlier, later);
+			final Map<Long, Long> laterTimes = times(laterArena,
+					laterSearch.calcLabels(startNode, later, later));
+
+			final Map<Long, Long> laterDepartureTimes = new HashMap<>();
+			boolean earlierLabels = false;
+			for (int label : labels) {
+				final long key = key(arena.getAdjNode(label),
+						arena.getNTransfers(label));
+				final long time = arena.getCurrentTime(label);
+				if (departureTime(arena, label) == later) {
+					laterDepartureTimes.put(key, time);
+					continue;
+				}
+				assertEquals(earlier, departureTime(arena, label));
+				earlierLabels = true;
+				for (int nTransfers = 0; nTransfers <= arena
+						.getNTransfers(label); nTransfers++) {
+					final Long laterTime = laterTimes.get(key(
+							arena.getAdjNode(label), nTransfers));
+					assertTrue(laterTime == null || time < laterTime);
+				}
+			}
+			assertEquals(laterTimes, laterDepartureTimes);
+			assertTrue(earlierLabels);
+		}
+	}
+
+	@Test
+	public void testProfileOfOneDepartureAgreesWithMultiCriteriaSearch() {
+		final int maxTransfers = 2;
+		final SearchBounds bounds = new SearchBounds(MAX_TRAVEL_TIME,
+				maxTransfers, Long.MAX_VALUE);
+		final LabelsSetting profileSearch = createSearch(
+				RoadsToGraphHopperGtfs.PROFILE_ALGORITHM, bounds);
+		final LabelsSetting search = createSearch(
+				RoadsToGraphHopperGtfs.MLS_ALGORITHM, bounds);
+		try (LabelArena profileArena = profileSearch.getArena();
+				LabelArena arena = search.getArena()) {
+			final Map<Long, Long> profileTimes = bestTimes(profileArena,
+					profileSearch.calcLabels(startNode, DEPARTURE_TIME,
+							DEPARTURE_TIME), maxTransfers);
+			final Map<Long, Long> times = bestTimes(arena, search.calcLabels(
+					startNode, DEPARTURE_TIME, DEPARTURE_TIME), maxTransfers);
+			assertFalse(times.isEmpty());
+			assertEquals(times, profileTimes);
+		}
+	}
+
+	@Test
+	public void testEarliestArrivalIsTheEarliestMultiCriteriaArrival() {
+		final SearchBounds bounds = new SearchBounds(MAX_TRAVEL_TIME,
+				Integer.MAX_VALUE, Long.MAX_VALUE);
+		final LabelsSetting earliestArrivalSearch = createSearch(
+				RoadsToGraphHopperGtfs.EARLIEST_ARRIVAL_ALGORITHM, bounds);
+		final LabelsSetting search = createSearch(
+				RoadsToGraphHopperGtfs.MLS_ALGORITHM, bounds);
+		try (LabelArena earliestArrivalArena = earliestArrivalSearch
+				.getArena(); LabelArena arena = search.getArena()) {
+			final Map<Long, Long> earliestArrivals = nodeTimes(
+					earliestArrivalArena, earliestArrivalSearch.calcLabels(
+							startNode, DEPARTURE_TIME, DEPARTURE_TIME));
+			final Map<Long, Long> arrivals = new HashMap<>();
+			for (int label : search.calcLabels(startNode, DEPARTURE_TIME,
+					DEPARTURE_TIME)) {
+				arrivals.merge((long) arena.getAdjNode(label),
+						arena.getCurrentTime(label), Math::min);
+			}
+			assertTrue(arrivals.size() > 1);
+			assertEquals(arrivals, earliestArrivals);
+		}
+	}
+
+	@Test
+	public void testBoundedSearchStaysWithinItsBounds() {
+		final long maxTravelTime = 15 * 60;
+		final SearchBounds bounds = new SearchBounds(MAX_TRAVEL_TIME,
+				Integer.MAX_VALUE, Long.MAX_VALUE);
+		final SearchBounds narrowBounds = new SearchBounds(maxTravelTime, 0,
+				Long.MAX_VALUE);
+		final LabelsSetting search = createSearch(
+				RoadsToGraphHopperGtfs.MLS_ALGORITHM, bounds);
+		final LabelsSetting narrowSearch = createSearch(
+				RoadsToGraphHopperGtfs.MLS_ALGORITHM, narrowBounds);
+		try (LabelArena arena = search.getArena();
+				LabelArena narrowArena = narrowSearch.getArena()) {
+			final int[] labels = search.calcLabels(startNode, DEPARTURE_TIME,
+					DEPARTURE_TIME);
+			final int[] narrowLabels = narrowSearch.calcLabels(startNode,
+					DEPARTURE_TIME, DEPARTURE_TIME);
+			assertTrue(narrowLabels.length > 1);
+			assertTrue(narrowLabels.length < labels.length);
+			for (int label : narrowLabels) {
+				assertTrue(narrowArena.getCurrentTime(label) <= DEPARTURE_TIME
+						+ maxTravelTime);
+				assertEquals(0, narrowArena.getNTransfers(label));
+			}
+			assertFalse(narrowSearch.isDeadlineReached());
+		}
+	}
+
+	@Test
+	public void testSearchCountsItsLabels() {
+		final SearchBounds bounds = new SearchBounds(MAX_TRAVEL_TIME,
+				Integer.MAX_VALUE, Long.MAX_VALUE);
+		final LabelsSetting search = createSearch(
+				RoadsToGraphHopperGtfs.MLS_ALGORITHM, bounds);
+		try (LabelArena arena = search.getArena()) {
+			final int[] labels = search.calcLabels(startNode, DEPARTURE_TIME,
+					DEPARTURE_TIME);
+			final QueryStatistics statistics = new QueryStatistics();
+			search.addStatistics(statistics);
+			// Every label but the one at the start node was created
+			assertEquals(arena.size(), statistics.getLabelsCreated() + 1);
+			assertEquals(labels.length, arena.size()
+					- statistics.getDominatedRemovals());
+			// Every label which was not dominated before it was polled is
+			// expanded
+			assertTrue(statistics.getVisitedNodes() > 1);
+			assertTrue(statistics.getVisitedNodes() <= arena.size());
+			// Walking back to the parent never improves on it
+			assertTrue(statistics.getLabelsRejected() > 0);
+			assertTrue(statistics.getPeakHeapSize() > 0);
+			assertTrue(statistics.getPeakLabelsPerNode() > 0);
+			assertFalse(statistics.isDeadlineReached());
+		}
+	}
+
+	private static ProfileLabelsSetting createProfileSearch(
+			SearchBounds bounds) {
+		return (ProfileLabelsSetting) createSearch(
+				RoadsToGraphHopperGtfs.PROFILE_ALGORITHM, bounds);
+	}
+
+	private static LabelsSetting createSearch(String algorithm,
+			SearchBounds bounds) {
+		return graphHopper.createLabelsSetting(algorithm, false,
+				Integer.MAX_VALUE, bounds);
+	}
+
+	/**
+	 * @return time per node and number of transfers of the labels, which
+	 *         must have one label per node and number of transfers.
+	 */
+	private static Map<Long, Long> times(LabelArena arena, int[] labels) {
+		final Map<Long, Long> times = new HashMap<>();
+		for (int label : labels) {
+			assertNull(times.put(
+					key(arena.getAdjNode(label), arena.getNTransfers(label)),
+					arena.getCurrentTime(label)));
+		}
+		return times;
+	}
+
+	/**
+	 * @return time per node of the labels, which must have one label per
+	 *         node.
+	 */
+	private static Map<Long, Long> nodeTimes(LabelArena arena, int[] labels) {
+		final Map<Long, Long> times = new HashMap<>();
+		for (int label : labels) {
+			assertNull(times.put((long) arena.getAdjNode(label),
+					arena.getCurrentTime(label)));
+		}
+		return times;
+	}
+
+	/**
+	 * @return earliest arrival per node with at most the given number of
+	 *         transfers, for every number up to the maximum.
+	 */
+	private static Map<Long, Long> bestTimes(LabelArena arena, int[] labels,
+			int maxTransfers) {
+		final Map<Long, Long> bestTimes = new HashMap<>();
+		for (int label : labels) {
+			for (int nTransfers = arena.getNTransfers(label); nTransfers <= maxTransfers; nTransfers++) {
+				bestTimes.merge(key(arena.getAdjNode(label), nTransfers),
+						arena.getCurrentTime(label), Math::min);
+			}
+		}
+		return bestTimes;
+	}
+
+	/**
+	 * @return time of the root of the chain of the label.
+	 */
+	private static long departureTime(LabelArena arena, int label) {
+		while (arena.getParent(label) != LabelArena.NO_LABEL) {
+			label = arena.getParent(label);
+		}
+		return arena.getCurrentTime(label);
+	}
+
+	private static long key(int node, int nTransfers) {
+		return ((long) node << 32) | nTransfers;
+	}
+}
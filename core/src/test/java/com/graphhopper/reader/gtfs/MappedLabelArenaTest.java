@@ -0,0 +1,152 @@
+package com.graphhopper.reader.gtfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.graphhopper.util.EdgeIterator;
+
+public class MappedLabelArenaTest {
+
+	@Test
+	public void testLabelsBeyondHeapAreSpilled() {
+		final MappedLabelArena arena = new MappedLabelArena(1, 2, null);
+		int parent = LabelArena.NO_LABEL;
+		for (int index = 0; index < 5; index++) {
+			final int id = arena.add(1000 + index, 10 + index, 20 + index,
+					index, 2000 + index, parent);
+			assertEquals(index, id);
+			parent = id;
+		}
+		assertEquals(5, arena.size());
+		assertEquals(3, arena.getSpilledLabels());
+
+		for (int id = 0; id < 5; id++) {
+			assertEquals(1000 + id, arena.getCurrentTime(id));
+			assertEquals(10 + id, arena.getEdge(id));
+			assertEquals(20 + id, arena.getAdjNode(id));
+			assertEquals(id, arena.getNTransfers(id));
+			assertEquals(2000 + id, arena.getFirstPtDepartureTime(id));
+			assertEquals(id - 1, arena.getParent(id));
+		}
+		arena.close();
+	}
+
+	@Test
+	public void testReleasedLabelsAreSpilled() {
+		final MappedLabelArena arena = new MappedLabelArena(1, 2, null);
+		final int first = arena.add(1000, 10, 20, 0, 2000,
+				LabelArena.NO_LABEL);
+		final int second = arena.add(1001, 11, 21, 1, 2001, first);
+		arena.setThreads(first, 3);
+		arena.release(first);
+		assertEquals(1, arena.getSpilledLabels());
+		assertEquals(1, arena.getHeapLabels());
+
+		// The released slot is taken by the next label
+		final int third = arena.add(1002, 12, 22, 2, 2002, second);
+		assertEquals(1, arena.getSpilledLabels());
+		assertEquals(2, arena.getHeapLabels());
+		final int fourth = arena.add(1003, 13, 23, 3, 2003, third);
+		assertEquals(2, arena.getSpilledLabels());
+		arena.setThreads(fourth, 5);
+
+		assertEquals(3, arena.getThreads(first));
+		assertEquals(0, arena.getThreads(second));
+		assertEquals(5, arena.getThreads(fourth));
+		for (int id : new int[] { first, second, third, fourth }) {
+			assertEquals(1000 + id, arena.getCurrentTime(id));
+			assertEquals(10 + id, arena.getEdge(id));
+			assertEquals(20 + id, arena.getAdjNode(id));
+			assertEquals(id, arena.getNTransfers(id));
+			assertEquals(2000 + id, arena.getFirstPtDepartureTime(id));
+			assertEquals(id - 1, arena.getParent(id));
+		}
+		arena.close();
+	}
+
+	@Test
+	public void testSearchKeepsOnlyFrontierWithinBudgetOnHeap() {
+		final Random random = new Random(42);
+		final int heapLabels = 64;
+		final int frontier = 32;
+		final int labels = 200000;
+		final MappedLabelArena arena = (MappedLabelArena) new SearchBounds(
+				Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE,
+				(long) heapLabels * MappedLabelArena.BYTES_PER_HEAP_LABEL)
+				.createArena(16);
+		final LabelHeap heap = new LabelHeap(16, false);
+		final int root = arena.add(0, EdgeIterator.NO_EDGE, 0, 0,
+				Long.MAX_VALUE, LabelArena.NO_LABEL);
+		heap.add(root, 0, 0, Long.MAX_VALUE);
+		while (arena.size() < labels) {
+			final int label = heap.poll();
+			final long currentTime = arena.getCurrentTime(label);
+			int firstChild = LabelArena.NO_LABEL;
+			for (int child = 0; child < 2; child++) {
+				final long time = currentTime + 1 + random.nextInt(60);
+				// The edge of a label is the id of its parent
+				final int id = arena.add(time, label, child, 0,
+						Long.MAX_VALUE, label);
+				heap.add(id, time, 0, Long.MAX_VALUE);
+				firstChild = child == 0 ? id : firstChild;
+			}
+			arena.release(label);
+			// The second child dominates the first beyond the frontier
+			if (heap.size() > frontier) {
+				heap.remove(firstChild);
+				arena.release(firstChild);
+			}
+			assertEquals(heap.size(), arena.getHeapLabels());
+			assertTrue(arena.getHeapLabels() <= heapLabels);
+		}
+
+		assertEquals(arena.size() - heap.size(), arena.getSpilledLabels());
+		for (int id = 1; id < arena.size(); id++) {
+			final int parent = arena.getParent(id);
+			assertEquals(parent, arena.getEdge(id));
+			assertTrue(arena.getCurrentTime(id) > arena
+					.getCurrentTime(parent));
+		}
+		arena.close();
+	}
+
+	@Test
+	public void testSpilledLabelsCrossSegments() {
+		final MappedLabelArena arena = new MappedLabelArena(1, 0, null);
+		final int labels = MappedLabelArena.SEGMENT_RECORDS
+				+ MappedLabelArena.INITIAL_SEGMENT_RECORDS + 1;
+		int parent = LabelArena.NO_LABEL;
+		for (int index = 0; index < labels; index++) {
+			final int id = arena.add(index, index, index, 0, index, parent);
+			parent = id;
+		}
+		assertEquals(labels, arena.getSpilledLabels());
+
+		// Records before and after the segment grew and across segments
+		for (int id : new int[] { 0,
+				MappedLabelArena.INITIAL_SEGMENT_RECORDS - 1,
+				MappedLabelArena.INITIAL_SEGMENT_RECORDS,
+				MappedLabelArena.SEGMENT_RECORDS - 1,
+				MappedLabelArena.SEGMENT_RECORDS, labels - 1 }) {
+			assertEquals(id, arena.getCurrentTime(id));
+			assertEquals(id, arena.getEdge(id));
+			assertEquals(id, arena.getAdjNode(id));
+			assertEquals(id, arena.getFirstPtDepartureTime(id));
+			assertEquals(id - 1, arena.getParent(id));
+		}
+		arena.close();
+	}
+
+	@Test
+	public void testUnboundedSearchKeepsLabelsOnHeap() {
+		final LabelArena arena = SearchBounds.UNBOUNDED.createArena(16);
+		assertEquals(ArrayLabelArena.class, arena.getClass());
+		final LabelArena boundedArena = new SearchBounds(Long.MAX_VALUE,
+				Integer.MAX_VALUE, Long.MAX_VALUE, 1 << 20).createArena(16);
+		assertEquals(MappedLabelArena.class, boundedArena.getClass());
+	}
+}
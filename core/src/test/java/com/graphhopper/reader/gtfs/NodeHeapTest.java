@@ -0,0 +1,57 @@
+package com.graphhopper.reader.gtfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class NodeHeapTest {
+
+	@Test
+	public void testIdsArePolledByKey() {
+		final NodeHeap heap = new NodeHeap(1);
+		heap.add(7, 300);
+		heap.add(3, 100);
+		heap.add(5, 200);
+		assertEquals(3, heap.size());
+		assertEquals(3, heap.poll());
+		assertFalse(heap.contains(3));
+		assertEquals(5, heap.poll());
+		assertEquals(7, heap.poll());
+		assertTrue(heap.isEmpty());
+	}
+
+	@Test
+	public void testDecreasedKeysMoveUp() {
+		final Random random = new Random(42);
+		final int count = 1000;
+		final NodeHeap heap = new NodeHeap(16);
+		final long[] keys = new long[count];
+		for (int id = 0; id < count; id++) {
+			keys[id] = 1000 + random.nextInt(1000);
+			heap.add(id, keys[id]);
+		}
+		for (int id = 0; id < count; id += 3) {
+			keys[id] -= random.nextInt(1000);
+			heap.decreaseKey(id, keys[id]);
+		}
+		final long[] sorted = keys.clone();
+		Arrays.sort(sorted);
+		for (int index = 0; index < count; index++) {
+			final int id = heap.poll();
+			assertEquals(sorted[index], keys[id]);
+		}
+		assertTrue(heap.isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testKeysMustNotIncrease() {
+		final NodeHeap heap = new NodeHeap(4);
+		heap.add(0, 100);
+		heap.decreaseKey(0, 200);
+	}
+}
@@ -0,0 +1,250 @@
+package com.graphhopper.reader.gtfs;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.EdgeIterator;
+
+public class RoadBuilderTest {
+
+	private GraphHopperStorage storage;
+	private int firstEdge;
+	private int secondEdge;
+
+	@Before
+	public void setUp() {
+		storage = new GraphBuilder(new EncodingManager("car")).create();
+		final NodeAccess nodeAccess = storage.getNodeAccess();
+		nodeAccess.setNode(0, 48.40, 9.98);
+		nodeAccess.setNode(1, 48.41, 9.99);
+		nodeAccess.setNode(2, 48.42, 10.00);
+		firstEdge = storage.edge(0, 1, 740, true).getEdge();
+		secondEdge = storage.edge(1, 2, 740, true).getEdge();
+	}
+
+	@Test
+	public void testRoadsLeadAwayFromOrigin() {
+		assertRoadsLeadAwayFromOrigin(new ArrayLabelArena());
+	}
+
+	@Test
+	public void testRoadsAreBuiltThroughSpilledParents() {
+		try (LabelArena arena = new MappedLabelArena(1, 1, null)) {
+			assertRoadsLeadAwayFromOrigin(arena);
+		}
+	}
+
+	private void assertRoadsLeadAwayFromOrigin(LabelArena arena) {
+		final int origin = arena.add(0, EdgeIterator.NO_EDGE, 0, 0,
+				Long.MAX_VALUE, LabelArena.NO_LABEL);
+		final int first = arena.add(600, firstEdge, 1, 0, Long.MAX_VALUE,
+				origin);
+		final int second = arena.add(1200, secondEdge, 2, 0, Long.MAX_VALUE,
+				first);
+		final RoadBuilder roadBuilder = new RoadBuilder(storage, arena);
+		for (int label : new int[] { origin, first, second }) {
+			roadBuilder.addLabel(label);
+		}
+
+		final List<Road> roads = sortedRoads(roadBuilder.buildRoads());
+		assertEquals(2, roads.size());
+		assertRoad(roads.get(0), 600, 9.98, 9.99, 2);
+		assertRoad(roads.get(1), 1200, 9.99, 10.00, 1);
+	}
+
+	@Test
+	public void testEqualSegmentsOfDifferentChainsAddTheirThreads() {
+		final LabelArena arena = new ArrayLabelArena();
+		final int origin = arena.add(0, EdgeIterator.NO_EDGE, 0, 0,
+				Long.MAX_VALUE, LabelArena.NO_LABEL);
+		final int first = arena.add(600, firstEdge, 1, 0, Long.MAX_VALUE,
+				origin);
+		// Same arrival over the same edge with a transfer, only kept as the
+		// parent of the second label
+		final int transferred = arena.add(600, firstEdge, 1, 1,
+				Long.MAX_VALUE, origin);
+		final int second = arena.add(1200, secondEdge, 2, 1, Long.MAX_VALUE,
+				transferred);
+		final RoadBuilder roadBuilder = new RoadBuilder(storage, arena);
+		for (int label : new int[] { origin, first, transferred, second }) {
+			roadBuilder.addLabel(label);
+		}
+
+		final List<Road> roads = sortedRoads(roadBuilder.buildRoads());
+		assertEquals(2, roads.size());
+		assertRoad(roads.get(0), 600, 9.98, 9.99, 2);
+		assertRoad(roads.get(1), 1200, 9.99, 10.00, 1);
+	}
+
+	@Test
+	public void testRoadsLeadToDestinationInReverse() {
+		final LabelArena arena = new ArrayLabelArena();
+		final int destination = arena.add(1200, EdgeIterator.NO_EDGE, 2, 0,
+				Long.MAX_VALUE, LabelArena.NO_LABEL);
+		final int first = arena.add(600, secondEdge, 1, 0, Long.MAX_VALUE,
+				destination);
+		final int second = arena.add(0, firstEdge, 0, 0, Long.MAX_VALUE,
+				first);
+		// An earlier departure from the same location is left out
+		final int earlier = arena.add(-60, firstEdge, 0, 0, Long.MAX_VALUE,
+				first);
+		final RoadBuilder roadBuilder = new RoadBuilder(storage, arena, true);
+		for (int label : new int[] { destination, first, second, earlier }) {
+			roadBuilder.addLabel(label);
+		}
+
+		final List<Road> roads = sortedRoads(roadBuilder.buildRoads());
+		assertEquals(2, roads.size());
+		assertRoad(roads.get(0), 0, 9.98, 9.99, 1);
+		assertRoad(roads.get(1), 600, 9.99, 10.00, 2);
+	}
+
+	@Test
+	public void testRoadsArePassedOnAsLabelsAreSettled() {
+		final LabelArena arena = new ArrayLabelArena();
+		final List<Road> roads = new ArrayList<>();
+		final IncrementalRoadBuilder roadBuilder = new IncrementalRoadBuilder(
+				storage, arena, false, roads::add);
+		final int origin = arena.add(0, EdgeIterator.NO_EDGE, 0, 0,
+				Long.MAX_VALUE, LabelArena.NO_LABEL);
+		roadBuilder.addLabel(origin);
+		assertEquals(0, roads.size());
+
+		final int first = arena.add(600, firstEdge, 1, 0, Long.MAX_VALUE,
+				origin);
+		roadBuilder.addLabel(first);
+		assertEquals(1, roads.size());
+		assertRoad(roads.get(0), 600, 9.98, 9.99, 1);
+
+		// A later arrival at the same location is left out
+		final int later = arena.add(660, firstEdge, 1, 1, Long.MAX_VALUE,
+				origin);
+		roadBuilder.addLabel(later);
+		assertEquals(1, roads.size());
+
+		final int second = arena.add(1200, secondEdge, 2, 0, Long.MAX_VALUE,
+				first);
+		roadBuilder.addLabel(second);
+		assertEquals(2, roads.size());
+		assertRoad(roads.get(1), 1200, 9.99, 10.00, 1);
+	}
+
+	@Test
+	public void testStreamedRoadsLeadToDestinationInReverse() {
+		final LabelArena arena = new ArrayLabelArena();
+		final List<Road> roads = new ArrayList<>();
+		final IncrementalRoadBuilder roadBuilder = new IncrementalRoadBuilder(
+				storage, arena, true, roads::add);
+		final int destination = arena.add(1200, EdgeIterator.NO_EDGE, 2, 0,
+				Long.MAX_VALUE, LabelArena.NO_LABEL);
+		final int first = arena.add(600, secondEdge, 1, 0, Long.MAX_VALUE,
+				destination);
+		final int second = arena.add(0, firstEdge, 0, 0, Long.MAX_VALUE,
+				first);
+		// Settling the farther label first builds its whole chain
+		roadBuilder.addLabel(second);
+		roadBuilder.addLabel(first);
+		roadBuilder.addLabel(destination);
+
+		assertEquals(2, roads.size());
+		assertRoad(roads.get(0), 0, 9.98, 9.99, 1);
+		assertRoad(roads.get(1), 600, 9.99, 10.00, 1);
+	}
+
+	@Test
+	public void testStreamedAndBuiltRoadsHaveTheSamePoints() {
+		// Same latitude as node 2
+		storage.getNodeAccess().setNode(3, 48.42, 10.01);
+		final int thirdEdge = storage.edge(2, 3, 740, true).getEdge();
+		final LabelArena arena = new ArrayLabelArena();
+		final int origin = arena.add(0, EdgeIterator.NO_EDGE, 0, 0,
+				Long.MAX_VALUE, LabelArena.NO_LABEL);
+		final int first = arena.add(600, firstEdge, 1, 0, Long.MAX_VALUE,
+				origin);
+		final int second = arena.add(1200, secondEdge, 2, 0, Long.MAX_VALUE,
+				first);
+		final int third = arena.add(1800, thirdEdge, 3, 0, Long.MAX_VALUE,
+				second);
+		final int[] labels = { origin, first, second, third };
+		final RoadBuilder roadBuilder = new RoadBuilder(storage, arena);
+		final List<Road> streamedRoads = new ArrayList<>();
+		final IncrementalRoadBuilder incrementalRoadBuilder = new IncrementalRoadBuilder(
+				storage, arena, false, streamedRoads::add);
+		for (int label : labels) {
+			roadBuilder.addLabel(label);
+			incrementalRoadBuilder.addLabel(label);
+		}
+
+		// Roads of the second and third label start at the same point
+		final Comparator<Road> byEnd = Comparator.comparingDouble(road -> road
+				.getPointList().getLon(road.getPointList().size() - 1));
+		final List<Road> builtRoads = new ArrayList<>(roadBuilder
+				.buildRoads().getRoads());
+		builtRoads.sort(byEnd);
+		streamedRoads.sort(byEnd);
+		assertEquals(3, builtRoads.size());
+		assertEquals(builtRoads.size(), streamedRoads.size());
+		for (int index = 0; index < builtRoads.size(); index++) {
+			assertEquals(builtRoads.get(index).getPointList(), streamedRoads
+					.get(index).getPointList());
+		}
+	}
+
+	@Test
+	public void testChainsOfOnePointHaveNoRoads() {
+		// Same latitude as node 0, the chain collapses to node 3
+		storage.getNodeAccess().setNode(3, 48.40, 9.97);
+		final int thirdEdge = storage.edge(0, 3, 740, true).getEdge();
+		final LabelArena arena = new ArrayLabelArena();
+		final int origin = arena.add(0, EdgeIterator.NO_EDGE, 0, 0,
+				Long.MAX_VALUE, LabelArena.NO_LABEL);
+		final int first = arena.add(600, firstEdge, 1, 0, Long.MAX_VALUE,
+				origin);
+		final int third = arena.add(600, thirdEdge, 3, 0, Long.MAX_VALUE,
+				origin);
+		final int[] labels = { origin, first, third };
+		final RoadBuilder roadBuilder = new RoadBuilder(storage, arena);
+		for (int label : labels) {
+			roadBuilder.addLabel(label);
+		}
+		final List<Road> roads = sortedRoads(roadBuilder.buildRoads());
+		assertEquals(1, roads.size());
+		assertRoad(roads.get(0), 600, 9.98, 9.99, 1);
+
+		// Building the roads has reset the threads of the arena
+		final List<Road> streamedRoads = new ArrayList<>();
+		final IncrementalRoadBuilder incrementalRoadBuilder = new IncrementalRoadBuilder(
+				storage, arena, false, streamedRoads::add);
+		for (int label : labels) {
+			incrementalRoadBuilder.addLabel(label);
+		}
+		assertEquals(1, streamedRoads.size());
+		assertRoad(streamedRoads.get(0), 600, 9.98, 9.99, 1);
+	}
+
+	private static List<Road> sortedRoads(Roads roads) {
+		final List<Road> sorted = new ArrayList<>(roads.getRoads());
+		sorted.sort(Comparator.comparingDouble(road -> road.getPointList()
+				.getLon(0)));
+		return sorted;
+	}
+
+	private static void assertRoad(Road road, long currentTime, double fromLon,
+			double toLon, int numberOfThreads) {
+		assertEquals(currentTime, road.getCurrentTime());
+		assertEquals(2, road.getPointList().size());
+		assertEquals(fromLon, road.getPointList().getLon(0), 1e-6);
+		assertEquals(toLon, road.getPointList().getLon(1), 1e-6);
+		assertEquals(numberOfThreads, road.getNumberOfThreads());
+	}
+}
@@ -0,0 +1,137 @@
+package com.graphhopper.reader.gtfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+
+public class RoadsCacheTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testLeastRecentlyUsedRoadsAreEvicted() {
+		final RoadsCache cache = new RoadsCache(2);
+		final Roads first = roads(600);
+		final Roads second = roads(1200);
+		cache.put(key(0), first);
+		cache.put(key(1), second);
+		// Using the first roads makes the second the eldest
+		assertSame(first, cache.get(key(0)));
+		cache.put(key(2), roads(1800));
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertNull(cache.get(key(1)));
+		assertSame(first, cache.get(key(0)));
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testRoadsAreReadBackFromDisk() throws IOException {
+		final RoadsCache cache = new RoadsCache(1, folder.getRoot());
+		cache.put(key(0), roads(600));
+
+		// A new cache over the same directory, as after a restart
+		final RoadsCache restartedCache = new RoadsCache(1, folder.getRoot());
+		final Roads roads = restartedCache.get(key(0));
+		assertEquals(1, restartedCache.getDiskHits());
+		assertEquals(1, roads.getRoads().size());
+		final Road road = roads.getRoads().iterator().next();
+		assertEquals(600, road.getCurrentTime());
+		assertEquals(1, road.getNumberOfTransfers());
+		assertEquals(2, road.getPointList().size());
+		assertEquals(48.40, road.getPointList().getLat(0), 1e-6);
+		assertEquals(9.99, road.getPointList().getLon(1), 1e-6);
+		assertNull(restartedCache.get(key(1)));
+
+		// Roads read from disk are kept in memory
+		assertSame(roads, restartedCache.get(key(0)));
+		assertEquals(1, restartedCache.getHits());
+	}
+
+	@Test
+	public void testRoadsFromMemoryAndDiskHaveTheSamePoints() {
+		// Coordinates as the graph stores them
+		final PointList pointList = new PointList(3, false);
+		pointList.add(Helper.intToDegree(484012345),
+				Helper.intToDegree(99876543));
+		pointList.add(Helper.intToDegree(-337654321),
+				Helper.intToDegree(-1512345679));
+		pointList.add(Helper.intToDegree(1), Helper.intToDegree(-1));
+		final RoadsCache cache = new RoadsCache(1, folder.getRoot());
+		cache.put(key(0), new Roads(Collections.singleton(new Road(600, 0,
+				pointList, 1))));
+
+		final PointList memoryPoints = cache.get(key(0)).getRoads()
+				.iterator().next().getPointList();
+		final RoadsCache restartedCache = new RoadsCache(1, folder.getRoot());
+		final PointList diskPoints = restartedCache.get(key(0)).getRoads()
+				.iterator().next().getPointList();
+		assertEquals(1, restartedCache.getDiskHits());
+		assertEquals(memoryPoints.size(), diskPoints.size());
+		for (int index = 0; index < memoryPoints.size(); index++) {
+			assertEquals(memoryPoints.getLat(index), diskPoints.getLat(index),
+					0);
+			assertEquals(memoryPoints.getLon(index), diskPoints.getLon(index),
+					0);
+		}
+	}
+
+	@Test
+	public void testKeysDifferInEveryField() {
+		final RoadsCache.Key key = key(0);
+		final List<RoadsCache.Key> others = new ArrayList<>();
+		others.add(new RoadsCache.Key(1, 0, 3600, false, 1000, "range",
+				7200, 3));
+		others.add(new RoadsCache.Key(0, 60, 3600, false, 1000, "range",
+				7200, 3));
+		others.add(new RoadsCache.Key(0, 0, 3660, false, 1000, "range",
+				7200, 3));
+		others.add(new RoadsCache.Key(0, 0, 3600, true, 1000, "range",
+				7200, 3));
+		others.add(new RoadsCache.Key(0, 0, 3600, false, 1001, "range",
+				7200, 3));
+		others.add(new RoadsCache.Key(0, 0, 3600, false, 1000, "profile",
+				7200, 3));
+		others.add(new RoadsCache.Key(0, 0, 3600, false, 1000, "range",
+				7260, 3));
+		others.add(new RoadsCache.Key(0, 0, 3600, false, 1000, "range",
+				7200, 4));
+
+		assertEquals(key, key(0));
+		assertEquals(key.hashCode(), key(0).hashCode());
+		for (RoadsCache.Key other : others) {
+			assertNotEquals(key, other);
+			assertNotEquals(key.hashCode(), other.hashCode());
+			assertNotEquals(key.toFileName(), other.toFileName());
+		}
+	}
+
+	private static RoadsCache.Key key(int startNode) {
+		return new RoadsCache.Key(startNode, 0, 3600, false, 1000, "range",
+				7200, 3);
+	}
+
+	private static Roads roads(long currentTime) {
+		final PointList pointList = new PointList(2, false);
+		pointList.add(48.40, 9.98);
+		pointList.add(48.41, 9.99);
+		return new Roads(Collections.singleton(new Road(currentTime, 1,
+				pointList, 1)));
+	}
+}
@@ -0,0 +1,93 @@
+package com.graphhopper.reader.gtfs;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.graphhopper.util.PointList;
+
+public class RoadsSimplifierTest {
+
+	@Test
+	public void testMergesCollinearSegments() {
+		final PointList pointList = new PointList(4, false);
+		pointList.add(48.1, 9.1);
+		pointList.add(48.2, 9.2);
+		pointList.add(48.3, 9.3);
+		pointList.add(48.3, 9.4);
+		final PointList simplified = new RoadsSimplifier(0, 5)
+				.simplify(pointList);
+		assertEquals(3, simplified.size());
+		assertEquals(48.1, simplified.getLat(0), 0);
+		assertEquals(48.3, simplified.getLat(1), 0);
+		assertEquals(9.3, simplified.getLon(1), 0);
+		assertEquals(9.4, simplified.getLon(2), 0);
+	}
+
+	@Test
+	public void testMergesCollinearSegmentsAtFullPrecision() {
+		final PointList pointList = new PointList(4, false);
+		pointList.add(48.1, 9.1);
+		pointList.add(48.2, 9.2);
+		pointList.add(48.3, 9.3);
+		// About 1 m off the straight line
+		pointList.add(48.4, 9.40001);
+		final PointList simplified = new RoadsSimplifier(0, -1)
+				.simplify(pointList);
+		assertEquals(3, simplified.size());
+		assertEquals(48.3, simplified.getLat(1), 0);
+		assertEquals(9.3, simplified.getLon(1), 0);
+		assertEquals(9.40001, simplified.getLon(2), 0);
+	}
+
+	@Test
+	public void testKeepsTurningBack() {
+		final PointList pointList = new PointList(3, false);
+		pointList.add(48.1, 9.1);
+		pointList.add(48.2, 9.2);
+		pointList.add(48.1, 9.1);
+		assertEquals(3, new RoadsSimplifier(0, 5).simplify(pointList).size());
+	}
+
+	@Test
+	public void testQuantizesAndDropsCollapsedRoads() {
+		final PointList first = new PointList(3, false);
+		first.add(48.123456, 9.987654);
+		first.add(48.123457, 9.987653);
+		first.add(48.2, 9.9);
+		final PointList second = new PointList(2, false);
+		second.add(48.123456, 9.987654);
+		second.add(48.123461, 9.987651);
+		final Roads roads = new RoadsSimplifier(0, 4).simplify(new Roads(
+				Arrays.asList(new Road(30600, 2, first, 5), new Road(30660,
+						1, second, 1))));
+
+		final List<Road> simplified = new ArrayList<>(roads.getRoads());
+		assertEquals(1, simplified.size());
+		final Road road = simplified.get(0);
+		assertEquals(30600, road.getCurrentTime());
+		assertEquals(2, road.getNumberOfTransfers());
+		assertEquals(5, road.getNumberOfThreads());
+		assertEquals(2, road.getPointList().size());
+		assertEquals(48.1235, road.getPointList().getLat(0), 0);
+		assertEquals(9.9877, road.getPointList().getLon(0), 0);
+		// The original roads are not changed
+		assertEquals(3, first.size());
+		assertEquals(48.123456, first.getLat(0), 0);
+	}
+
+	@Test
+	public void testDouglasPeucker() {
+		final PointList pointList = new PointList(3, false);
+		pointList.add(48.4, 9.9);
+		// About 1 m off the straight line
+		pointList.add(48.40001, 9.95);
+		pointList.add(48.4, 10.0);
+		assertEquals(3, new RoadsSimplifier(0, -1).simplify(pointList).size());
+		assertEquals(2, new RoadsSimplifier(5, -1).simplify(pointList).size());
+	}
+}
@@ -0,0 +1,86 @@
+package com.graphhopper.reader.gtfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.graphhopper.storage.DAType;
+
+public class RoadsToGraphHopperGtfsTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testGtfsFilesAreSplitAtCommas() {
+		assertEquals(Arrays.asList("first.zip", "second.zip"),
+				RoadsToGraphHopperGtfs
+						.splitGtfsFiles(" first.zip, ,second.zip,"));
+	}
+
+	@Test
+	public void testSeveralFeedsAreImportedIntoOneGraph() throws IOException {
+		final File firstFeed = writeFeed("first.zip", 1);
+		final File secondFeed = writeFeed("second.zip", 2);
+		final String singleFolder = new File(folder.getRoot(), "single")
+				.getPath();
+		final String bothFolder = new File(folder.getRoot(), "both").getPath();
+
+		final int singleNodes = countNodes(RoadsToGraphHopperGtfs
+				.createGraphHopperGtfs(singleFolder,
+						Collections.singletonList(firstFeed.getPath()), true,
+						DAType.RAM_STORE, 2));
+		final int bothNodes = countNodes(RoadsToGraphHopperGtfs
+				.createGraphHopperGtfs(bothFolder,
+						Arrays.asList(firstFeed.getPath(), secondFeed.getPath()),
+						true, DAType.RAM_STORE, 2));
+		assertTrue(singleNodes > 0);
+		assertTrue(bothNodes > singleNodes);
+
+		// The second start loads the imported graph
+		assertEquals(bothNodes, countNodes(RoadsToGraphHopperGtfs
+				.createGraphHopperGtfs(bothFolder, Collections.emptyList(),
+						true, DAType.RAM_STORE, 2)));
+	}
+
+	@Test
+	public void testLocationIndexIsLoadedOnFirstUse() throws IOException {
+		final File feed = writeFeed("feed.zip", 1);
+		final RoadsToGraphHopperGtfs graphHopper = RoadsToGraphHopperGtfs
+				.createGraphHopperGtfs(new File(folder.getRoot(), "graph")
+						.getPath(), feed.getPath(), true);
+		try {
+			assertEquals(0, graphHopper.getLocationIndexLoadNanos());
+			assertTrue(graphHopper.findClosestNode(48.4, 9.99) >= 0);
+			final long loadNanos = graphHopper.getLocationIndexLoadNanos();
+			assertTrue(loadNanos > 0);
+			graphHopper.findClosestNode(48.4, 9.99);
+			assertEquals(loadNanos, graphHopper.getLocationIndexLoadNanos());
+		} finally {
+			graphHopper.getGraphHopperStorage().close();
+		}
+	}
+
+	private File writeFeed(String name, long seed) throws IOException {
+		final File feed = folder.newFile(name);
+		new GtfsFeedGenerator().preset(GtfsFeedGenerator.TOWN).seed(seed)
+				.write(feed);
+		return feed;
+	}
+
+	private static int countNodes(RoadsToGraphHopperGtfs graphHopper) {
+		try {
+			return graphHopper.getGraphHopperStorage().getNodes();
+		} finally {
+			graphHopper.getGraphHopperStorage().close();
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.util.CmdArgs;
+
+/**
+ * Compares query latency and memory footprint of the graph data access types.
+ * <p>
+ * RSS is only meaningful per process, so the benchmark measures one data
+ * access type per run. Run it once per type against the same prepared graph,
+ * for instance:
+ *
+ * <pre>
+ * java -Xmx1G ... RunDataAccessBenchmark -graph.location=data/swu -gtfs.file=files/swu.zip -graph.dataaccess=RAM_STORE
+ * java -Xmx1G ... RunDataAccessBenchmark -graph.location=data/swu -gtfs.file=files/swu.zip -graph.dataaccess=MMAP
+ * </pre>
+ */
+public class RunDataAccessBenchmark {
+
+	public static void main(String[] strs) {
+		final CmdArgs args = CmdArgs.read(strs);
+		final String graphLocation = args.get("graph.location", "data/swu");
+		final String gtfsFile = args.get("gtfs.file", "files/swu.zip");
+		final DAType dataAccessType = DAType.fromString(args.get(
+				"graph.dataaccess", DAType.RAM_STORE.toString()));
+		final double lat = args.getDouble("fromlat", 48.399368824050626);
+		final double lon = args.getDouble("fromlon", 9.984123929980187);
+		final int warmups = args.getInt("warmups", 3);
+		final int queries = args.getInt("queries", 10);
+
+		final long loadStart = System.nanoTime();
+		final RoadsToGraphHopperGtfs graphHopper = RoadsToGraphHopperGtfs
+				.createGraphHopperGtfs(graphLocation, gtfsFile, true,
+						dataAccessType);
+		final long loadTime = System.nanoTime() - loadStart;
+		report(dataAccessType, "after load", loadTime);
+
+		final long firstQueryStart = System.nanoTime();
+		graphHopper.roadsFrom(lat, lon);
+		report(dataAccessType, "after first query", System.nanoTime()
+				- firstQueryStart);
+
+		for (int index = 0; index < warmups; index++) {
+			graphHopper.roadsFrom(lat, lon);
+		}
+
+		final long[] latencies = new long[queries];
+		for (int index = 0; index < queries; index++) {
+			final long start = System.nanoTime();
+			graphHopper.roadsFrom(lat, lon);
+			latencies[index] = System.nanoTime() - start;
+		}
+		Arrays.sort(latencies);
+		System.out.println(MessageFormat.format(
+				"{0}: {1} queries, median {2} ms, min {3} ms, max {4} ms.",
+				dataAccessType, queries, millis(latencies[queries / 2]),
+				millis(latencies[0]), millis(latencies[queries - 1])));
+		report(dataAccessType, "after queries", 0);
+	}
+
+	private static void report(DAType dataAccessType, String stage, long time) {
+		final Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		final long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+		System.out.println(MessageFormat.format(
+				"{0} {1}: took {2} ms, heap used {3} MB, RSS {4} MB.",
+				dataAccessType, stage, millis(time), heapUsed >> 20,
+				readResidentSetSize() >> 20));
+	}
+
+	private static long readResidentSetSize() {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream("/proc/self/status"),
+				StandardCharsets.US_ASCII))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("VmRSS:")) {
+					final String[] parts = line.trim().split("\\s+");
+					return Long.parseLong(parts[1]) << 10;
+				}
+			}
+		} catch (IOException ioex) {
+			// Not on Linux
+		}
+		return -1;
+	}
+
+	private static long millis(long nanos) {
+		return nanos / 1000000;
+	}
+}
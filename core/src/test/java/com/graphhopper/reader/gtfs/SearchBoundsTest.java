@@ -0,0 +1,45 @@
+package com.graphhopper.reader.gtfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SearchBoundsTest {
+
+	@Test
+	public void testUnboundedSearchHasNoTimeLimit() {
+		assertEquals(Long.MAX_VALUE,
+				SearchBounds.UNBOUNDED.getTimeLimit(100, 200, false));
+		assertEquals(Long.MIN_VALUE,
+				SearchBounds.UNBOUNDED.getTimeLimit(200, 100, true));
+	}
+
+	@Test
+	public void testTimeLimitIsCountedFromTheEndOfTheWindow() {
+		final SearchBounds bounds = new SearchBounds(60, Integer.MAX_VALUE,
+				Long.MAX_VALUE);
+		assertEquals(260, bounds.getTimeLimit(100, 200, false));
+		// A reverse search runs from the latest arrival to the earliest
+		assertEquals(40, bounds.getTimeLimit(200, 100, true));
+	}
+
+	@Test
+	public void testDeadlineIsCheckedEveryInterval() {
+		final SearchBounds bounds = new SearchBounds(Long.MAX_VALUE,
+				Integer.MAX_VALUE, 0);
+		assertFalse(bounds.isDeadlineReached(1));
+		assertFalse(bounds
+				.isDeadlineReached(SearchBounds.DEADLINE_CHECK_INTERVAL - 1));
+		assertTrue(bounds
+				.isDeadlineReached(SearchBounds.DEADLINE_CHECK_INTERVAL));
+		assertFalse(SearchBounds.UNBOUNDED
+				.isDeadlineReached(SearchBounds.DEADLINE_CHECK_INTERVAL));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeBoundsAreRejected() {
+		new SearchBounds(-1, Integer.MAX_VALUE, Long.MAX_VALUE);
+	}
+}
@@ -0,0 +1,43 @@
+package com.graphhopper.reader.gtfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.json.JsonObject;
+
+import org.junit.Test;
+
+public class StartupReportTest {
+
+	@Test
+	public void testPhasesAreReportedInOrder() {
+		final StartupReport report = new StartupReport();
+		report.phase("load", TimeUnit.MILLISECONDS.toNanos(20));
+		report.phase("index", TimeUnit.MILLISECONDS.toNanos(5));
+
+		final JsonObject json = report.toJsonObject();
+		final long jvmMillis = json.getJsonNumber("jvm").longValue();
+		assertEquals(20, json.getJsonNumber("load").longValue());
+		assertEquals(5, json.getJsonNumber("index").longValue());
+		assertEquals(jvmMillis + 25, report.getTotalMillis());
+		assertEquals(report.getTotalMillis(), json.getJsonNumber("total")
+				.longValue());
+		assertEquals("Startup: jvm " + jvmMillis
+				+ " ms, load 20 ms, index 5 ms, total "
+				+ report.getTotalMillis() + " ms.", report.toString());
+	}
+
+	@Test
+	public void testPhaseEndsAtTheNextPhase() throws InterruptedException {
+		final StartupReport report = new StartupReport();
+		Thread.sleep(10);
+		report.phase("first");
+		report.phase("second");
+		final JsonObject json = report.toJsonObject();
+		assertTrue(json.getJsonNumber("first").longValue() >= 10);
+		assertTrue(json.getJsonNumber("second").longValue() < json
+				.getJsonNumber("first").longValue());
+	}
+}
@@ -0,0 +1,117 @@
+package com.graphhopper.reader.gtfs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+
+import org.junit.Test;
+
+public class TravelTimeGridTest {
+
+	private static final float N = Float.NaN;
+
+	@Test
+	public void testWritesAndReadsGrid() throws IOException {
+		final TravelTimeGrid grid = new TravelTimeGrid(9.9, 48.5, 0.002,
+				0.001, 3, 2, new float[] { 60, 120, N, 180.5f, 240, 300 });
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		TravelTimeGridWriter.write(grid, os);
+		assertEquals(4 + 1 + 4 * 8 + 2 * 4 + 6 * 4, os.size());
+
+		final TravelTimeGrid read = TravelTimeGridReader
+				.read(new ByteArrayInputStream(os.toByteArray()));
+		assertEquals(9.9, read.getWest(), 0);
+		assertEquals(48.5, read.getNorth(), 0);
+		assertEquals(0.002, read.getCellWidth(), 0);
+		assertEquals(0.001, read.getCellHeight(), 0);
+		assertEquals(3, read.getColumns());
+		assertEquals(2, read.getRows());
+		assertTrue(Float.isNaN(read.getValue(2, 0)));
+		assertEquals(180.5f, read.getValue(0, 1), 0);
+		assertEquals(48.4995, read.getLat(0), 1e-9);
+		assertEquals(9.905, read.getLon(2), 1e-9);
+	}
+
+	@Test
+	public void testTracesOuterRingsAndHoles() {
+		// A ring of cells around an unreachable cell and a cell touching it
+		// at a corner
+		final TravelTimeGrid grid = new TravelTimeGrid(0, 0, 1, 1, 4, 4,
+				new float[] {
+						60, 60, 60, N,
+						60, N, 60, N,
+						60, 60, 60, N,
+						N, N, N, 60 });
+		final List<List<int[]>> polygons = IsochronesWriter.polygons(grid,
+				60);
+		assertEquals(2, polygons.size());
+		final List<int[]> ring = polygons.get(0).size() == 2 ? polygons
+				.get(0) : polygons.get(1);
+		final List<int[]> single = polygons.get(0).size() == 2 ? polygons
+				.get(1) : polygons.get(0);
+		assertEquals(2, ring.size());
+		assertEquals(8, ring.get(0).length);
+		assertEquals(8, ring.get(1).length);
+		assertArrayEquals(new int[] { 1, 1, 2, 1, 2, 2, 1, 2 }, sort(ring
+				.get(1), 1, 1));
+		assertEquals(1, single.size());
+		assertEquals(8, single.get(0).length);
+
+		// Nothing can be reached within 30 seconds
+		assertEquals(0, IsochronesWriter.polygons(grid, 30).size());
+	}
+
+	@Test
+	public void testWritesMultiPolygons() throws IOException {
+		final TravelTimeGrid grid = new TravelTimeGrid(9.9, 48.5, 0.002,
+				0.001, 2, 1, new float[] { 60, 600 });
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		IsochronesWriter.write(grid, new long[] { 900, 300 }, os);
+		final JsonObject json = Json.createReader(
+				new StringReader(new String(os.toByteArray(),
+						StandardCharsets.UTF_8))).readObject();
+		final JsonArray features = json.getJsonArray("features");
+		assertEquals(2, features.size());
+		assertEquals(300, features.getJsonObject(0)
+				.getJsonObject("properties").getInt("travelTime"));
+		final JsonArray coordinates = features.getJsonObject(1)
+				.getJsonObject("geometry").getJsonArray("coordinates");
+		// One polygon without holes, a closed ring of 4 corners
+		assertEquals(1, coordinates.size());
+		assertEquals(1, coordinates.getJsonArray(0).size());
+		final JsonArray ring = coordinates.getJsonArray(0).getJsonArray(0);
+		assertEquals(5, ring.size());
+		assertEquals(ring.get(0), ring.get(4));
+		assertEquals(9.9, ring.getJsonArray(0).getJsonNumber(0).doubleValue(),
+				0);
+		assertEquals(48.499, ring.getJsonArray(0).getJsonNumber(1)
+				.doubleValue(), 0);
+	}
+
+	/**
+	 * @return corners of the ring starting with the given corner.
+	 */
+	private static int[] sort(int[] ring, int column, int row) {
+		for (int start = 0; start < ring.length; start += 2) {
+			if (ring[start] == column && ring[start + 1] == row) {
+				final int[] sorted = new int[ring.length];
+				for (int index = 0; index < ring.length; index++) {
+					sorted[index] = ring[(start + index) % ring.length];
+				}
+				return sorted;
+			}
+		}
+		return ring;
+	}
+}
@@ -0,0 +1,47 @@
+package com.graphhopper.reader.gtfs;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TravelTimeHistogramsTest {
+
+	@Test
+	public void testPercentilesAreUpperBoundsOfBins() {
+		final TravelTimeHistograms histograms = new TravelTimeHistograms(2,
+				60, 3600);
+		histograms.addSample(new int[] { 30, 600 });
+		histograms.addSample(new int[] { 90, 600 });
+		histograms.addSample(new int[] { 150, 660 });
+		histograms.addSample(new int[] { 170, 720 });
+
+		assertEquals(4, histograms.getSamples());
+		assertEquals(60, histograms.getPercentile(0, 25));
+		assertEquals(120, histograms.getPercentile(0, 50));
+		assertEquals(180, histograms.getPercentile(0, 100));
+		assertEquals(660, histograms.getPercentile(1, 50));
+		assertEquals(780, histograms.getPercentile(1, 90));
+	}
+
+	@Test
+	public void testUnreachedSamplesCountAsSlowest() {
+		final TravelTimeHistograms histograms = new TravelTimeHistograms(1,
+				60, 3600);
+		histograms.addSample(new int[] { 30 });
+		histograms.addSample(new int[] { TravelTimeHistograms.UNREACHED });
+
+		assertEquals(1, histograms.getReached(0));
+		assertEquals(60, histograms.getPercentile(0, 50));
+		assertEquals(TravelTimeHistograms.UNREACHED,
+				histograms.getPercentile(0, 90));
+	}
+
+	@Test
+	public void testLongTravelTimesFallIntoLastBin() {
+		final TravelTimeHistograms histograms = new TravelTimeHistograms(1,
+				60, 120);
+		histograms.addSample(new int[] { 7200 });
+
+		assertEquals(180, histograms.getPercentile(0, 50));
+	}
+}
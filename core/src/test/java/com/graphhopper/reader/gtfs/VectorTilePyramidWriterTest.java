@@ -0,0 +1,112 @@
+package com.graphhopper.reader.gtfs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.graphhopper.util.PointList;
+
+public class VectorTilePyramidWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testWritesTilesOfAllZoomLevels() throws IOException {
+		final PointList pointList = new PointList(3, false);
+		pointList.add(48.399, 9.984);
+		pointList.add(48.401, 9.990);
+		pointList.add(48.410, 10.010);
+		final Roads roads = new Roads(Arrays.asList(new Road(30600, 2,
+				pointList, 5)));
+		final File directory = folder.newFolder();
+
+		final int tiles = new VectorTilePyramidWriter(8, 12, 2).write(roads,
+				directory);
+
+		assertTrue(tiles >= 5);
+		for (int zoom = 8; zoom <= 12; zoom++) {
+			final int x = (int) (VectorTilePyramidWriter.projectX(9.984)
+					* (1 << zoom));
+			final int y = (int) (VectorTilePyramidWriter.projectY(48.399)
+					* (1 << zoom));
+			final File tile = new File(directory, zoom + "/" + x + "/" + y
+					+ ".pbf");
+			assertTrue(tile.getPath(), tile.isFile());
+			final List<Object> layer = decode(
+					Files.readAllBytes(tile.toPath()), 3);
+			final byte[] layerBytes = (byte[]) layer.get(0);
+			final List<Object> names = decode(layerBytes, 1);
+			assertEquals("roads", new String((byte[]) names.get(0), "UTF-8"));
+			assertEquals(1, decode(layerBytes, 2).size());
+			assertEquals(3, decode(layerBytes, 3).size());
+			assertEquals(3, decode(layerBytes, 4).size());
+			assertEquals(Arrays.<Object> asList(4096L), decode(layerBytes, 5));
+			assertEquals(Arrays.<Object> asList(2L), decode(layerBytes, 15));
+		}
+	}
+
+	@Test
+	public void testClipsLineLeavingAndEnteringTile() {
+		final VectorTilePyramidWriter.TileClipper clipper = new VectorTilePyramidWriter.TileClipper(
+				0, 0);
+		// In tile, out to the right, back in
+		final int partCount = clipper.clip(new double[] { 0.5, 0.25, 2, 0.25,
+				2, 0.75, 0.5, 0.75 });
+		assertEquals(2, partCount);
+		assertArrayEquals(new int[] { 2048, 1024, 4160, 1024 },
+				clipper.parts[0]);
+		assertArrayEquals(new int[] { 4160, 3072, 2048, 3072 },
+				clipper.parts[1]);
+	}
+
+	/**
+	 * @return values of the field in the message, length-delimited values
+	 *         as byte arrays, varints as longs.
+	 */
+	private static List<Object> decode(byte[] message, int field) {
+		final List<Object> values = new ArrayList<>();
+		final int[] position = { 0 };
+		while (position[0] < message.length) {
+			final long key = readVarint(message, position);
+			final Object value;
+			if ((key & 7) == 0) {
+				value = readVarint(message, position);
+			} else if ((key & 7) == 2) {
+				final int length = (int) readVarint(message, position);
+				value = Arrays.copyOfRange(message, position[0], position[0]
+						+ length);
+				position[0] += length;
+			} else {
+				throw new IllegalArgumentException("Unexpected wire type.");
+			}
+			if ((key >>> 3) == field) {
+				values.add(value);
+			}
+		}
+		return values;
+	}
+
+	private static long readVarint(byte[] bytes, int[] position) {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = bytes[position[0]++];
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+}
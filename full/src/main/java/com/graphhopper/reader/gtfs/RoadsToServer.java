@@ -0,0 +1,363 @@
+package com.graphhopper.reader.gtfs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.util.CmdArgs;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP server which keeps the graph loaded and answers
+ * <code>GET /roads?lat=..&amp;lon=..</code> with streamed GeoJSON (or the
+ * binary format with <code>format=binary</code>). The departure time, the
+ * departure window, the algorithm and the bounds of the search may be given
+ * as parameters <code>departure.time</code>, <code>departure.window</code>,
+ * <code>algorithm</code>, <code>max.travel.time</code> and
+ * <code>max.transfers</code>, as on the command line. With
+ * <code>arrive.by=true</code> the roads lead to the location, arriving by
+ * <code>arrival.time</code> within <code>arrival.window</code>. The roads are
+ * simplified with <code>simplify.tolerance</code> and
+ * <code>simplify.decimals</code>. With <code>stream=true</code> the roads
+ * are written while the search runs, see
+ * {@link RoadsToGraphHopperGtfs#streamRoadsFrom(GHRequest, java.util.function.Consumer, QueryStatistics)}.
+ * <p>
+ * Queries run on a bounded worker pool. If the pool and its queue are full,
+ * further requests are not admitted and the server answers with
+ * <code>503</code> right away; if a query does not finish within
+ * the timeout, with <code>504</code>. The search itself stops at the timeout
+ * (or the shorter <code>search.timeout</code>) and answers with the roads
+ * found so far, so that the <code>504</code> is mostly left for queries which
+ * waited in the queue.
+ */
+public class RoadsToServer {
+
+	private static final String[] REQUEST_PARAMETERS = { "departure.time",
+			"departure.window", "arrive.by", "arrival.time", "arrival.window",
+			"algorithm", "max.travel.time", "max.transfers",
+			"simplify.tolerance", "simplify.decimals", "stream" };
+
+	public static void main(String[] strs) throws IOException {
+		final CmdArgs args = CmdArgs.read(strs);
+		final RoadsTo roadsTo = new RoadsTo();
+		final RoadsToGraphHopperGtfs roadsToGraphHopperGtfs = roadsTo
+				.init(args);
+		final RoadsToServer server = new RoadsToServer(roadsToGraphHopperGtfs,
+				roadsTo, args);
+		server.start();
+		System.out.println(MessageFormat.format(
+				"RoadsTo server is listening on {0}.", server.getAddress()));
+	}
+
+	private final RoadsToGraphHopperGtfs roadsToGraphHopperGtfs;
+	private final RoadsTo roadsTo;
+	private final CmdArgs args;
+	private final long timeout;
+	private final HttpServer httpServer;
+	private final ExecutorService exchanges;
+	private final ThreadPoolExecutor workers;
+	/**
+	 * Permits of the requests which are searched or wait for a worker.
+	 */
+	private final Semaphore admissions;
+
+	public RoadsToServer(RoadsToGraphHopperGtfs roadsToGraphHopperGtfs,
+			CmdArgs args) throws IOException {
+		this(roadsToGraphHopperGtfs, new RoadsTo(), args);
+	}
+
+	/**
+	 * @param roadsTo
+	 *            creates the requests and writers, its metrics (if enabled)
+	 *            receive the statistics of the queries.
+	 */
+	public RoadsToServer(RoadsToGraphHopperGtfs roadsToGraphHopperGtfs,
+			RoadsTo roadsTo, CmdArgs args) throws IOException {
+		this.roadsToGraphHopperGtfs = roadsToGraphHopperGtfs;
+		this.roadsTo = roadsTo;
+		this.args = args;
+		this.timeout = args.getLong("server.timeout", 30000);
+		final int threads = args.getInt("server.threads", Runtime.getRuntime()
+				.availableProcessors());
+		final int queueSize = args.getInt("server.queue", 4 * threads);
+		this.workers = new ThreadPoolExecutor(threads, threads, 0L,
+				TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize));
+		this.admissions = new Semaphore(threads + queueSize);
+		// Threads waiting for workers and streaming responses, plus spare
+		// threads which answer requests that are not admitted
+		this.exchanges = Executors.newFixedThreadPool(2 * threads + queueSize);
+		this.httpServer = HttpServer.create(
+				new InetSocketAddress(args.get("server.host", "localhost"),
+						args.getInt("server.port", 8989)), 0);
+		this.httpServer.setExecutor(exchanges);
+		this.httpServer.createContext("/roads", this::handleRoads);
+	}
+
+	public void start() {
+		httpServer.start();
+	}
+
+	public void stop() {
+		httpServer.stop(0);
+		workers.shutdownNow();
+		exchanges.shutdownNow();
+	}
+
+	public InetSocketAddress getAddress() {
+		return httpServer.getAddress();
+	}
+
+	private void handleRoads(HttpExchange exchange) throws IOException {
+		try {
+			if (!admissions.tryAcquire()) {
+				sendError(exchange, 503, "Too many concurrent requests.");
+				return;
+			}
+			try {
+				answerRoads(exchange);
+			} finally {
+				admissions.release();
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void answerRoads(HttpExchange exchange) throws IOException {
+		if (!"GET".equals(exchange.getRequestMethod())) {
+			sendError(exchange, 405, "Only GET is supported.");
+			return;
+		}
+		final Map<String, String> parameters = parseQuery(exchange
+				.getRequestURI().getRawQuery());
+		final double lat;
+		final double lon;
+		try {
+			lat = Double.parseDouble(parameters.get("lat"));
+			lon = Double.parseDouble(parameters.get("lon"));
+		} catch (NullPointerException | NumberFormatException ex) {
+			sendError(exchange, 400,
+					"Parameters lat and lon must be specified as numbers.");
+			return;
+		}
+		final CmdArgs requestArgs = new CmdArgs(args.toMap());
+		final String format = parameters.getOrDefault("format", "geojson");
+		try {
+			RoadsTo.checkOutputFormat(format);
+		} catch (IllegalArgumentException iaex) {
+			sendError(exchange, 400, iaex.getMessage());
+			return;
+		}
+		requestArgs.put("output.format", format);
+		for (String name : REQUEST_PARAMETERS) {
+			if (parameters.containsKey(name)) {
+				requestArgs.put(name, parameters.get(name));
+			}
+		}
+		requestArgs.put("search.timeout", Math.min(timeout,
+				args.getLong("search.timeout", timeout)));
+		final GHRequest request;
+		try {
+			request = roadsTo.createRequest(lat, lon, requestArgs);
+			// Streamed responses are committed before the search snaps
+			RoadsToGraphHopperGtfs.checkRequest(request);
+		} catch (IllegalArgumentException iaex) {
+			sendError(exchange, 400, iaex.getMessage());
+			return;
+		}
+
+		final RoadsToMetrics metrics = roadsTo.getMetrics();
+		final QueryStatistics statistics = metrics == null ? null
+				: new QueryStatistics();
+		if (requestArgs.getBool("stream", false)) {
+			streamRoads(exchange, request, statistics, requestArgs);
+			return;
+		}
+		final Future<Roads> future;
+		try {
+			future = workers.submit(() -> roadsToGraphHopperGtfs
+					.roadsFrom(request, statistics));
+		} catch (RejectedExecutionException rex) {
+			sendError(exchange, 503, "Too many concurrent requests.");
+			return;
+		}
+
+		final Roads searchedRoads;
+		try {
+			searchedRoads = future.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException tex) {
+			future.cancel(true);
+			sendError(exchange, 504, "Query timed out.");
+			return;
+		} catch (InterruptedException iex) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			sendError(exchange, 503, "Server is shutting down.");
+			return;
+		} catch (ExecutionException eex) {
+			if (eex.getCause() instanceof IllegalArgumentException) {
+				sendError(exchange, 400, eex.getCause().getMessage());
+				return;
+			}
+			eex.getCause().printStackTrace();
+			sendError(exchange, 500, String.valueOf(eex.getCause()));
+			return;
+		}
+
+		final Roads roads = roadsTo.simplify(searchedRoads, requestArgs);
+		final RoadsWriter writer;
+		try {
+			writer = roadsTo.createRoadsWriter(exchange.getResponseBody(),
+					requestArgs);
+		} catch (IllegalArgumentException iaex) {
+			sendError(exchange, 400, iaex.getMessage());
+			return;
+		}
+		exchange.getResponseHeaders().set("Content-Type",
+				"binary".equals(format) ? "application/octet-stream"
+						: "application/json; charset=UTF-8");
+		exchange.getResponseHeaders().set("Access-Control-Allow-Origin",
+				"*");
+		// Chunked, the length of the streamed response is not known
+		exchange.sendResponseHeaders(200, 0);
+		final long serializationStart = System.nanoTime();
+		try {
+			writer.write(roads);
+		} finally {
+			writer.close();
+		}
+		if (statistics != null) {
+			statistics.setSerializationNanos(System.nanoTime()
+					- serializationStart);
+			metrics.queryFinished(statistics);
+		}
+	}
+
+	/**
+	 * Runs the query on a worker which writes the roads to the response
+	 * while it searches. The response is committed when the worker starts,
+	 * so the <code>504</code> is only sent if the query waited in the queue
+	 * for the whole timeout.
+	 */
+	private void streamRoads(HttpExchange exchange, GHRequest request,
+			QueryStatistics statistics, CmdArgs requestArgs) throws IOException {
+		final RoadsWriter writer;
+		try {
+			writer = roadsTo.createRoadsWriter(exchange.getResponseBody(),
+					requestArgs);
+		} catch (IllegalArgumentException iaex) {
+			sendError(exchange, 400, iaex.getMessage());
+			return;
+		}
+		final String format = requestArgs.get("output.format", "geojson");
+		final AtomicBoolean started = new AtomicBoolean();
+		final Future<?> future;
+		try {
+			future = workers.submit(() -> {
+				if (!started.compareAndSet(false, true)) {
+					return null;
+				}
+				exchange.getResponseHeaders().set("Content-Type",
+						"binary".equals(format) ? "application/octet-stream"
+								: "application/json; charset=UTF-8");
+				exchange.getResponseHeaders().set(
+						"Access-Control-Allow-Origin", "*");
+				exchange.sendResponseHeaders(200, 0);
+				try {
+					roadsTo.streamRoads(roadsToGraphHopperGtfs, request,
+							statistics, writer, requestArgs);
+				} finally {
+					writer.close();
+				}
+				return null;
+			});
+		} catch (RejectedExecutionException rex) {
+			sendError(exchange, 503, "Too many concurrent requests.");
+			return;
+		}
+
+		try {
+			future.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException tex) {
+			if (started.compareAndSet(false, true)) {
+				future.cancel(true);
+				sendError(exchange, 504, "Query timed out.");
+				return;
+			}
+			// The search stops at its own deadline
+			try {
+				future.get();
+			} catch (InterruptedException iex) {
+				future.cancel(true);
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException eex) {
+				eex.getCause().printStackTrace();
+				return;
+			}
+		} catch (InterruptedException iex) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			return;
+		} catch (ExecutionException eex) {
+			// Headers are sent, the response can only be cut off
+			eex.getCause().printStackTrace();
+			return;
+		}
+		if (statistics != null) {
+			roadsTo.getMetrics().queryFinished(statistics);
+		}
+	}
+
+	private static void sendError(HttpExchange exchange, int status,
+			String message) throws IOException {
+		final byte[] body = message.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type",
+				"text/plain; charset=UTF-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(body);
+		}
+	}
+
+	private static Map<String, String> parseQuery(String query)
+			throws UnsupportedEncodingException {
+		final Map<String, String> parameters = new HashMap<>();
+		if (query == null) {
+			return parameters;
+		}
+		for (String pair : query.split("&")) {
+			if (pair.isEmpty()) {
+				continue;
+			}
+			final int index = pair.indexOf('=');
+			if (index < 0) {
+				parameters.put(URLDecoder.decode(pair, "UTF-8"), "");
+			} else {
+				parameters.put(URLDecoder.decode(pair.substring(0, index),
+						"UTF-8"), URLDecoder.decode(pair.substring(index + 1),
+						"UTF-8"));
+			}
+		}
+		return parameters;
+	}
+}
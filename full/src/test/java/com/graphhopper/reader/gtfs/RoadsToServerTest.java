@@ -0,0 +1,123 @@
+package com.graphhopper.reader.gtfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.util.CmdArgs;
+
+public class RoadsToServerTest {
+
+	private final CountDownLatch entered = new CountDownLatch(2);
+	private final CountDownLatch released = new CountDownLatch(1);
+	private RoadsToServer server;
+	private ExecutorService clients;
+
+	@Before
+	public void setUp() throws IOException {
+		final Map<String, String> map = new HashMap<>();
+		map.put("server.port", "0");
+		map.put("server.threads", "1");
+		map.put("server.queue", "1");
+		// Requests are held while they are created, before any search
+		final RoadsTo roadsTo = new RoadsTo() {
+			@Override
+			public GHRequest createRequest(double lat, double lon,
+					CmdArgs args) {
+				entered.countDown();
+				try {
+					released.await();
+				} catch (InterruptedException iex) {
+					Thread.currentThread().interrupt();
+				}
+				throw new IllegalArgumentException("Released.");
+			}
+		};
+		server = new RoadsToServer(null, roadsTo, new CmdArgs(map));
+		server.start();
+		clients = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void tearDown() {
+		released.countDown();
+		clients.shutdownNow();
+		server.stop();
+	}
+
+	@Test
+	public void testRequestsBeyondWorkersAndQueueAreRejected()
+			throws Exception {
+		final List<Future<Integer>> admitted = new ArrayList<>();
+		for (int index = 0; index < 2; index++) {
+			admitted.add(clients.submit(() -> get("lat=48.4&lon=9.98")));
+		}
+		assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+		assertEquals(503, get("lat=48.4&lon=9.98"));
+
+		released.countDown();
+		for (Future<Integer> future : admitted) {
+			assertEquals(400, (int) future.get(10, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	public void testUnknownFormatIsRejectedBeforeSearch() throws Exception {
+		assertEquals(400, get("lat=48.4&lon=9.98&format=xml"));
+		assertEquals(2, entered.getCount());
+	}
+
+	@Test
+	public void testUnknownAlgorithmIsRejectedBeforeStreaming()
+			throws Exception {
+		final Map<String, String> map = new HashMap<>();
+		map.put("server.port", "0");
+		final RoadsToServer streamingServer = new RoadsToServer(null,
+				new RoadsTo(), new CmdArgs(map));
+		streamingServer.start();
+		try {
+			assertEquals(400, get(streamingServer,
+					"lat=48.4&lon=9.98&stream=true&algorithm=unknown"));
+			assertEquals(400, get(streamingServer,
+					"lat=48.4&lon=9.98&stream=true&max.travel.time=-1"));
+		} finally {
+			streamingServer.stop();
+		}
+	}
+
+	private int get(String query) throws IOException {
+		return get(server, query);
+	}
+
+	private static int get(RoadsToServer server, String query)
+			throws IOException {
+		final InetSocketAddress address = server.getAddress();
+		final HttpURLConnection connection = (HttpURLConnection) new URL(
+				"http://localhost:" + address.getPort() + "/roads?" + query)
+				.openConnection();
+		try {
+			return connection.getResponseCode();
+		} finally {
+			connection.disconnect();
+		}
+	}
+}